@@ -0,0 +1,76 @@
+package bench;
+
+import nds.IManagedPopulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ifmo.nds.IIndividual;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link IManagedPopulation#addIndividuals} with one-by-one insertion. Scores are per batch, divide by
+ * {@code batchSize} to get per-individual cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchInsertionBenchmark {
+    @Param({"ORIGINAL", "LOCK_FREE"})
+    public PopulationType type;
+
+    @Param({"3"})
+    public int dim;
+
+    @Param({"1000"})
+    public int popSize;
+
+    @Param({"1", "64", "512"})
+    public int batchSize;
+
+    private IManagedPopulation<double[]> population;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        population = type.create(popSize);
+        while (population.size() < popSize) {
+            population.addIndividual(PopulationBenchmark.randomIndividual(dim));
+        }
+    }
+
+    @Benchmark
+    public int addIndividuals() {
+        population.addIndividuals(randomBatch());
+        return population.size();
+    }
+
+    @Benchmark
+    public int addIndividualOneByOne() {
+        for (IIndividual<double[]> individual : randomBatch()) {
+            population.addIndividual(individual);
+        }
+        return population.size();
+    }
+
+    private List<IIndividual<double[]>> randomBatch() {
+        final List<IIndividual<double[]>> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; ++i) {
+            batch.add(PopulationBenchmark.randomIndividual(dim));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import nds.IManagedPopulation;
+import nds.PopulationMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent insertions into a small population, so that levels are appended and truncated all the time and
+ * writers keep running into stale level locks. Compares the exception-driven retries of the original population with
+ * the version stamps of {@code LevelLockJFBYPopulationVersioned}.
+ * <p>
+ * With {@code -jvmArgsAppend -Dnds.metrics=true} the retry counts and lock waits are printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class ContentionBenchmark {
+    @Param({"ORIGINAL", "READ_WRITE_LOCK", "VERSIONED"})
+    public PopulationType type;
+
+    @Param({"2"})
+    public int dim;
+
+    @Param({"20", "100"})
+    public int popSize;
+
+    private IManagedPopulation<double[]> population;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        population = type.create(popSize);
+        while (population.size() < popSize) {
+            population.addIndividual(PopulationBenchmark.randomIndividual(dim));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printMetrics() {
+        final PopulationMetrics metrics = population.getMetrics();
+        if (metrics.isEnabled()) {
+            System.out.println(type + ": " + metrics);
+        }
+    }
+
+    @Benchmark
+    public int addIndividual() {
+        return population.addIndividual(PopulationBenchmark.randomIndividual(dim));
+    }
+}
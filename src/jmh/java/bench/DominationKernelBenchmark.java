@@ -0,0 +1,128 @@
+package bench;
+
+import nds.DominanceIndex;
+import nds.DominationKernel;
+import nds.DominationKernels;
+import nds.ParallelDominationKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ifmo.nds.IIndividual;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static ru.ifmo.nds.util.Utils.dominates;
+import static ru.ifmo.nds.util.Utils.lexCompare;
+
+/**
+ * Single level domination check: {@link DominationKernel} implementations and {@link DominanceIndex} against the
+ * per-member list walk.
+ * The Vector API kernel is measured with
+ * {@code -p kernel=vector -jvmArgsAppend --add-modules=jdk.incubator.vector} on JDK 17+.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DominationKernelBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"scalar"})
+    public String kernel;
+
+    @Param({"2", "3", "5"})
+    public int dim;
+
+    @Param({"16", "256", "8192"})
+    public int levelSize;
+
+    /**
+     * Rows per chunk of {@link ParallelDominationKernel}, {@code 0} for the sequential kernel alone
+     */
+    @Param({"0", "1024"})
+    public int parallelThreshold;
+
+    private DominationKernel dominationKernel;
+    private List<IIndividual<double[]>> members;
+    private double[] packed;
+    private DominanceIndex index;
+    private double[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dominationKernel = parallelThreshold > 0
+            ? new ParallelDominationKernel(DominationKernels.byName(kernel), parallelThreshold, ForkJoinPool.commonPool())
+            : DominationKernels.byName(kernel);
+
+        //points of a simplex never dominate each other
+        members = new ArrayList<>(levelSize);
+        for (int i = 0; i < levelSize; ++i) {
+            final IIndividual<double[]> individual = PopulationBenchmark.randomIndividual(dim);
+            final double[] objectives = individual.getObjectives();
+            double sum = 0;
+            for (double objective : objectives) {
+                sum += objective;
+            }
+            for (int k = 0; k < dim; ++k) {
+                objectives[k] /= sum;
+            }
+            members.add(individual);
+        }
+        members.sort((a, b) -> lexCompare(a.getObjectives(), b.getObjectives(), dim));
+        packed = DominationKernels.pack(members);
+        index = DominanceIndex.create(dim, members);
+
+        queries = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; ++i) {
+            queries[i] = new double[dim];
+            for (int k = 0; k < dim; ++k) {
+                queries[i][k] = ThreadLocalRandom.current().nextDouble();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean kernel() {
+        return dominationKernel.dominatedByAny(packed, nextQuery());
+    }
+
+    @Benchmark
+    public boolean index() {
+        return index.dominatedByAny(nextQuery());
+    }
+
+    @Benchmark
+    public boolean listWalk() {
+        final double[] pointObj = nextQuery();
+        for (IIndividual<double[]> member : members) {
+            final double[] memberObj = member.getObjectives();
+            if (memberObj[0] > pointObj[0]) {
+                break;
+            }
+            if (dominates(memberObj, pointObj, pointObj.length) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double[] nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return queries[next];
+    }
+}
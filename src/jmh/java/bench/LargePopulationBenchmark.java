@@ -0,0 +1,175 @@
+package bench;
+
+import nds.IManagedPopulation;
+import nds.JFBYNonDominationLevel;
+import nds.LevelFactory;
+import nds.LevelLockJFBYPopulationVersioned;
+import nds.OffHeapArena;
+import nds.OffHeapJFBYNonDominationLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+import ru.ifmo.nds.impl.FitnessAndCdIndividual;
+import ru.ifmo.nds.impl.RankedIndividual;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state operations on a population of up to ten million individuals, with levels kept on the heap, packed on
+ * the heap or in the segments of an {@link OffHeapArena}. Levels of {@code 100000} members exceed a quarter of a
+ * slab, so they also cover the oversize segments the arena pools.
+ * <p>
+ * Filling such a population by insertions takes far too long, so setup builds {@code levels} levels of
+ * {@code levelSize} members directly: the members of a level lie on a simplex and every level is shifted past the
+ * previous one, so each level is dominated as a whole by the previous one. Heap usage, garbage collection time and
+ * arena statistics are printed after every trial. An on-heap insertion cascading through many such levels takes
+ * about a second, hence the long iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class LargePopulationBenchmark {
+    private static final int RANDOM_SOLUTIONS_COUNT = 4;
+    private static final double DELETION_THRESHOLD = 1.2;
+
+    public enum Storage {
+        ON_HEAP,
+        PACKED,
+        OFF_HEAP
+    }
+
+    @Param
+    public Storage storage;
+
+    @Param({"2", "3"})
+    public int dim;
+
+    @Param({"10", "100"})
+    public int levels;
+
+    @Param({"10000", "100000"})
+    public int levelSize;
+
+    private IManagedPopulation<double[]> population;
+    private OffHeapArena arena;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final LevelFactory<double[]> levelFactory;
+        if (storage == Storage.OFF_HEAP) {
+            arena = OffHeapArena.direct();
+            levelFactory = OffHeapJFBYNonDominationLevel.factory(arena);
+        } else if (storage == Storage.PACKED) {
+            arena = null;
+            levelFactory = LevelFactory.packed();
+        } else {
+            arena = null;
+            levelFactory = LevelFactory.onHeap();
+        }
+        final JFB2014 sorter = new IncrementalJFB();
+        final CopyOnWriteArrayList<JFBYNonDominationLevel<double[]>> nonDominationLevels = new CopyOnWriteArrayList<>();
+        final Random random = new Random(42);
+        for (int level = 0; level < levels; ++level) {
+            nonDominationLevels.add(levelFactory.create(sorter, simplexLevel(random, level)));
+        }
+        population = new LevelLockJFBYPopulationVersioned<>(
+            sorter,
+            nonDominationLevels,
+            (long) levels * levelSize,
+            DELETION_THRESHOLD,
+            levelFactory
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void printMemory() {
+        System.gc();
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += gc.getCollectionTime();
+        }
+        final long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.println(storage + ": heap used=" + (heapUsed >> 20) + "MB, gc time=" + gcMillis + "ms"
+            + (arena == null ? "" : ", arena " + arena));
+    }
+
+    @Benchmark
+    public int addIndividual() {
+        return population.addIndividual(randomIndividual());
+    }
+
+    @Benchmark
+    public int determineRank() {
+        return population.determineRank(randomIndividual());
+    }
+
+    @Benchmark
+    public List<RankedIndividual<double[]>> getRandomSolutions() {
+        return population.getRandomSolutions(RANDOM_SOLUTIONS_COUNT);
+    }
+
+    /**
+     * @return Individual anywhere within the objective range spanned by the levels
+     */
+    private IIndividual<double[]> randomIndividual() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final double[] objectives = new double[dim];
+        for (int i = 0; i < dim; ++i) {
+            objectives[i] = random.nextDouble() * levels * dim;
+        }
+        return new FitnessAndCdIndividual<>(objectives, objectives);
+    }
+
+    /**
+     * @return Lex-sorted points with coordinates summing up to {@code dim - 1}, shifted by {@code level * dim}
+     */
+    private List<IIndividual<double[]>> simplexLevel(Random random, int level) {
+        final List<IIndividual<double[]>> members = new ArrayList<>(levelSize);
+        for (int i = 0; i < levelSize; ++i) {
+            final double[] objectives = new double[dim];
+            double sum = 0;
+            for (int j = 0; j < dim - 1; ++j) {
+                objectives[j] = random.nextDouble();
+                sum += objectives[j];
+            }
+            objectives[dim - 1] = dim - 1 - sum;
+            for (int j = 0; j < dim; ++j) {
+                objectives[j] += level * dim;
+            }
+            members.add(new FitnessAndCdIndividual<>(objectives, objectives));
+        }
+        members.sort((a, b) -> {
+            for (int j = 0; j < dim; ++j) {
+                final int cmp = Double.compare(a.getObjectives()[j], b.getObjectives()[j]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        });
+        return members;
+    }
+}
@@ -0,0 +1,108 @@
+package bench;
+
+import nds.INonDominationLevel;
+import nds.JFBYNonDominationLevel;
+import nds.PackedJFBYNonDominationLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+import ru.ifmo.nds.impl.FitnessAndCdIndividual;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insertion of a single non-dominated point into one level, comparing the object-per-member
+ * {@link JFBYNonDominationLevel} with the structure-of-arrays {@link PackedJFBYNonDominationLevel}.
+ * Levels are immutable, so every invocation updates the same level and the result is discarded.
+ * <p>
+ * Allocation per insertion is reported with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelUpdateBenchmark {
+    private static final int ADDENDS = 1024;
+
+    public enum LevelType {
+        OBJECTS,
+        PACKED
+    }
+
+    @Param
+    public LevelType levelType;
+
+    @Param({"2", "3", "5"})
+    public int dim;
+
+    @Param({"100", "1000", "10000"})
+    public int levelSize;
+
+    private INonDominationLevel<double[]> level;
+    private List<List<IIndividual<double[]>>> addends;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final List<IIndividual<double[]>> members = new ArrayList<>(levelSize);
+        for (int i = 0; i < levelSize; ++i) {
+            members.add(simplexPoint(random));
+        }
+        members.sort((a, b) -> {
+            for (int j = 0; j < dim; ++j) {
+                final int cmp = Double.compare(a.getObjectives()[j], b.getObjectives()[j]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        });
+        final JFB2014 sorter = new IncrementalJFB();
+        level = levelType == LevelType.PACKED
+            ? new PackedJFBYNonDominationLevel<>(sorter, members)
+            : new JFBYNonDominationLevel<>(sorter, members);
+
+        addends = new ArrayList<>(ADDENDS);
+        for (int i = 0; i < ADDENDS; ++i) {
+            addends.add(Collections.singletonList(simplexPoint(random)));
+        }
+    }
+
+    @Benchmark
+    public Object addMember() {
+        next = (next + 1) & (ADDENDS - 1);
+        return level.addMembers(addends.get(next));
+    }
+
+    /**
+     * @return Point with coordinates summing up to {@code dim - 1}, so that no two such points dominate each other
+     */
+    private IIndividual<double[]> simplexPoint(Random random) {
+        final double[] objectives = new double[dim];
+        double sum = 0;
+        for (int j = 0; j < dim - 1; ++j) {
+            objectives[j] = random.nextDouble();
+            sum += objectives[j];
+        }
+        objectives[dim - 1] = dim - 1 - sum;
+        return new FitnessAndCdIndividual<>(objectives, objectives);
+    }
+}
@@ -0,0 +1,111 @@
+package bench;
+
+import nds.IManagedPopulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.impl.FitnessAndCdIndividual;
+import ru.ifmo.nds.impl.RankedIndividual;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmarks of the {@link IManagedPopulation} operations used by steady-state NSGA-II.
+ * <p>
+ * Every benchmark runs against a population which was filled up to its expected size during setup, so that
+ * {@code addIndividual} measures the steady state (including truncation), not the warm-up growth.
+ * Thread count is passed by {@link PopulationBenchmarkRunner} or with the {@code -t} JMH option.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PopulationBenchmark {
+    /**
+     * Number of candidates requested by {@code SSNSGAII.generateOffspring} for a two-parent variation.
+     */
+    private static final int RANDOM_SOLUTIONS_COUNT = 4;
+
+    @Param
+    public PopulationType type;
+
+    @Param({"2", "3", "5"})
+    public int dim;
+
+    @Param({"100", "1000"})
+    public int popSize;
+
+    private IManagedPopulation<double[]> population;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        population = type.create(popSize);
+        while (population.size() < popSize) {
+            population.addIndividual(randomIndividual(dim));
+        }
+    }
+
+    @Benchmark
+    public int addIndividual() {
+        return population.addIndividual(randomIndividual(dim));
+    }
+
+    @Benchmark
+    public Object getSnapshot() {
+        return population.getSnapshot();
+    }
+
+    @Benchmark
+    public List<RankedIndividual<double[]>> getRandomSolutions() {
+        return population.getRandomSolutions(RANDOM_SOLUTIONS_COUNT);
+    }
+
+    @Benchmark
+    public int determineRank() {
+        return population.determineRank(randomIndividual(dim));
+    }
+
+    /**
+     * Steady-state NSGA-II iteration: one insertion per parent selection, run by the writers of the group while
+     * the readers only select parents.
+     */
+    @Benchmark
+    @Group("steadyState")
+    @GroupThreads(1)
+    public int steadyStateWriter() {
+        population.getRandomSolutions(RANDOM_SOLUTIONS_COUNT);
+        return population.addIndividual(randomIndividual(dim));
+    }
+
+    @Benchmark
+    @Group("steadyState")
+    @GroupThreads(1)
+    public List<RankedIndividual<double[]>> steadyStateReader() {
+        return population.getRandomSolutions(RANDOM_SOLUTIONS_COUNT);
+    }
+
+    static IIndividual<double[]> randomIndividual(int dim) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final double[] objectives = new double[dim];
+        for (int i = 0; i < dim; ++i) {
+            objectives[i] = random.nextDouble();
+        }
+        return new FitnessAndCdIndividual<>(objectives, objectives);
+    }
+}
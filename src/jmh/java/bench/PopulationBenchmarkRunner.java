@@ -0,0 +1,36 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link PopulationBenchmark} for every thread count and writes one JSON report per thread count.
+ * <p>
+ * Usage: {@code java -jar target/benchmarks.jar [threadCounts] [benchmarkRegexp]}, e.g.
+ * {@code java -jar target/benchmarks.jar 1,4,16 addIndividual}. Throughput and sample-time (latency percentiles)
+ * modes come from the benchmark class; allocation rate is reported by the GC profiler as
+ * {@code gc.alloc.rate.norm}.
+ */
+public class PopulationBenchmarkRunner {
+    private static final String DEFAULT_THREAD_COUNTS = "1,2,4,8,16,32";
+
+    public static void main(String[] args) throws RunnerException {
+        final String threadCounts = args.length > 0 ? args[0] : DEFAULT_THREAD_COUNTS;
+        final String include = PopulationBenchmark.class.getSimpleName() + (args.length > 1 ? "." + args[1] : "");
+
+        for (String threadCount : threadCounts.split(",")) {
+            final int threads = Integer.parseInt(threadCount.trim());
+            final ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("population-bench-" + threads + "t.json");
+            new Runner(options.build()).run();
+        }
+    }
+}
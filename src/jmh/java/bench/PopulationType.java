@@ -0,0 +1,94 @@
+package bench;
+
+import nds.IManagedPopulation;
+import nds.LevelLockJFBYPopulationBackgroundTruncation;
+import nds.LevelLockJFBYPopulationOptimizeRemove;
+import nds.LevelLockJFBYPopulationOriginal;
+import nds.LevelLockJFBYPopulationReadWriteLock;
+import nds.LevelLockJFBYPopulationReleaseLockEarlier;
+import nds.LevelLockJFBYPopulationVersioned;
+import nds.LockFreeJFBYPopulation;
+import nds.shard1.LevelLockJFBYPopulationShardV1;
+import nds.shard2.LevelLockJFBYPopulationShardV2;
+import nds.shard2.ShardingPolicy;
+
+/**
+ * Every {@link IManagedPopulation} implementation covered by the benchmarks. JMH enumerates all constants
+ * when {@code type} parameter values are not given explicitly.
+ */
+public enum PopulationType {
+    ORIGINAL {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationOriginal<>(expectedPopSize);
+        }
+    },
+    RELEASE_LOCK_EARLIER {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationReleaseLockEarlier<>(expectedPopSize);
+        }
+    },
+    OPTIMIZE_REMOVE {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationOptimizeRemove<>(expectedPopSize);
+        }
+    },
+    SHARD_V1 {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationShardV1<>(expectedPopSize);
+        }
+    },
+    SHARD_V2 {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationShardV2<>(expectedPopSize);
+        }
+    },
+    SHARD_V2_ADAPTIVE {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationShardV2<>(
+                expectedPopSize,
+                ShardingPolicy.adaptive(Runtime.getRuntime().availableProcessors())
+            );
+        }
+    },
+    SHARD_V2_RANGE {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationShardV2<>(
+                expectedPopSize,
+                ShardingPolicy.byFirstObjective(ShardingPolicy.adaptive(Runtime.getRuntime().availableProcessors()))
+            );
+        }
+    },
+    LOCK_FREE {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LockFreeJFBYPopulation<>(expectedPopSize);
+        }
+    },
+    READ_WRITE_LOCK {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationReadWriteLock<>(expectedPopSize);
+        }
+    },
+    BACKGROUND_TRUNCATION {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationBackgroundTruncation<>(expectedPopSize);
+        }
+    },
+    VERSIONED {
+        @Override
+        public <T> IManagedPopulation<T> create(long expectedPopSize) {
+            return new LevelLockJFBYPopulationVersioned<>(expectedPopSize);
+        }
+    };
+
+    public abstract <T> IManagedPopulation<T> create(long expectedPopSize);
+}
@@ -0,0 +1,83 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events of one insertion cascade. Members evicted from a level are remembered by identity until they land in a
+ * later level, so that they are reported as {@link PopulationEvent.Type#EVICTED} rather than as new individuals.
+ * Only created while the population has subscribers.
+ */
+final class CascadeEvents<T> {
+    private final PopulationEventPublisher<T> publisher;
+    private final Map<IIndividual<T>, Integer> origins = new IdentityHashMap<>();
+    private final List<PopulationEvent<T>> events = new ArrayList<>();
+
+    CascadeEvents(@Nonnull PopulationEventPublisher<T> publisher) {
+        this.publisher = publisher;
+    }
+
+    void levelCreated(int rank) {
+        events.add(PopulationEvent.levelCreated(rank));
+    }
+
+    /**
+     * @param addends Points added to the level {@code rank}
+     */
+    void entered(int rank, @Nonnull List<IIndividual<T>> addends) {
+        for (IIndividual<T> addend : addends) {
+            final Integer origin = origins.remove(addend);
+            events.add(origin == null
+                ? PopulationEvent.inserted(rank, addend)
+                : PopulationEvent.evicted(origin, rank, addend));
+        }
+    }
+
+    /**
+     * @param evicted Members pushed out of the level {@code rank}
+     */
+    void left(int rank, @Nonnull List<IIndividual<T>> evicted) {
+        for (IIndividual<T> member : evicted) {
+            origins.put(member, rank);
+        }
+    }
+
+    /**
+     * Publishes the events collected so far. Called under the lock of the modified level, so that events of a
+     * level keep their order.
+     */
+    void flush() {
+        if (events.isEmpty()) {
+            return;
+        }
+        publisher.publish(new ArrayList<>(events));
+        events.clear();
+    }
+
+    /**
+     * @return Events of the removal of {@code removedLevels}, the levels from {@code from} on, last level first,
+     * followed by the removal of the {@code trimmed} members of the level before them
+     */
+    @Nonnull
+    static <T> List<PopulationEvent<T>> truncation(@Nonnull List<? extends INonDominationLevel<T>> removedLevels,
+                                                   int from,
+                                                   @Nonnull List<IIndividual<T>> trimmed) {
+        final List<PopulationEvent<T>> events = new ArrayList<>();
+        for (int i = removedLevels.size() - 1; i >= 0; --i) {
+            final int rank = from + i;
+            for (IIndividual<T> member : removedLevels.get(i).getMembers()) {
+                events.add(PopulationEvent.truncated(rank, member));
+            }
+            events.add(PopulationEvent.levelRemoved(rank));
+        }
+        for (IIndividual<T> member : trimmed) {
+            events.add(PopulationEvent.truncated(from - 1, member));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,363 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static ru.ifmo.nds.util.Utils.dominates;
+import static ru.ifmo.nds.util.Utils.lexCompare;
+
+/**
+ * Persistent k-d tree over the objectives of level members, answering domination queries in sublinear time where
+ * the lex-order cut-off of {@link DominationKernel} prunes little, i.e. with many objectives.
+ * <p>
+ * Every node keeps the bounding box of its subtree: a subtree whose lower corner does not weakly dominate the point
+ * can not contain its dominator, a subtree whose upper corner is dominated by the point holds only dominated members.
+ * Leaves are lex-sorted packed buckets scanned by the default kernel. Updates copy the path to the changed leaves
+ * and rebuild subtrees which got unbalanced, so versions of a level share all untouched nodes.
+ * <p>
+ * The index is optional: levels build it only if the {@code nds.dominanceIndex.threshold} system property is set
+ * and they have at least that many members.
+ */
+@Immutable
+public final class DominanceIndex {
+    public static final String THRESHOLD_PROPERTY = "nds.dominanceIndex.threshold";
+
+    private static final int THRESHOLD = Integer.getInteger(THRESHOLD_PROPERTY, 0);
+    private static final int LEAF_SIZE = 16;
+    private static final double MAX_CHILD_SHARE = 0.75;
+
+    private final int dim;
+    @Nullable
+    private final Node root;
+
+    private DominanceIndex(int dim, @Nullable Node root) {
+        this.dim = dim;
+        this.root = root;
+    }
+
+    /**
+     * @return Whether a level of the given size should be indexed
+     */
+    public static boolean isEnabledFor(int levelSize) {
+        return THRESHOLD > 0 && levelSize >= THRESHOLD;
+    }
+
+    @Nonnull
+    public static DominanceIndex create(int dim, @Nonnull List<? extends IIndividual<?>> members) {
+        final List<double[]> points = new ArrayList<>(members.size());
+        for (IIndividual<?> member : members) {
+            points.add(member.getObjectives());
+        }
+        return new DominanceIndex(dim, build(dim, points));
+    }
+
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    /**
+     * Removes {@code toRemove}, then adds {@code toAdd}. Members are matched by objectives.
+     *
+     * @return Updated index, this one is not modified
+     */
+    @Nonnull
+    public DominanceIndex update(@Nonnull List<? extends IIndividual<?>> toAdd,
+                                 @Nonnull List<? extends IIndividual<?>> toRemove) {
+        Node newRoot = root;
+        for (IIndividual<?> individual : toRemove) {
+            newRoot = remove(newRoot, individual.getObjectives());
+        }
+        for (IIndividual<?> individual : toAdd) {
+            newRoot = insert(newRoot, individual.getObjectives());
+        }
+        return new DominanceIndex(dim, newRoot);
+    }
+
+    /**
+     * @return Whether any member dominates {@code point}
+     */
+    public boolean dominatedByAny(@Nonnull double[] point) {
+        return dominatedByAny(root, point);
+    }
+
+    /**
+     * Adds objectives of the members dominated by {@code point} to {@code dominated}, in no particular order.
+     */
+    public void collectDominatedBy(@Nonnull double[] point, @Nonnull List<double[]> dominated) {
+        collectDominatedBy(root, point, dominated);
+    }
+
+    private boolean dominatedByAny(@Nullable Node node, @Nonnull double[] point) {
+        if (node == null) {
+            return false;
+        }
+        boolean strictlyBetter = false;
+        for (int k = 0; k < dim; ++k) {
+            if (node.min[k] > point[k]) {
+                return false;
+            }
+            strictlyBetter |= node.max[k] < point[k];
+        }
+        if (strictlyBetter && weaklyDominates(node.max, point)) {
+            //the upper corner dominates the point, so does every member
+            return true;
+        }
+
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            return DominationKernels.getDefault().dominatedByAny(leaf.columns, 0, leaf.size, point);
+        }
+        final Inner inner = (Inner) node;
+        //members of the right subtree are not better than the point in the split objective
+        return dominatedByAny(inner.left, point)
+            || point[inner.axis] >= inner.split && dominatedByAny(inner.right, point);
+    }
+
+    private void collectDominatedBy(@Nullable Node node, @Nonnull double[] point, @Nonnull List<double[]> dominated) {
+        if (node == null) {
+            return;
+        }
+        for (int k = 0; k < dim; ++k) {
+            if (node.max[k] < point[k]) {
+                return;
+            }
+        }
+
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            for (int i = 0; i < leaf.size; ++i) {
+                final double[] member = leaf.member(dim, i);
+                if (dominates(point, member, dim) < 0) {
+                    dominated.add(member);
+                }
+            }
+            return;
+        }
+        final Inner inner = (Inner) node;
+        //members of the left subtree are better than the point in the split objective
+        if (inner.split > point[inner.axis]) {
+            collectDominatedBy(inner.left, point, dominated);
+        }
+        collectDominatedBy(inner.right, point, dominated);
+    }
+
+    private boolean weaklyDominates(@Nonnull double[] a, @Nonnull double[] b) {
+        for (int k = 0; k < dim; ++k) {
+            if (a[k] > b[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nonnull
+    private Node insert(@Nullable Node node, @Nonnull double[] point) {
+        if (node == null) {
+            return leaf(dim, Arrays.asList(point));
+        }
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            final List<double[]> points = leaf.points(dim);
+            points.add(point);
+            return points.size() > 2 * LEAF_SIZE ? build(dim, points) : leaf(dim, points);
+        }
+        final Inner inner = (Inner) node;
+        final Inner updated = point[inner.axis] < inner.split
+            ? new Inner(dim, inner.axis, inner.split, insert(inner.left, point), inner.right)
+            : new Inner(dim, inner.axis, inner.split, inner.left, insert(inner.right, point));
+        if (Math.max(updated.left.size, updated.right.size) > MAX_CHILD_SHARE * updated.size) {
+            final List<double[]> points = new ArrayList<>(updated.size);
+            updated.collectPoints(dim, points);
+            return build(dim, points);
+        }
+        return updated;
+    }
+
+    @Nullable
+    private Node remove(@Nullable Node node, @Nonnull double[] point) {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            final List<double[]> points = leaf.points(dim);
+            for (int i = 0; i < points.size(); ++i) {
+                if (Arrays.equals(points.get(i), point)) {
+                    points.remove(i);
+                    return points.isEmpty() ? null : leaf(dim, points);
+                }
+            }
+            return node;
+        }
+        final Inner inner = (Inner) node;
+        if (point[inner.axis] < inner.split) {
+            final Node left = remove(inner.left, point);
+            if (left == inner.left) {
+                return node;
+            }
+            return left == null ? inner.right : new Inner(dim, inner.axis, inner.split, left, inner.right);
+        } else {
+            final Node right = remove(inner.right, point);
+            if (right == inner.right) {
+                return node;
+            }
+            return right == null ? inner.left : new Inner(dim, inner.axis, inner.split, inner.left, right);
+        }
+    }
+
+    @Nullable
+    private static Node build(int dim, @Nonnull List<double[]> points) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        if (points.size() <= LEAF_SIZE) {
+            return leaf(dim, points);
+        }
+
+        int axis = -1;
+        double widest = 0;
+        for (int k = 0; k < dim; ++k) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] point : points) {
+                min = Math.min(min, point[k]);
+                max = Math.max(max, point[k]);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = k;
+            }
+        }
+        if (axis < 0) {
+            //all points coincide
+            return leaf(dim, points);
+        }
+
+        final int splitAxis = axis;
+        final List<double[]> sorted = new ArrayList<>(points);
+        sorted.sort(Comparator.comparingDouble(p -> p[splitAxis]));
+        int mid = sorted.size() / 2;
+        final double first = sorted.get(0)[axis];
+        while (sorted.get(mid)[axis] == first) {
+            ++mid;
+        }
+        final double split = sorted.get(mid)[axis];
+        while (sorted.get(mid - 1)[axis] == split) {
+            --mid;
+        }
+        return new Inner(dim, axis, split,
+            build(dim, sorted.subList(0, mid)),
+            build(dim, sorted.subList(mid, sorted.size())));
+    }
+
+    @Nonnull
+    private static Leaf leaf(int dim, @Nonnull List<double[]> points) {
+        final List<double[]> sorted = new ArrayList<>(points);
+        sorted.sort((a, b) -> lexCompare(a, b, dim));
+        final int size = sorted.size();
+        final double[] columns = new double[size * dim];
+        for (int i = 0; i < size; ++i) {
+            final double[] point = sorted.get(i);
+            for (int k = 0; k < dim; ++k) {
+                columns[k * size + i] = point[k];
+            }
+        }
+        return new Leaf(dim, columns, size);
+    }
+
+    private abstract static class Node {
+        final double[] min;
+        final double[] max;
+        final int size;
+
+        Node(@Nonnull double[] min, @Nonnull double[] max, int size) {
+            this.min = min;
+            this.max = max;
+            this.size = size;
+        }
+
+        abstract void collectPoints(int dim, @Nonnull List<double[]> points);
+    }
+
+    private static final class Leaf extends Node {
+        /**
+         * Lex-sorted members packed column-major, as {@link DominationKernel} expects them
+         */
+        final double[] columns;
+
+        Leaf(int dim, @Nonnull double[] columns, int size) {
+            super(corner(dim, columns, size, true), corner(dim, columns, size, false), size);
+            this.columns = columns;
+        }
+
+        private static double[] corner(int dim, double[] columns, int size, boolean lower) {
+            final double[] corner = new double[dim];
+            for (int k = 0, column = 0; k < dim; ++k, column += size) {
+                double value = columns[column];
+                for (int i = 1; i < size; ++i) {
+                    value = lower ? Math.min(value, columns[column + i]) : Math.max(value, columns[column + i]);
+                }
+                corner[k] = value;
+            }
+            return corner;
+        }
+
+        @Nonnull
+        double[] member(int dim, int index) {
+            final double[] member = new double[dim];
+            for (int k = 0; k < dim; ++k) {
+                member[k] = columns[k * size + index];
+            }
+            return member;
+        }
+
+        @Nonnull
+        List<double[]> points(int dim) {
+            final List<double[]> points = new ArrayList<>(size + 1);
+            collectPoints(dim, points);
+            return points;
+        }
+
+        @Override
+        void collectPoints(int dim, @Nonnull List<double[]> points) {
+            for (int i = 0; i < size; ++i) {
+                points.add(member(dim, i));
+            }
+        }
+    }
+
+    private static final class Inner extends Node {
+        final int axis;
+        final double split;
+        /**
+         * Members with {@code objectives[axis] < split}
+         */
+        final Node left;
+        final Node right;
+
+        Inner(int dim, int axis, double split, @Nonnull Node left, @Nonnull Node right) {
+            super(new double[dim], new double[dim], left.size + right.size);
+            for (int k = 0; k < dim; ++k) {
+                min[k] = Math.min(left.min[k], right.min[k]);
+                max[k] = Math.max(left.max[k], right.max[k]);
+            }
+            this.axis = axis;
+            this.split = split;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void collectPoints(int dim, @Nonnull List<double[]> points) {
+            left.collectPoints(dim, points);
+            right.collectPoints(dim, points);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package nds;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Checks a point against all members of a level packed into a single column-major {@code double[]} block
+ * (see {@link DominationKernels#pack(java.util.List)}): objective {@code k} of row {@code r} is at
+ * {@code members[k * rows + r]}, where {@code rows = members.length / point.length}.
+ * <p>
+ * Rows are lex-sorted, so an implementation may stop at the first row whose first objective exceeds the
+ * point's one.
+ */
+public interface DominationKernel {
+    /**
+     * @param members Column-major lex-sorted objectives, {@code members.length} is a multiple of {@code point.length}
+     * @param fromRow First row to check, inclusive
+     * @param toRow   Last row to check, exclusive
+     * @param point   Objectives of the point
+     * @return Whether any member of the given rows dominates the point
+     */
+    boolean dominatedByAny(@Nonnull double[] members, int fromRow, int toRow, @Nonnull double[] point);
+
+    /**
+     * @param members Column-major lex-sorted objectives, {@code members.length} is a multiple of {@code point.length}
+     * @param point   Objectives of the point
+     * @return Whether any member dominates the point
+     */
+    default boolean dominatedByAny(@Nonnull double[] members, @Nonnull double[] point) {
+        return dominatedByAny(members, 0, members.length / point.length, point);
+    }
+}
@@ -0,0 +1,101 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Selection of the {@link DominationKernel} used by all level implementations.
+ * <p>
+ * The kernel is chosen once by the {@code nds.dominationKernel} system property:
+ * <ul>
+ * <li>{@code auto} (default) - {@code vector} if it can be loaded, {@code scalar} otherwise;</li>
+ * <li>{@code scalar} - {@link ScalarDominationKernel};</li>
+ * <li>{@code vector} - Vector API kernel, needs JDK 17+ and {@code --add-modules jdk.incubator.vector};</li>
+ * <li>any other value is treated as a name of a {@link DominationKernel} class with a public no-arg
+ * constructor.</li>
+ * </ul>
+ * If the {@code nds.dominationKernel.parallelThreshold} system property is set, levels with at least that many
+ * candidate rows are scanned by a {@link ParallelDominationKernel} in the common {@link ForkJoinPool}.
+ */
+public final class DominationKernels {
+    public static final String KERNEL_PROPERTY = "nds.dominationKernel";
+    public static final String PARALLEL_THRESHOLD_PROPERTY = "nds.dominationKernel.parallelThreshold";
+
+    private static final String VECTOR_KERNEL_CLASS = "nds.VectorDominationKernel";
+    private static final double[] EMPTY = new double[0];
+
+    private static final DominationKernel DEFAULT = createDefault();
+
+    private DominationKernels() {
+    }
+
+    @Nonnull
+    public static DominationKernel getDefault() {
+        return DEFAULT;
+    }
+
+    @Nonnull
+    private static DominationKernel createDefault() {
+        final DominationKernel kernel = byName(System.getProperty(KERNEL_PROPERTY, "auto"));
+        final Integer parallelThreshold = Integer.getInteger(PARALLEL_THRESHOLD_PROPERTY);
+        return parallelThreshold != null
+            ? new ParallelDominationKernel(kernel, parallelThreshold, ForkJoinPool.commonPool())
+            : kernel;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the kernel can not be loaded
+     */
+    @Nonnull
+    public static DominationKernel byName(@Nonnull String name) {
+        switch (name) {
+            case "auto":
+                try {
+                    return load(VECTOR_KERNEL_CLASS);
+                } catch (IllegalArgumentException e) {
+                    return ScalarDominationKernel.INSTANCE;
+                }
+            case "scalar":
+                return ScalarDominationKernel.INSTANCE;
+            case "vector":
+                return load(VECTOR_KERNEL_CLASS);
+            default:
+                return load(name);
+        }
+    }
+
+    @Nonnull
+    private static DominationKernel load(@Nonnull String className) {
+        try {
+            return (DominationKernel) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            throw new IllegalArgumentException("Can not load domination kernel " + className, e);
+        }
+    }
+
+    /**
+     * @param members Lex-sorted individuals
+     * @return Column-major objectives of {@code members}
+     */
+    @Nonnull
+    public static double[] pack(@Nonnull List<? extends IIndividual<?>> members) {
+        if (members.isEmpty()) {
+            return EMPTY;
+        }
+        final int rows = members.size();
+        final int dim = members.get(0).getObjectives().length;
+        final double[] packed = new double[rows * dim];
+        int row = 0;
+        for (IIndividual<?> member : members) {
+            final double[] objectives = member.getObjectives();
+            for (int k = 0; k < dim; ++k) {
+                packed[k * rows + row] = objectives[k];
+            }
+            ++row;
+        }
+        return packed;
+    }
+}
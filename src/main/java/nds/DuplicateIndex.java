@@ -0,0 +1,346 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Set of the objective vectors present in a population, used to reject duplicate insertions.
+ * <p>
+ * Objectives are quantised to cells of side {@code epsilon} (or taken bit for bit if it is 0, with {@code -0.0}
+ * equal to {@code 0.0}) and hashed into a 64-bit fingerprint, which is the key of an open-addressing table of
+ * primitive longs: no boxing and no reliance on {@code IIndividual} equality. Each slot also keeps the objectives
+ * it was added with, and a fingerprint match is only a duplicate if all objectives fall into the same cells, so a
+ * fingerprint collision never rejects a distinct vector. With epsilon, points closer than a cell may still be told
+ * apart if a cell border lies between them.
+ * <p>
+ * Slots go from empty to a key and from a key to a tombstone by compare-and-set, and are reused only when the table
+ * is rebuilt under the exclusive side of a {@link StampedLock}. The epsilon defaults to the
+ * {@code nds.dedup.epsilon} system property. Lookups and hits are only counted while {@link PopulationMetrics}
+ * records.
+ */
+@ThreadSafe
+public final class DuplicateIndex {
+    public static final String EPSILON_PROPERTY = "nds.dedup.epsilon";
+
+    private static final double DEFAULT_EPSILON = Double.parseDouble(System.getProperty(EPSILON_PROPERTY, "0"));
+    private static final long EMPTY = 0;
+    private static final long REMOVED = 1;
+    private static final int MIN_CAPACITY = 64;
+    private static final int MAX_LOAD_PERCENT = 50;
+
+    private static final int ADDED = 0;
+    private static final int DUPLICATE = 1;
+    private static final int FULL = 2;
+
+    private final double epsilon;
+    private final StampedLock tableLock = new StampedLock();
+    private volatile Table table = new Table(MIN_CAPACITY);
+    /**
+     * Slots which are not empty, i.e. keys and tombstones
+     */
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public DuplicateIndex() {
+        this(DEFAULT_EPSILON);
+    }
+
+    /**
+     * @param epsilon Side of a quantisation cell, 0 for exact matching
+     */
+    public DuplicateIndex(double epsilon) {
+        if (!(epsilon >= 0) || Double.isInfinite(epsilon)) {
+            throw new IllegalArgumentException("Epsilon must be finite and non-negative: " + epsilon);
+        }
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * @return Whether the objectives of {@code individual} were absent, i.e. it is not a duplicate
+     */
+    public boolean add(@Nonnull IIndividual<?> individual) {
+        final double[] objectives = individual.getObjectives();
+        final long key = keyOf(objectives);
+        int result;
+        while (true) {
+            final long stamp = tableLock.readLock();
+            try {
+                result = insert(table, key, objectives);
+            } finally {
+                tableLock.unlockRead(stamp);
+            }
+            if (result != FULL) {
+                break;
+            }
+            //concurrent insertions went past the load limit before anyone could rebuild
+            growIfLoaded(0);
+        }
+        if (PopulationMetrics.ENABLED) {
+            lookups.increment();
+        }
+        if (result == DUPLICATE) {
+            if (PopulationMetrics.ENABLED) {
+                hits.increment();
+            }
+            return false;
+        }
+        growIfLoaded(MAX_LOAD_PERCENT);
+        return true;
+    }
+
+    public boolean contains(@Nonnull IIndividual<?> individual) {
+        final double[] objectives = individual.getObjectives();
+        final long key = keyOf(objectives);
+        final long stamp = tableLock.readLock();
+        try {
+            return find(table, key, objectives) >= 0;
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    public boolean remove(@Nonnull IIndividual<?> individual) {
+        final double[] objectives = individual.getObjectives();
+        final long key = keyOf(objectives);
+        final long stamp = tableLock.readLock();
+        try {
+            return delete(table, key, objectives);
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes the members of a dropped level under a single acquisition of the table lock
+     */
+    public void removeAll(@Nonnull Collection<? extends IIndividual<?>> individuals) {
+        final long stamp = tableLock.readLock();
+        try {
+            final Table t = table;
+            for (IIndividual<?> individual : individuals) {
+                final double[] objectives = individual.getObjectives();
+                delete(t, keyOf(objectives), objectives);
+            }
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Drops all keys by replacing the table, the hit statistics are kept
+     */
+    public void clear() {
+        final long stamp = tableLock.writeLock();
+        try {
+            table = new Table(MIN_CAPACITY);
+            used.set(0);
+            size.set(0);
+        } finally {
+            tableLock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @return Number of {@link #add} calls, 0 unless {@link PopulationMetrics} records
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return Number of {@link #add} calls which found a duplicate, 0 unless {@link PopulationMetrics} records
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public double getHitRate() {
+        final long n = lookups.sum();
+        return n == 0 ? 0 : (double) hits.sum() / n;
+    }
+
+    private int insert(Table t, long key, @Nonnull double[] objectives) {
+        final int mask = t.keys.length() - 1;
+        int i = (int) key & mask;
+        for (int probes = 0; probes < t.keys.length(); ++probes, i = (i + 1) & mask) {
+            long slot = t.keys.get(i);
+            if (slot == EMPTY) {
+                if (t.keys.compareAndSet(i, EMPTY, key)) {
+                    t.vectors.set(i, objectives);
+                    used.incrementAndGet();
+                    size.incrementAndGet();
+                    return ADDED;
+                }
+                slot = t.keys.get(i);
+            }
+            if (slot == key && sameCells(t.vectorAt(i, key), objectives)) {
+                return DUPLICATE;
+            }
+        }
+        return FULL;
+    }
+
+    private void growIfLoaded(int maxLoadPercent) {
+        if (used.get() * 100L > table.keys.length() * (long) maxLoadPercent) {
+            final long stamp = tableLock.writeLock();
+            try {
+                if (used.get() * 100L > table.keys.length() * (long) maxLoadPercent) {
+                    rebuild();
+                }
+            } finally {
+                tableLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private boolean delete(Table t, long key, @Nonnull double[] objectives) {
+        final int i = find(t, key, objectives);
+        if (i >= 0 && t.keys.compareAndSet(i, key, REMOVED)) {
+            t.vectors.set(i, null);
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private int find(Table t, long key, @Nonnull double[] objectives) {
+        final int mask = t.keys.length() - 1;
+        int i = (int) key & mask;
+        for (int probes = 0; probes < t.keys.length(); ++probes, i = (i + 1) & mask) {
+            final long slot = t.keys.get(i);
+            if (slot == key && sameCells(t.vectorAt(i, key), objectives)) {
+                return i;
+            }
+            if (slot == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Must be called under the exclusive side of {@link #tableLock}. Drops tombstones and keeps the load at most a
+     * quarter of the new capacity.
+     */
+    private void rebuild() {
+        final Table old = table;
+        int capacity = MIN_CAPACITY;
+        while (capacity < size.get() * 4L) {
+            capacity <<= 1;
+        }
+        final Table t = new Table(capacity);
+        final int mask = capacity - 1;
+        int live = 0;
+        for (int i = 0; i < old.keys.length(); ++i) {
+            final long key = old.keys.get(i);
+            if (key != EMPTY && key != REMOVED) {
+                int j = (int) key & mask;
+                while (t.keys.get(j) != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                t.keys.set(j, key);
+                t.vectors.set(j, old.vectors.get(i));
+                ++live;
+            }
+        }
+        table = t;
+        used.set(live);
+        size.set(live);
+    }
+
+    /**
+     * @return Whether both vectors fall into the same cells, {@code false} if {@code stored} is {@code null}
+     */
+    private boolean sameCells(@Nullable double[] stored, @Nonnull double[] objectives) {
+        if (stored == null || stored.length != objectives.length) {
+            return false;
+        }
+        for (int i = 0; i < objectives.length; ++i) {
+            if (cellOf(stored[i]) != cellOf(objectives[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long cellOf(double objective) {
+        return epsilon > 0
+            ? (long) Math.floor(objective / epsilon)
+            : Double.doubleToLongBits(objective == 0 ? 0.0 : objective);
+    }
+
+    private long keyOf(@Nonnull double[] objectives) {
+        long h = objectives.length;
+        for (double objective : objectives) {
+            h = (h ^ mix(cellOf(objective))) * 0x9E3779B97F4A7C15L;
+        }
+        h = mix(h);
+        //EMPTY and REMOVED are reserved
+        return h == EMPTY || h == REMOVED ? h + 2 : h;
+    }
+
+    /**
+     * Finalizer of MurmurHash3
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + ", lookups=" + getLookupCount() + ", hitRate=" + String.format("%.3f", getHitRate());
+    }
+
+    /**
+     * Keys and, in the same slots, the objectives they were added with. A key is published before its objectives.
+     */
+    private static final class Table {
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<double[]> vectors;
+
+        private Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.vectors = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * @return Objectives of {@code key} at slot {@code i}, waiting for an insertion which has published the key
+         * but not yet the objectives; {@code null} if the slot no longer holds the key
+         */
+        @Nullable
+        private double[] vectorAt(int i, long key) {
+            while (true) {
+                final double[] vector = vectors.get(i);
+                if (vector != null || keys.get(i) != key) {
+                    return vector;
+                }
+                Thread.yield();
+            }
+        }
+    }
+}
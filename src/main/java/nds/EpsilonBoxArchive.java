@@ -0,0 +1,225 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded archive of epsilon-box non-dominated points, fed with members which entered the first non-domination level
+ * of a population. Objectives are minimised.
+ * <p>
+ * A point dominates another one if its box (objectives divided by epsilon and floored) dominates the other's box;
+ * within one box the point closer to the box corner wins and the resident one is kept on a tie, as in MOEA
+ * Framework's {@code EpsilonBoxDominanceArchive}. Once the archive grows over its capacity, all epsilons are doubled
+ * and the members are filtered again, so that the size stays bounded.
+ * <p>
+ * Members are an immutable array replaced by compare-and-set: reads never block and cost one volatile read, an offer
+ * which is dominated by a member is rejected without allocation. {@link #getMembers()} returns the same list until the
+ * members change, so callers may cache whatever they derive from it by the list's identity.
+ */
+@ThreadSafe
+public final class EpsilonBoxArchive<T> {
+    private final int capacity;
+    private final AtomicReference<State<T>> state;
+
+    /**
+     * @param epsilon  Box side for every objective
+     * @param capacity Max. number of members
+     */
+    public EpsilonBoxArchive(double epsilon, int capacity) {
+        this(new double[]{epsilon}, capacity);
+    }
+
+    /**
+     * @param epsilons Box side per objective, the last one is used for the remaining objectives
+     * @param capacity Max. number of members
+     */
+    public EpsilonBoxArchive(@Nonnull double[] epsilons, int capacity) {
+        if (epsilons.length == 0) {
+            throw new IllegalArgumentException("No epsilons given");
+        }
+        for (double epsilon : epsilons) {
+            if (!(epsilon > 0) || Double.isInfinite(epsilon)) {
+                throw new IllegalArgumentException("Epsilons must be finite and positive: " + Arrays.toString(epsilons));
+            }
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.state = new AtomicReference<>(new State<>(emptyMembers(), epsilons.clone()));
+    }
+
+    /**
+     * @return Whether {@code individual} became a member
+     */
+    public boolean offer(@Nonnull IIndividual<T> individual) {
+        final double[] objectives = individual.getObjectives();
+        while (true) {
+            final State<T> current = state.get();
+            int dominated = 0;
+            for (IIndividual<T> member : current.members) {
+                final int cmp = compare(objectives, member.getObjectives(), current.epsilons);
+                if (cmp > 0) {
+                    return false;
+                }
+                if (cmp < 0) {
+                    ++dominated;
+                }
+            }
+
+            State<T> next = current.with(individual, dominated);
+            while (next.members.length > capacity) {
+                next = next.coarsened();
+            }
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return Current members, never modified afterwards; the same instance until the members change
+     */
+    @Nonnull
+    public List<IIndividual<T>> getMembers() {
+        return state.get().memberList;
+    }
+
+    public int size() {
+        return state.get().members.length;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Box sides of the current members, per objective as given to the constructor
+     */
+    @Nonnull
+    public double[] getEpsilons() {
+        return state.get().epsilons.clone();
+    }
+
+    /**
+     * @return Negative if {@code a} epsilon-box dominates {@code b}, positive if {@code b} dominates {@code a} or
+     * they share a box and {@code b} is not farther from its corner, 0 if they are non-dominated
+     */
+    static int compare(@Nonnull double[] a, @Nonnull double[] b, @Nonnull double[] epsilons) {
+        boolean aBetter = false;
+        boolean bBetter = false;
+        for (int i = 0; i < a.length; ++i) {
+            final double epsilon = epsilonOf(epsilons, i);
+            final double boxA = Math.floor(a[i] / epsilon);
+            final double boxB = Math.floor(b[i] / epsilon);
+            if (boxA < boxB) {
+                aBetter = true;
+            } else if (boxA > boxB) {
+                bBetter = true;
+            }
+            if (aBetter && bBetter) {
+                return 0;
+            }
+        }
+        if (aBetter) {
+            return -1;
+        }
+        if (bBetter) {
+            return 1;
+        }
+        return cornerDistance(a, epsilons) < cornerDistance(b, epsilons) ? -1 : 1;
+    }
+
+    private static double cornerDistance(@Nonnull double[] objectives, @Nonnull double[] epsilons) {
+        double sum = 0;
+        for (int i = 0; i < objectives.length; ++i) {
+            final double epsilon = epsilonOf(epsilons, i);
+            final double d = objectives[i] - Math.floor(objectives[i] / epsilon) * epsilon;
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private static double epsilonOf(@Nonnull double[] epsilons, int objective) {
+        return epsilons[Math.min(objective, epsilons.length - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> IIndividual<T>[] emptyMembers() {
+        return (IIndividual<T>[]) new IIndividual[0];
+    }
+
+    @Override
+    public String toString() {
+        final State<T> current = state.get();
+        return "size=" + current.members.length + ", epsilons=" + Arrays.toString(current.epsilons);
+    }
+
+    @Immutable
+    private static final class State<T> {
+        private final IIndividual<T>[] members;
+        private final List<IIndividual<T>> memberList;
+        private final double[] epsilons;
+
+        private State(IIndividual<T>[] members, double[] epsilons) {
+            this.members = members;
+            this.memberList = Collections.unmodifiableList(Arrays.asList(members));
+            this.epsilons = epsilons;
+        }
+
+        /**
+         * @param dominated Number of members dominated by {@code addend}
+         */
+        private State<T> with(IIndividual<T> addend, int dominated) {
+            final IIndividual<T>[] next = Arrays.copyOf(members, members.length - dominated + 1);
+            int size = 0;
+            if (dominated > 0) {
+                for (IIndividual<T> member : members) {
+                    if (compare(addend.getObjectives(), member.getObjectives(), epsilons) >= 0) {
+                        next[size++] = member;
+                    }
+                }
+            } else {
+                size = members.length;
+            }
+            next[size] = addend;
+            return new State<>(next, epsilons);
+        }
+
+        /**
+         * @return Members which stay non-dominated with doubled epsilons
+         */
+        private State<T> coarsened() {
+            final double[] doubled = new double[epsilons.length];
+            for (int i = 0; i < epsilons.length; ++i) {
+                doubled[i] = epsilons[i] * 2;
+            }
+            final List<IIndividual<T>> kept = new ArrayList<>(members.length);
+            for (IIndividual<T> member : members) {
+                boolean dominated = false;
+                for (int i = kept.size() - 1; i >= 0; --i) {
+                    final int cmp = compare(member.getObjectives(), kept.get(i).getObjectives(), doubled);
+                    if (cmp > 0) {
+                        dominated = true;
+                        break;
+                    }
+                    if (cmp < 0) {
+                        kept.remove(i);
+                    }
+                }
+                if (!dominated) {
+                    kept.add(member);
+                }
+            }
+            return new State<>(kept.toArray(emptyMembers()), doubled);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hypervolume of the first non-domination level, updated point by point as members enter or leave it. Objectives are
+ * minimised, the volume is measured up to {@code reference}.
+ * <p>
+ * With up to {@value #EXACT_MAX_DIMENSION} objectives the volume is exact: a point changes it by its exclusive
+ * contribution, i.e. its box minus the volume of the other points clipped to that box, computed by a sweep in
+ * {@code O(n log n)}. With more objectives it is a Monte Carlo estimate over a fixed set of samples drawn in the box
+ * {@code [lower, reference]}, each of which counts the points dominating it.
+ * <p>
+ * Offered points dominated by the tracked ones are ignored and tracked points dominated by an offered one are dropped,
+ * so feeding every insertion at rank 0 is enough to follow evictions from the first level. Updates are serialized,
+ * reads of the volume never block.
+ */
+@ThreadSafe
+public final class HypervolumeTracker {
+    public static final int EXACT_MAX_DIMENSION = 3;
+
+    private static final int DEFAULT_SAMPLES = 20_000;
+
+    private final int dim;
+    private final double[] reference;
+    private final double boxVolume;
+
+    private final Lock updateLock = new ReentrantLock();
+    private final List<double[]> front = new ArrayList<>();
+    private volatile double hypervolume;
+
+    private final double[][] samples;
+    private final int[] coverage;
+    private int coveredSamples;
+
+    /**
+     * @param lower     Lower corner of the objective space, used to draw samples and to normalise
+     * @param reference Reference point
+     */
+    public HypervolumeTracker(@Nonnull double[] lower, @Nonnull double[] reference) {
+        this(lower, reference, DEFAULT_SAMPLES, 0);
+    }
+
+    /**
+     * @param samples Number of Monte Carlo samples, ignored when the volume is exact
+     * @param seed    Seed of the samples
+     */
+    public HypervolumeTracker(@Nonnull double[] lower, @Nonnull double[] reference, int samples, long seed) {
+        if (lower.length != reference.length || lower.length == 0) {
+            throw new IllegalArgumentException("Bounds of different or zero dimensions: "
+                + Arrays.toString(lower) + ", " + Arrays.toString(reference));
+        }
+        this.dim = lower.length;
+        this.reference = reference.clone();
+        double volume = 1;
+        for (int i = 0; i < dim; ++i) {
+            if (!(lower[i] < reference[i])) {
+                throw new IllegalArgumentException("Empty box: " + Arrays.toString(lower) + ", " + Arrays.toString(reference));
+            }
+            volume *= reference[i] - lower[i];
+        }
+        this.boxVolume = volume;
+
+        if (isExact()) {
+            this.samples = null;
+            this.coverage = null;
+        } else {
+            if (samples <= 0) {
+                throw new IllegalArgumentException("Number of samples must be positive: " + samples);
+            }
+            final Random random = new Random(seed);
+            this.samples = new double[samples][dim];
+            for (double[] sample : this.samples) {
+                for (int i = 0; i < dim; ++i) {
+                    sample[i] = lower[i] + random.nextDouble() * (reference[i] - lower[i]);
+                }
+            }
+            this.coverage = new int[samples];
+        }
+    }
+
+    /**
+     * A point entered the first level
+     *
+     * @return Whether the volume may have changed, i.e. the point is not dominated by tracked ones
+     */
+    public boolean add(@Nonnull double[] point) {
+        checkDimension(point);
+        updateLock.lock();
+        try {
+            for (double[] tracked : front) {
+                if (weaklyDominates(tracked, point)) {
+                    return false;
+                }
+            }
+
+            //the volume of dominated points lies within the box of the new one, so they are dropped after it is added
+            if (isExact()) {
+                hypervolume += contribution(point);
+            } else {
+                cover(point, 1);
+            }
+            for (int i = front.size() - 1; i >= 0; --i) {
+                final double[] tracked = front.get(i);
+                if (weaklyDominates(point, tracked)) {
+                    front.remove(i);
+                    if (!isExact()) {
+                        cover(tracked, -1);
+                    }
+                }
+            }
+            if (!isExact()) {
+                hypervolume = boxVolume * coveredSamples / samples.length;
+            }
+            front.add(point.clone());
+            return true;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * A point left the first level other than by being dominated by an added one, e.g. by truncation
+     *
+     * @return Whether the point was tracked
+     */
+    public boolean remove(@Nonnull double[] point) {
+        checkDimension(point);
+        updateLock.lock();
+        try {
+            for (int i = 0; i < front.size(); ++i) {
+                final double[] tracked = front.get(i);
+                if (Arrays.equals(tracked, point)) {
+                    front.remove(i);
+                    if (isExact()) {
+                        hypervolume -= contribution(tracked);
+                    } else {
+                        cover(tracked, -1);
+                        hypervolume = boxVolume * coveredSamples / samples.length;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Drops all tracked points and adds {@code points} instead, e.g. a fresh first level after missed updates. Reads
+     * during the reset may see the volume of a part of the points.
+     */
+    public void reset(@Nonnull Iterable<double[]> points) {
+        updateLock.lock();
+        try {
+            front.clear();
+            hypervolume = 0;
+            if (!isExact()) {
+                Arrays.fill(coverage, 0);
+                coveredSamples = 0;
+            }
+            for (double[] point : points) {
+                add(point);
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    public double getHypervolume() {
+        return hypervolume;
+    }
+
+    /**
+     * @return Hypervolume divided by the volume of {@code [lower, reference]}
+     */
+    public double getNormalizedHypervolume() {
+        return hypervolume / boxVolume;
+    }
+
+    public boolean isExact() {
+        return dim <= EXACT_MAX_DIMENSION;
+    }
+
+    public int size() {
+        updateLock.lock();
+        try {
+            return front.size();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void checkDimension(@Nonnull double[] point) {
+        if (point.length != dim) {
+            throw new IllegalArgumentException("Expected " + dim + " objectives, got " + point.length);
+        }
+    }
+
+    /**
+     * Must be called under {@link #updateLock}
+     *
+     * @return Volume dominated by {@code point} and by none of the other tracked points
+     */
+    private double contribution(@Nonnull double[] point) {
+        double box = 1;
+        for (int i = 0; i < dim; ++i) {
+            if (point[i] >= reference[i]) {
+                return 0;
+            }
+            box *= reference[i] - point[i];
+        }
+
+        final List<double[]> clipped = new ArrayList<>(front.size());
+        for (double[] tracked : front) {
+            final double[] c = new double[dim];
+            boolean inside = true;
+            for (int i = 0; i < dim && inside; ++i) {
+                c[i] = Math.max(tracked[i], point[i]);
+                inside = c[i] < reference[i];
+            }
+            if (inside) {
+                clipped.add(c);
+            }
+        }
+        return box - volume(clipped);
+    }
+
+    /**
+     * @param points Points strictly below the reference point
+     */
+    private double volume(@Nonnull List<double[]> points) {
+        if (points.isEmpty()) {
+            return 0;
+        }
+        switch (dim) {
+            case 1: {
+                double min = reference[0];
+                for (double[] p : points) {
+                    min = Math.min(min, p[0]);
+                }
+                return reference[0] - min;
+            }
+            case 2: {
+                points.sort(Comparator.comparingDouble(p -> p[0]));
+                double area = 0;
+                double prevY = reference[1];
+                for (double[] p : points) {
+                    if (p[1] < prevY) {
+                        area += (reference[0] - p[0]) * (prevY - p[1]);
+                        prevY = p[1];
+                    }
+                }
+                return area;
+            }
+            case 3: {
+                points.sort(Comparator.comparingDouble(p -> p[2]));
+                final Staircase staircase = new Staircase(reference[0], reference[1]);
+                double volume = 0;
+                for (int i = 0; i < points.size(); ++i) {
+                    final double[] p = points.get(i);
+                    staircase.insert(p[0], p[1]);
+                    final double nextZ = i + 1 < points.size() ? points.get(i + 1)[2] : reference[2];
+                    volume += staircase.area * (nextZ - p[2]);
+                }
+                return volume;
+            }
+            default:
+                throw new IllegalStateException("No exact volume for " + dim + " objectives");
+        }
+    }
+
+    /**
+     * Must be called under {@link #updateLock}
+     */
+    private void cover(@Nonnull double[] point, int delta) {
+        for (int j = 0; j < samples.length; ++j) {
+            if (weaklyDominates(point, samples[j])) {
+                final int before = coverage[j];
+                coverage[j] += delta;
+                if (before == 0) {
+                    ++coveredSamples;
+                } else if (coverage[j] == 0) {
+                    --coveredSamples;
+                }
+            }
+        }
+    }
+
+    private static boolean weaklyDominates(@Nonnull double[] a, @Nonnull double[] b) {
+        for (int i = 0; i < a.length; ++i) {
+            if (a[i] > b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "hypervolume=" + hypervolume + (isExact() ? "" : " (estimate)") + ", front=" + size();
+    }
+
+    /**
+     * Non-dominated 2D points below {@code (rx, ry)} with the area they dominate, updated by exclusive areas
+     */
+    private static final class Staircase {
+        private final double rx;
+        private final double ry;
+        private final TreeMap<Double, Double> points = new TreeMap<>();
+        private double area;
+
+        private Staircase(double rx, double ry) {
+            this.rx = rx;
+            this.ry = ry;
+        }
+
+        private void insert(double x, double y) {
+            final Map.Entry<Double, Double> floor = points.floorEntry(x);
+            if (floor != null && floor.getValue() <= y) {
+                return;
+            }
+            Map.Entry<Double, Double> dominated = points.ceilingEntry(x);
+            while (dominated != null && dominated.getValue() >= y) {
+                area -= exclusiveArea(dominated.getKey(), dominated.getValue());
+                points.remove(dominated.getKey());
+                dominated = points.higherEntry(dominated.getKey());
+            }
+            points.put(x, y);
+            area += exclusiveArea(x, y);
+        }
+
+        private double exclusiveArea(double x, double y) {
+            final Double nextX = points.higherKey(x);
+            final Map.Entry<Double, Double> prev = points.lowerEntry(x);
+            return ((nextX == null ? rx : nextX) - x) * ((prev == null ? ry : prev.getValue()) - y);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package nds;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Population which publishes the changes made to its levels, see {@link PopulationEvent}.
+ */
+public interface IEventPublishingPopulation<T> extends IManagedPopulation<T> {
+    /**
+     * Streams changes made by {@code addIndividual} and truncation to {@code listener}, in batches and on a
+     * thread of its own. Inserters never wait for a subscriber: events which do not fit into the subscription's
+     * buffer are dropped and reported by {@link PopulationListener#onOverflow(long)}. Operations already running
+     * when the subscription is made may be missed, so a subscriber should take a snapshot after subscribing.
+     *
+     * @param capacity Max. number of buffered events
+     * @param maxBatch Max. number of events delivered at once
+     * @return Subscription to close when done
+     */
+    @Nonnull
+    PopulationEventPublisher.Subscription<T> subscribe(@Nonnull PopulationListener<T> listener,
+                                                       int capacity,
+                                                       int maxBatch);
+
+    @Nonnull
+    default PopulationEventPublisher.Subscription<T> subscribe(@Nonnull PopulationListener<T> listener) {
+        return subscribe(listener, PopulationEventPublisher.DEFAULT_CAPACITY, PopulationEventPublisher.DEFAULT_MAX_BATCH);
+    }
+
+    @Override
+    IEventPublishingPopulation<T> clone();
+}
@@ -6,12 +6,9 @@ import ru.ifmo.nds.util.AscLexSortComparator;
 import ru.ifmo.nds.util.RankedPopulation;
 
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.TreeSet;
-import java.util.concurrent.ThreadLocalRandom;
 
 @SuppressWarnings("unused")
 public interface IManagedPopulation<T> extends Cloneable {
@@ -21,6 +18,18 @@ public interface IManagedPopulation<T> extends Cloneable {
      */
     int addIndividual(@Nonnull IIndividual<T> individual);
 
+    /**
+     * Adds a batch of individuals. Implementations may push the whole batch down the levels at once, the default
+     * one adds them one by one.
+     *
+     * @param individuals Individuals to add
+     */
+    default void addIndividuals(@Nonnull Collection<IIndividual<T>> individuals) {
+        for (IIndividual<T> individual : individuals) {
+            addIndividual(individual);
+        }
+    }
+
     /**
      * @return Some valid state of non-domination levels. The returned value is guaranteed to persist, no other thread
      * should alter it. Index in list equals to layer's rank.
@@ -41,65 +50,32 @@ public interface IManagedPopulation<T> extends Cloneable {
 
     IManagedPopulation<T> clone();
 
+    /**
+     * @return Instrumentation of this population, {@link PopulationMetrics#NONE} if it has none
+     */
+    @Nonnull
+    default PopulationMetrics getMetrics() {
+        return PopulationMetrics.NONE;
+    }
+
     /**
      * @param count max. number of solutions to return
      * @return list with min(population size, count) random solutions
      */
     @Nonnull
     default List<RankedIndividual<T>> getRandomSolutions(int count) {
-        if (count < 0) {
-            throw new IllegalArgumentException("Negative number of random solutions requested");
-        }
-
-        final PopulationSnapshot<T> popSnap = getSnapshot();
-
-        final int actualCount = Math.min(count, popSnap.getSize());
-        final ThreadLocalRandom random = ThreadLocalRandom.current();
-        final TreeSet<Integer> indices = new TreeSet<>();
-        while (indices.size() < actualCount) {
-            indices.add(random.nextInt(0, popSnap.getSize()));
-        }
-
-        final List<RankedIndividual<T>> res = new ArrayList<>();
-        final Iterator<Integer> it = indices.iterator();
-        Integer next = getNext(it);
-        int prevLevelsSizeSum = 0;
-        int rank = 0;
-        for (INonDominationLevel<T> level : popSnap.getLevels()) {
-            final int levelSize = level.getMembers().size();
-            while (next != null && next - prevLevelsSizeSum < levelSize) {
-                final IIndividual<T> ind = level.getMembers().get(next - prevLevelsSizeSum);
-                res.add(new RankedIndividual<>(ind.getObjectives(), ind.getCrowdingDistance(), rank, ind.getPayload()));
-                next = getNext(it);
-            }
-            prevLevelsSizeSum += levelSize;
-            rank++;
-        }
-
+        final List<INonDominationLevel<T>> levels = getSnapshot().getLevels();
+        final List<RankedIndividual<T>> res = LevelSizes.sample(
+            count,
+            LevelSizes.cumulative(levels),
+            (rank, index) -> levels.get(rank).getMembers().get(index)
+        );
+        assert res != null : "Snapshot levels never reject a member";
         return res;
     }
 
-    default Integer getNext(Iterator<Integer> it) {
-        return it.hasNext() ? it.next() : null;
-    }
-
     default int determineRank(IIndividual<T> point) {
-        final List<? extends INonDominationLevel<T>> ndLayers = getSnapshot().getLevels();
-
-        int l = 0;
-        int r = ndLayers.size() - 1;
-        int lastNonDominating = r + 1;
-        while (l <= r) { //двоичный поиск, куда воткнуть точку
-            final int test = (l + r) / 2;
-            if (!ndLayers.get(test).dominatedByAnyPointOfThisLayer(point)) {
-                lastNonDominating = test;
-                r = test - 1;
-            } else {
-                l = test + 1;
-            }
-        }
-
-        return lastNonDominating;
+        return RankSearch.determineRank(getSnapshot().getLevels(), point);
     }
 
     default RankedPopulation<IIndividual<T>> toRankedPopulation() {
@@ -3,17 +3,16 @@ package nds;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 import ru.ifmo.nds.IIndividual;
 import ru.ifmo.nds.dcns.sorter.JFB2014;
 import ru.ifmo.nds.impl.FitnessAndCdIndividual;
 import ru.ifmo.nds.util.RankedPopulation;
-import ru.ifmo.nds.util.Utils;
 
 @ThreadSafe
 @Immutable
@@ -24,6 +23,16 @@ public class JFBYNonDominationLevel<T> implements INonDominationLevel<T> {
     private final List<IIndividual<T>> members;
     @Nonnull
     private final SortedObjectives<IIndividual<T>, T> sortedObjectives;
+    /**
+     * Lazily packed {@link #members}, see {@link DominationKernels#pack(List)}
+     */
+    @Nullable
+    private volatile double[] packedMembers;
+    /**
+     * Lazily built, then maintained by {@link #addMembers(List)} while the level is large enough
+     */
+    @Nullable
+    private volatile DominanceIndex index;
 
     public JFBYNonDominationLevel(@Nonnull JFB2014 sorter, @Nonnull List<IIndividual<T>> members) {
         this.sorter = sorter;
@@ -41,9 +50,14 @@ public class JFBYNonDominationLevel<T> implements INonDominationLevel<T> {
     }
 
     public JFBYNonDominationLevel(@Nonnull JFB2014 sorter, @Nonnull List<IIndividual<T>> members, @Nonnull SortedObjectives<IIndividual<T>, T> sortedObjectives) {
+        this(sorter, members, sortedObjectives, null);
+    }
+
+    private JFBYNonDominationLevel(@Nonnull JFB2014 sorter, @Nonnull List<IIndividual<T>> members, @Nonnull SortedObjectives<IIndividual<T>, T> sortedObjectives, @Nullable DominanceIndex index) {
         this.sorter = sorter;
         this.members = Collections.unmodifiableList(members);
         this.sortedObjectives = sortedObjectives;
+        this.index = index;
     }
 
     @Nonnull
@@ -67,35 +81,55 @@ public class JFBYNonDominationLevel<T> implements INonDominationLevel<T> {
             }
         }
 
-        SortedObjectives<IIndividual<T>, T> nso = this.sortedObjectives.update(addends, nextLevel, (ix, d) -> {
+        SortedObjectives<IIndividual<T>, T> nso = this.sortedObjectives.updateIncremental(addends, nextLevel, (ix, d) -> {
             return new FitnessAndCdIndividual(ix.getObjectives(), d, ix.getPayload());
         });
-        return new MemberAdditionResult(nextLevel, new JFBYNonDominationLevel(this.sorter, nso.getLexSortedPop(), nso));
+        List<IIndividual<T>> newMembers = nso.getLexSortedPop();
+        DominanceIndex currentIndex = this.index;
+        DominanceIndex newIndex = currentIndex != null && DominanceIndex.isEnabledFor(newMembers.size())
+            ? currentIndex.update(addends, nextLevel)
+            : null;
+        return new MemberAdditionResult(nextLevel, new JFBYNonDominationLevel(this.sorter, newMembers, nso, newIndex));
     }
 
-    public boolean dominatedByAnyPointOfThisLayer(@Nonnull IIndividual point) {
-        double[] pointObj = point.getObjectives();
-        Iterator var3 = this.members.iterator();
-
-        while(var3.hasNext()) {
-            IIndividual member = (IIndividual)var3.next();
-            double[] memberObj = member.getObjectives();
-            if (memberObj[0] > pointObj[0]) {
-                break;
-            }
+    /**
+     * @param removals Members of this level in lex order
+     * @return This level without {@code removals}, with crowding distances recomputed
+     */
+    @Nonnull
+    public JFBYNonDominationLevel<T> removeMembers(@Nonnull List<IIndividual<T>> removals) {
+        final SortedObjectives<IIndividual<T>, T> nso = this.sortedObjectives.update(
+            Collections.emptyList(),
+            removals,
+            (i1, d) -> new FitnessAndCdIndividual<>(i1.getObjectives(), d, i1.getPayload())
+        );
+        return new JFBYNonDominationLevel<>(this.sorter, nso.getLexSortedPop(), nso);
+    }
 
-            if (Utils.dominates(memberObj, pointObj, pointObj.length) < 0) {
-                return true;
+    public boolean dominatedByAnyPointOfThisLayer(@Nonnull IIndividual point) {
+        if (DominanceIndex.isEnabledFor(this.members.size())) {
+            DominanceIndex currentIndex = this.index;
+            if (currentIndex == null) {
+                //benign race: every thread indexes the same immutable members
+                currentIndex = DominanceIndex.create(point.getObjectives().length, this.members);
+                this.index = currentIndex;
             }
+            return currentIndex.dominatedByAny(point.getObjectives());
         }
 
-        return false;
+        double[] packed = this.packedMembers;
+        if (packed == null) {
+            //benign race: every thread packs the same immutable members
+            packed = DominationKernels.pack(this.members);
+            this.packedMembers = packed;
+        }
+        return DominationKernels.getDefault().dominatedByAny(packed, point.getObjectives());
     }
 
     public JFBYNonDominationLevel<T> copy() {
         List<IIndividual<T>> newMembers = new ArrayList(this.members.size());
         newMembers.addAll(this.members);
-        return new JFBYNonDominationLevel(this.sorter, newMembers, this.sortedObjectives);
+        return new JFBYNonDominationLevel(this.sorter, newMembers, this.sortedObjectives, this.index);
     }
 
     public String toString() {
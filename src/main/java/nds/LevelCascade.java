@@ -0,0 +1,118 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static ru.ifmo.nds.util.Utils.dominates;
+import static ru.ifmo.nds.util.Utils.lexCompare;
+
+/**
+ * Helpers for pushing a batch of individuals down the non-domination level cascade.
+ */
+public final class LevelCascade {
+    /**
+     * Larger batches of pending points are checked against each other through a {@link DominanceIndex}
+     */
+    static final int PAIRWISE_LIMIT = 32;
+
+    private LevelCascade() {
+    }
+
+    @Nonnull
+    static <T> List<IIndividual<T>> lexSorted(@Nonnull Collection<IIndividual<T>> individuals) {
+        final List<IIndividual<T>> sorted = new ArrayList<>(individuals);
+        sorted.sort((a, b) -> lexCompare(a.getObjectives(), b.getObjectives(), a.getObjectives().length));
+        return sorted;
+    }
+
+    @Nonnull
+    static <T> List<IIndividual<T>> lexMerge(@Nonnull final List<IIndividual<T>> aList,
+                                             @Nonnull final List<IIndividual<T>> mList) {
+        if (aList.isEmpty()) {
+            return mList;
+        } else if (mList.isEmpty()) {
+            return aList;
+        }
+        int ai = 0;
+        int mi = 0;
+        final List<IIndividual<T>> result = new ArrayList<>(aList.size() + mList.size());
+        while (mi < mList.size() || ai < aList.size()) {
+            if (mi >= mList.size()) {
+                result.add(aList.get(ai++));
+            } else if (ai >= aList.size()) {
+                result.add(mList.get(mi++));
+            } else {
+                final IIndividual<T> m = mList.get(mi);
+                final IIndividual<T> a = aList.get(ai);
+                if (lexCompare(m.getObjectives(), a.getObjectives(), a.getObjectives().length) <= 0) {
+                    result.add(m);
+                    ++mi;
+                } else {
+                    result.add(a);
+                    ++ai;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits lex-sorted {@code pending} points into the ones which belong to {@code level} (dominated neither by
+     * its members nor by other pending points) and the ones which must go to deeper levels.
+     *
+     * @param level     Level to insert into, {@code null} for a level which is being created
+     * @param pending   Lex-sorted points
+     * @param dominated Receives lex-sorted points which do not belong to {@code level}
+     * @return Lex-sorted points which belong to {@code level}
+     */
+    @Nonnull
+    public static <T> List<IIndividual<T>> takeNonDominated(@Nullable INonDominationLevel<T> level,
+                                                            @Nonnull List<IIndividual<T>> pending,
+                                                            @Nonnull List<IIndividual<T>> dominated) {
+        final List<IIndividual<T>> nonDominated = new ArrayList<>(pending.size());
+        final DominanceIndex pendingIndex = pending.size() > PAIRWISE_LIMIT
+            ? DominanceIndex.create(pending.get(0).getObjectives().length, pending)
+            : null;
+        for (int i = 0; i < pending.size(); ++i) {
+            final IIndividual<T> point = pending.get(i);
+            final double[] pointObj = point.getObjectives();
+            boolean isDominated = level != null && level.dominatedByAnyPointOfThisLayer(point);
+            if (pendingIndex != null) {
+                isDominated = isDominated || pendingIndex.dominatedByAny(pointObj);
+            } else {
+                //lex order: only preceding points may dominate
+                for (int j = 0; j < i && !isDominated; ++j) {
+                    isDominated = dominates(pending.get(j).getObjectives(), pointObj, pointObj.length) < 0;
+                }
+            }
+            if (isDominated) {
+                dominated.add(point);
+            } else {
+                nonDominated.add(point);
+            }
+        }
+        return nonDominated;
+    }
+
+    static <T> int determineRank(@Nonnull List<? extends INonDominationLevel<T>> ndLayers,
+                                 @Nonnull IIndividual<T> point) {
+        return RankSearch.determineRank(ndLayers, point);
+    }
+
+    /**
+     * @return Minimal rank over the batch, i.e. the first level the batch may touch
+     */
+    static <T> int determineMinRank(@Nonnull List<? extends INonDominationLevel<T>> ndLayers,
+                                    @Nonnull List<IIndividual<T>> batch) {
+        int rank = ndLayers.size();
+        for (IIndividual<T> individual : batch) {
+            rank = Math.min(rank, determineRank(ndLayers.subList(0, rank), individual));
+        }
+        return rank;
+    }
+}
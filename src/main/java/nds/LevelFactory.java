@@ -0,0 +1,35 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Creates the levels a population appends, which decides how their members are stored
+ */
+@FunctionalInterface
+public interface LevelFactory<T> {
+    /**
+     * @param members Lex-sorted, mutually non-dominated members of the new level
+     */
+    @Nonnull
+    JFBYNonDominationLevel<T> create(@Nonnull JFB2014 sorter, @Nonnull List<IIndividual<T>> members);
+
+    /**
+     * @return Factory of plain {@link JFBYNonDominationLevel}s, whose members are heap objects
+     */
+    @Nonnull
+    static <T> LevelFactory<T> onHeap() {
+        return JFBYNonDominationLevel::new;
+    }
+
+    /**
+     * @return Factory of {@link PackedJFBYNonDominationLevel}s, whose objectives are packed column-major
+     */
+    @Nonnull
+    static <T> LevelFactory<T> packed() {
+        return PackedJFBYNonDominationLevel::new;
+    }
+}
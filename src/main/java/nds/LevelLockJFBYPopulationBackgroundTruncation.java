@@ -0,0 +1,165 @@
+package nds;
+
+import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link LevelLockJFBYPopulationReadWriteLock} which never truncates on the inserting thread. Once the size exceeds
+ * the high-water mark a task is submitted to the truncation executor, which trims the worst levels down to the
+ * low-water mark while inserters keep going.
+ * <p>
+ * The size is allowed to drift over the expected population size by {@link #getAllowedDrift()} plus whatever is
+ * inserted while a truncation is running; the largest drift observed so far is {@link #getPeakDrift()}.
+ */
+@ThreadSafe
+public class LevelLockJFBYPopulationBackgroundTruncation<T> extends LevelLockJFBYPopulationReadWriteLock<T> {
+    private static final double DEFAULT_DELETION_THRESHOLD = 1.2;
+
+    private final long expectedPopSize;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final Executor truncationExecutor;
+
+    private final AtomicBoolean truncationScheduled = new AtomicBoolean(false);
+    private final AtomicInteger peakSize = new AtomicInteger(0);
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationBackgroundTruncation() {
+        this(Long.MAX_VALUE);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationBackgroundTruncation(long expectedPopSize) {
+        this(expectedPopSize, (long) (expectedPopSize * DEFAULT_DELETION_THRESHOLD), expectedPopSize);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationBackgroundTruncation(final long expectedPopSize,
+                                                       final long highWaterMark,
+                                                       final long lowWaterMark) {
+        this(expectedPopSize, highWaterMark, lowWaterMark, ForkJoinPool.commonPool());
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationBackgroundTruncation(final long expectedPopSize,
+                                                       final long highWaterMark,
+                                                       final long lowWaterMark,
+                                                       @Nonnull final Executor truncationExecutor) {
+        this(new IncrementalJFB(), new CopyOnWriteArrayList<>(), expectedPopSize, highWaterMark, lowWaterMark,
+            truncationExecutor);
+    }
+
+    /**
+     * @param highWaterMark      Size above which a background truncation is requested
+     * @param lowWaterMark       Size a background truncation trims the population down to
+     * @param truncationExecutor Runs truncation tasks, at most one task per population is submitted at a time
+     */
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationBackgroundTruncation(@Nonnull final JFB2014 sorter,
+                                                       @Nonnull final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels,
+                                                       final long expectedPopSize,
+                                                       final long highWaterMark,
+                                                       final long lowWaterMark,
+                                                       @Nonnull final Executor truncationExecutor) {
+        super(sorter, nonDominationLevels, expectedPopSize,
+            deletionThreshold(expectedPopSize, highWaterMark, lowWaterMark));
+        this.expectedPopSize = expectedPopSize;
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.truncationExecutor = truncationExecutor;
+        this.peakSize.set(size());
+    }
+
+    /**
+     * Validates the marks before they reach the parent constructor
+     *
+     * @return High-water mark relative to the expected population size
+     */
+    private static double deletionThreshold(long expectedPopSize, long highWaterMark, long lowWaterMark) {
+        if (expectedPopSize <= 0) {
+            throw new IllegalArgumentException("Expected population size must be positive: " + expectedPopSize);
+        }
+        if (lowWaterMark <= 0 || lowWaterMark > highWaterMark) {
+            throw new IllegalArgumentException("Water marks must satisfy 0 < low <= high, got low " + lowWaterMark
+                + ", high " + highWaterMark);
+        }
+        return (double) highWaterMark / expectedPopSize;
+    }
+
+    /**
+     * Called by inserters after every size increase: only signals the truncation task.
+     */
+    @Override
+    int massRemoveWorst() {
+        final int currentSize = size();
+        int peak;
+        while (currentSize > (peak = peakSize.get()) && !peakSize.compareAndSet(peak, currentSize)) {
+            //retry
+        }
+
+        if (currentSize > highWaterMark && truncationScheduled.compareAndSet(false, true)) {
+            try {
+                truncationExecutor.execute(this::truncateInBackground);
+            } catch (RejectedExecutionException e) {
+                //executor is shut down, truncate inline rather than grow without bound
+                try {
+                    return truncateTo(lowWaterMark);
+                } finally {
+                    truncationScheduled.set(false);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void truncateInBackground() {
+        try {
+            truncateTo(lowWaterMark);
+        } finally {
+            truncationScheduled.set(false);
+        }
+        //inserters which crossed the high-water mark during the truncation did not signal
+        massRemoveWorst();
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public long getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    /**
+     * @return How far over the expected population size the population may grow before a truncation is requested
+     */
+    public long getAllowedDrift() {
+        return highWaterMark - expectedPopSize;
+    }
+
+    /**
+     * @return Largest observed excess of the size over the expected population size
+     */
+    public long getPeakDrift() {
+        return Math.max(0, peakSize.get() - expectedPopSize);
+    }
+
+    /**
+     * @return A copy of this population. All layers are also copied.
+     */
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public LevelLockJFBYPopulationBackgroundTruncation<T> clone() {
+        return new LevelLockJFBYPopulationBackgroundTruncation<>(getSorter(), copyLevels(), expectedPopSize,
+            highWaterMark, lowWaterMark, truncationExecutor);
+    }
+}
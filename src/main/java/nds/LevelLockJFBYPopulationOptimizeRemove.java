@@ -9,8 +9,6 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -28,11 +26,13 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
 
     private final AtomicInteger size = new AtomicInteger(0);
     private final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels;
-    private final Map<IIndividual<T>, Boolean> presentIndividuals = new ConcurrentHashMap<>();
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
 
     private final long expectedPopSize;
     private final double deletionThreshold;
 
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+
     @SuppressWarnings("WeakerAccess")
     public LevelLockJFBYPopulationOptimizeRemove() {
         this(Long.MAX_VALUE);
@@ -63,7 +63,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
             levelLocks.add(new ReentrantLock());
             size.addAndGet(level.getMembers().size());
             for (IIndividual<T> individual : level.getMembers()) {
-                presentIndividuals.put(individual, true);
+                presentIndividuals.add(individual);
             }
         }
     }
@@ -88,6 +88,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
     @SuppressWarnings("UnusedReturnValue")
     private int massRemoveWorst() {
         if (size.get() > expectedPopSize * deletionThreshold && removeLevelLock.tryLock()) {
+            final long lockedAt = PopulationMetrics.startTimer();
             try {
                 final int toDelete = (int) (size.get() - expectedPopSize);
                 int remaining = toDelete;
@@ -101,6 +102,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                         || lastLevelIndex != nonDominationLevels.size() - 1) {
                         lastLevelLock.unlock();
                         addLevelLock.unlock();
+                        metrics.recordRetry();
                         continue;
                     }
 
@@ -112,9 +114,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                             if (lastLevel.getMembers().isEmpty()) {
                                 System.err.println("Empty last ND level! Levels = " + nonDominationLevels);
                             } else {
-                                for (IIndividual individual : lastLevel.getMembers()) {
-                                    presentIndividuals.remove(individual);
-                                }
+                                presentIndividuals.removeAll(lastLevel.getMembers());
                             }
                             remaining -= lastLevel.getMembers().size();
                         }
@@ -130,6 +130,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                         tSize = size.get();
                     }
                 }
+                metrics.recordTruncation(lockedAt, toDelete);
                 return toDelete;
             } finally {
                 removeLevelLock.unlock();
@@ -168,7 +169,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
 
     @Override
     public int addIndividual(@Nonnull IIndividual<T> addend) {
-        if (presentIndividuals.putIfAbsent(addend, true) != null) {
+        if (!presentIndividuals.add(addend)) {
             return determineRank(addend);
         }
 
@@ -183,9 +184,11 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                     break;
                 } else {
                     lock.unlock();
+                    metrics.recordRetry();
                 }
             } catch (ArrayIndexOutOfBoundsException ignored) {
                 lock.unlock();
+                metrics.recordRetry();
             }
         }
 
@@ -200,6 +203,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
             levelLocks.add(new ReentrantLock());
             nonDominationLevels.add(level);
             addLevelLock.unlock();
+            metrics.recordCascadeDepth(1);
         } else {
             List<IIndividual<T>> addends = Collections.singletonList(addend);
             int i = rank;
@@ -227,7 +231,9 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                 final JFBYNonDominationLevel<T> level = new JFBYNonDominationLevel<>(sorter, addends); //New level - full CD calc
                 nonDominationLevels.add(level);
                 addLevelLock.unlock();
+                i++;
             }
+            metrics.recordCascadeDepth(i - rank);
         }
 
         size.incrementAndGet();
@@ -237,6 +243,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
     }
 
     private Lock acquireLock(int rank) {
+        final long start = PopulationMetrics.startTimer();
         while (true) {
             Lock lock = null;
             try {
@@ -244,6 +251,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                     lock = levelLocks.get(rank);
                     lock.lock();
                     if (levelLocks.get(rank) == lock) {
+                        metrics.recordLockWait(start);
                         return lock;
                     } else {
                         lock.unlock();
@@ -253,6 +261,7 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                     if (rank < nonDominationLevels.size()) {
                         addLevelLock.unlock();
                     } else {
+                        metrics.recordLockWait(start);
                         return addLevelLock;
                     }
                 }
@@ -261,9 +270,16 @@ public class LevelLockJFBYPopulationOptimizeRemove<T> implements IManagedPopulat
                     lock.unlock();
                 }
             }
+            metrics.recordRetry();
         }
     }
 
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * @return A copy of this population. All layers are also copied.
      */
@@ -10,10 +10,9 @@ import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -31,11 +30,13 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
 
     private final AtomicInteger size = new AtomicInteger(0);
     private final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels;
-    private final Map<IIndividual<T>, Boolean> presentIndividuals = new ConcurrentHashMap<>();
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
 
     private final long expectedPopSize;
     private final double deletionThreshold;
 
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+
     @SuppressWarnings("WeakerAccess")
     public LevelLockJFBYPopulationOriginal() {
         this(Long.MAX_VALUE);
@@ -66,7 +67,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
             levelLocks.add(new ReentrantLock());
             size.addAndGet(level.getMembers().size());
             for (IIndividual<T> individual : level.getMembers()) {
-                presentIndividuals.put(individual, true);
+                presentIndividuals.add(individual);
             }
         }
     }
@@ -91,6 +92,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
     @SuppressWarnings("UnusedReturnValue")
     private int massRemoveWorst() {
         if (size.get() > expectedPopSize * deletionThreshold && removeLevelLock.tryLock()) {
+            final long lockedAt = PopulationMetrics.startTimer();
             try {
                 final int toDelete = (int) (size.get() - expectedPopSize);
                 int remaining = toDelete;
@@ -104,6 +106,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                         || lastLevelIndex != nonDominationLevels.size() - 1) {
                         lastLevelLock.unlock();
                         addLevelLock.unlock();
+                        metrics.recordRetry();
                         continue;
                     }
 
@@ -115,9 +118,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                             if (lastLevel.getMembers().isEmpty()) {
                                 System.err.println("Empty last ND level! Levels = " + nonDominationLevels);
                             } else {
-                                for (IIndividual individual : lastLevel.getMembers()) {
-                                    presentIndividuals.remove(individual);
-                                }
+                                presentIndividuals.removeAll(lastLevel.getMembers());
                             }
                             remaining -= lastLevel.getMembers().size();
                         } else {
@@ -166,6 +167,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                         tSize = size.get();
                     }
                 }
+                metrics.recordTruncation(lockedAt, toDelete);
                 return toDelete;
             } finally {
                 removeLevelLock.unlock();
@@ -204,7 +206,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
 
     @Override
     public int addIndividual(@Nonnull IIndividual<T> addend) {
-        if (presentIndividuals.putIfAbsent(addend, true) != null) {
+        if (!presentIndividuals.add(addend)) {
             return determineRank(addend);
         }
 
@@ -219,9 +221,11 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                     break;
                 } else {
                     lock.unlock();
+                    metrics.recordRetry();
                 }
             } catch (ArrayIndexOutOfBoundsException ignored) {
                 lock.unlock();
+                metrics.recordRetry();
             }
         }
 
@@ -234,6 +238,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
             levelLocks.add(new ReentrantLock());
             nonDominationLevels.add(level);
             addLevelLock.unlock();
+            metrics.recordCascadeDepth(1);
         } else {
             List<IIndividual<T>> addends = Collections.singletonList(addend);
             int i = rank;
@@ -261,7 +266,9 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                 final JFBYNonDominationLevel<T> level = new JFBYNonDominationLevel<>(sorter, addends); //New level - full CD calc
                 nonDominationLevels.add(level);
                 addLevelLock.unlock();
+                i++;
             }
+            metrics.recordCascadeDepth(i - rank);
         }
 
         size.incrementAndGet();
@@ -270,7 +277,81 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
         return rank;
     }
 
+    /**
+     * Lex-sorts the batch, ranks it against a snapshot once and pushes it down the levels starting from the minimal
+     * rank. Every touched level is locked once, locks are taken hand over hand as in {@link #addIndividual}.
+     */
+    @Override
+    public void addIndividuals(@Nonnull Collection<IIndividual<T>> individuals) {
+        final List<IIndividual<T>> batch = new ArrayList<>(individuals.size());
+        for (IIndividual<T> individual : individuals) {
+            if (presentIndividuals.add(individual)) {
+                batch.add(individual);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<IIndividual<T>> pending = LevelCascade.lexSorted(batch);
+        int i = LevelCascade.determineMinRank(getSnapshot().getLevels(), pending);
+        final int minRank = i;
+        Lock lock = acquireLock(i);
+        while (lock != addLevelLock) {
+            //assertion: we have locked levelLocks.get(i)
+            Lock nextLock = null;
+            try {
+                final JFBYNonDominationLevel<T> level = nonDominationLevels.get(i);
+                final List<IIndividual<T>> dominated = new ArrayList<>();
+                final List<IIndividual<T>> addends = LevelCascade.takeNonDominated(level, pending, dominated);
+                if (!addends.isEmpty()) {
+                    final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevel<T>> memberAdditionResult =
+                        level.addMembers(addends);
+                    nonDominationLevels.set(i, memberAdditionResult.getModifiedLevel());
+                    pending = LevelCascade.lexMerge(memberAdditionResult.getEvictedMembers(), dominated);
+                } else {
+                    pending = dominated;
+                }
+
+                if (!pending.isEmpty()) {
+                    nextLock = acquireLock(i + 1);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (nextLock == null) {
+                break;
+            }
+            lock = nextLock;
+            i++;
+        }
+
+        if (!pending.isEmpty()) {
+            //assertion: we have locked addLevelLock
+            try {
+                while (!pending.isEmpty()) {
+                    final List<IIndividual<T>> dominated = new ArrayList<>();
+                    final List<IIndividual<T>> members = LevelCascade.takeNonDominated(null, pending, dominated);
+                    levelLocks.add(new ReentrantLock());
+                    nonDominationLevels.add(new JFBYNonDominationLevel<>(sorter, members)); //New level - full CD calc
+                    pending = dominated;
+                    i++;
+                }
+            } finally {
+                addLevelLock.unlock();
+            }
+        } else {
+            i++;
+        }
+        metrics.recordCascadeDepth(i - minRank);
+
+        size.addAndGet(batch.size());
+        massRemoveWorst();
+    }
+
     private Lock acquireLock(int rank) {
+        final long start = PopulationMetrics.startTimer();
         while (true) {
             Lock lock = null;
             try {
@@ -278,6 +359,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                     lock = levelLocks.get(rank);
                     lock.lock();
                     if (levelLocks.get(rank) == lock) {
+                        metrics.recordLockWait(start);
                         return lock;
                     } else {
                         lock.unlock();
@@ -287,6 +369,7 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                     if (rank < nonDominationLevels.size()) {
                         addLevelLock.unlock();
                     } else {
+                        metrics.recordLockWait(start);
                         return addLevelLock;
                     }
                 }
@@ -295,9 +378,16 @@ public class LevelLockJFBYPopulationOriginal<T> implements IManagedPopulation<T>
                     lock.unlock();
                 }
             }
+            metrics.recordRetry();
         }
     }
 
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * @return A copy of this population. All layers are also copied.
      */
@@ -0,0 +1,496 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+import ru.ifmo.nds.impl.RankedIndividual;
+import ru.ifmo.nds.util.median.QuickSelect;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Level-lock population where inserters hold the shared side of a {@link StampedLock} and mass removal holds the
+ * exclusive side. Levels are therefore never removed under an inserter, which makes the lock identity re-checks and
+ * the retries of {@link LevelLockJFBYPopulationOriginal} unnecessary. {@link #determineRank(IIndividual)} runs
+ * under an optimistic read and falls back to the shared lock only if a truncation has interfered.
+ */
+@ThreadSafe
+public class LevelLockJFBYPopulationReadWriteLock<T> implements IEventPublishingPopulation<T> {
+    private static final double DEFAULT_DELETION_THRESHOLD = 1.2;
+
+    private final StampedLock structureLock = new StampedLock();
+    private final List<Lock> levelLocks = new CopyOnWriteArrayList<>();
+    private final Lock addLevelLock = new ReentrantLock();
+    private final Lock removeLevelLock = new ReentrantLock();
+
+    private final JFB2014 sorter;
+    private final LevelFactory<T> levelFactory;
+
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels;
+    private final LevelSizes levelSizes = new LevelSizes();
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
+
+    private final long expectedPopSize;
+    private final double deletionThreshold;
+
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+    private final PopulationEventPublisher<T> publisher = new PopulationEventPublisher<>();
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationReadWriteLock() {
+        this(Long.MAX_VALUE);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationReadWriteLock(long expectedPopSize) {
+        this(new IncrementalJFB(), new CopyOnWriteArrayList<>(), expectedPopSize, DEFAULT_DELETION_THRESHOLD);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationReadWriteLock(final long expectedPopSize,
+                                                final double deletionThreshold) {
+        this(new IncrementalJFB(), new CopyOnWriteArrayList<>(), expectedPopSize, deletionThreshold);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationReadWriteLock(@Nonnull final JFB2014 sorter,
+                                                @Nonnull final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels,
+                                                final long expectedPopSize,
+                                                final double deletionThreshold) {
+        this(sorter, nonDominationLevels, expectedPopSize, deletionThreshold, LevelFactory.onHeap());
+    }
+
+    /**
+     * @param levelFactory Creates the levels appended by insertions, e.g. {@link OffHeapJFBYNonDominationLevel#factory}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationReadWriteLock(@Nonnull final JFB2014 sorter,
+                                                @Nonnull final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels,
+                                                final long expectedPopSize,
+                                                final double deletionThreshold,
+                                                @Nonnull final LevelFactory<T> levelFactory) {
+        this.sorter = sorter;
+        this.levelFactory = levelFactory;
+        this.nonDominationLevels = nonDominationLevels;
+        this.expectedPopSize = expectedPopSize;
+        this.deletionThreshold = deletionThreshold;
+
+        for (INonDominationLevel<T> level : nonDominationLevels) {
+            levelSizes.add(levelLocks.size(), level.getMembers().size());
+            levelLocks.add(new ReentrantLock());
+            size.addAndGet(level.getMembers().size());
+            for (IIndividual<T> individual : level.getMembers()) {
+                presentIndividuals.add(individual);
+            }
+        }
+    }
+
+    @Override
+    @Nonnull
+    public PopulationSnapshot<T> getSnapshot() {
+        final ArrayList<INonDominationLevel<T>> rs = new ArrayList<>(nonDominationLevels);
+        int size = 0;
+        for (INonDominationLevel<T> level : rs) {
+            size += level.getMembers().size();
+        }
+        return new PopulationSnapshot<>(rs, size);
+    }
+
+    @Nonnull
+    @Override
+    public List<? extends INonDominationLevel<T>> getLevelsUnsafe() {
+        return Collections.unmodifiableList(nonDominationLevels);
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    int massRemoveWorst() {
+        if (size.get() > expectedPopSize * deletionThreshold && removeLevelLock.tryLock()) {
+            try {
+                return truncateTo(expectedPopSize);
+            } finally {
+                removeLevelLock.unlock();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Removes the worst individuals until at most {@code targetSize} remain. Victims are chosen under the shared
+     * side of {@link #structureLock}, so inserters keep going meanwhile; the exclusive side is only held to publish
+     * the result, and the choice is redone under it if an inserter has touched the truncated levels.
+     *
+     * @return Number of removed individuals
+     */
+    final int truncateTo(long targetSize) {
+        Truncation<T> truncation;
+        long stamp = structureLock.readLock();
+        try {
+            truncation = planTruncation(targetSize);
+        } finally {
+            structureLock.unlockRead(stamp);
+        }
+        if (truncation == null) {
+            return 0;
+        }
+
+        stamp = structureLock.writeLock();
+        final long lockedAt = PopulationMetrics.startTimer();
+        try {
+            if (!truncation.isValid(nonDominationLevels)) {
+                metrics.recordRetry();
+                truncation = planTruncation(targetSize);
+                if (truncation == null) {
+                    return 0;
+                }
+            }
+
+            final int keptLevels = truncation.firstTouchedLevel + (truncation.trimmedLevel != null ? 1 : 0);
+            for (int i = nonDominationLevels.size() - 1; i >= keptLevels; --i) {
+                levelLocks.remove(i);
+                nonDominationLevels.remove(i);
+            }
+            levelSizes.removeLevels(keptLevels);
+            if (truncation.trimmedLevel != null) {
+                final JFBYNonDominationLevel<T> level = nonDominationLevels.set(truncation.firstTouchedLevel, truncation.trimmedLevel);
+                levelSizes.add(truncation.firstTouchedLevel,
+                    truncation.trimmedLevel.getMembers().size() - level.getMembers().size());
+            }
+            presentIndividuals.removeAll(truncation.removals);
+            size.addAndGet(-truncation.removals.size());
+            if (publisher.hasSubscribers()) {
+                publishTruncation(truncation, keptLevels);
+            }
+            metrics.recordTruncation(lockedAt, truncation.removals.size());
+            return truncation.removals.size();
+        } finally {
+            structureLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Must be called under the exclusive side of {@link #structureLock}
+     */
+    private void publishTruncation(@Nonnull Truncation<T> truncation, int keptLevels) {
+        final List<JFBYNonDominationLevel<T>> removedLevels = truncation.levels.subList(keptLevels, truncation.levels.size());
+        int removedMembers = 0;
+        for (JFBYNonDominationLevel<T> level : removedLevels) {
+            removedMembers += level.getMembers().size();
+        }
+        //members trimmed from the last kept level are the tail of the removals
+        final List<IIndividual<T>> trimmed = truncation.removals.subList(removedMembers, truncation.removals.size());
+        publisher.publish(CascadeEvents.truncation(removedLevels, keptLevels, trimmed));
+    }
+
+    /**
+     * @return Removal of the worst {@code size - targetSize} individuals from the current levels, {@code null} if
+     * there is nothing to remove
+     */
+    @Nullable
+    private Truncation<T> planTruncation(long targetSize) {
+        final List<JFBYNonDominationLevel<T>> levels = new ArrayList<>(nonDominationLevels);
+        final List<IIndividual<T>> removals = new ArrayList<>();
+        int remaining = (int) (size.get() - targetSize);
+        int lastLevelIndex = levels.size() - 1;
+        JFBYNonDominationLevel<T> trimmedLevel = null;
+        while (remaining > 0 && lastLevelIndex >= 0) {
+            final JFBYNonDominationLevel<T> lastLevel = levels.get(lastLevelIndex);
+            if (lastLevel.getMembers().size() <= remaining) {
+                removals.addAll(lastLevel.getMembers());
+                remaining -= lastLevel.getMembers().size();
+                --lastLevelIndex;
+            } else {
+                final double[] cd = new double[lastLevel.getMembers().size()];
+                int i = 0;
+                for (IIndividual cdIndividual : lastLevel.getMembers()) {
+                    cd[i++] = cdIndividual.getCrowdingDistance();
+                }
+                final double cdThreshold = new QuickSelect().getKthElement(cd, remaining);
+                final List<IIndividual<T>> levelRemovals = new ArrayList<>();
+                for (IIndividual<T> individual : lastLevel.getMembers()) {
+                    if (remaining > 0 && individual.getCrowdingDistance() <= cdThreshold) {
+                        levelRemovals.add(individual);
+                        --remaining;
+                    }
+                }
+
+                trimmedLevel = lastLevel.removeMembers(levelRemovals);
+                removals.addAll(levelRemovals);
+                break;
+            }
+        }
+
+        if (removals.isEmpty()) {
+            return null;
+        }
+        final int firstTouchedLevel = trimmedLevel != null ? lastLevelIndex : lastLevelIndex + 1;
+        return new Truncation<>(levels, firstTouchedLevel, trimmedLevel, removals);
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Draws from the live levels through {@link LevelSizes}, without a snapshot.
+     */
+    @Nonnull
+    @Override
+    public List<RankedIndividual<T>> getRandomSolutions(int count) {
+        final List<RankedIndividual<T>> res = levelSizes.sample(count, this::memberAt);
+        return res != null ? res : IEventPublishingPopulation.super.getRandomSolutions(count);
+    }
+
+    @Nullable
+    private IIndividual<T> memberAt(int rank, int index) {
+        try {
+            final List<IIndividual<T>> members = nonDominationLevels.get(rank).getMembers();
+            return index < members.size() ? members.get(index) : null;
+        } catch (IndexOutOfBoundsException ignored) {
+            //levels were removed by a truncation
+            return null;
+        }
+    }
+
+    /**
+     * Optimistic read: a concurrent truncation may only shrink the level list, which either invalidates the
+     * stamp or makes the unlocked search run past the end of the list.
+     */
+    @Override
+    public int determineRank(IIndividual<T> point) {
+        final long optimisticStamp = structureLock.tryOptimisticRead();
+        if (optimisticStamp != 0) {
+            try {
+                final int rank = LevelCascade.determineRank(nonDominationLevels, point);
+                if (structureLock.validate(optimisticStamp)) {
+                    return rank;
+                }
+            } catch (IndexOutOfBoundsException ignored) {
+                //levels were removed during the search, retry under the lock
+            }
+        }
+
+        final long stamp = structureLock.readLock();
+        try {
+            return LevelCascade.determineRank(nonDominationLevels, point);
+        } finally {
+            structureLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int addIndividual(@Nonnull IIndividual<T> addend) {
+        if (!presentIndividuals.add(addend)) {
+            return determineRank(addend);
+        }
+
+        final int rank;
+        final long stamp = structureLock.readLock();
+        try {
+            rank = doAddIndividual(addend);
+        } finally {
+            structureLock.unlockRead(stamp);
+        }
+
+        size.incrementAndGet();
+        massRemoveWorst();
+
+        return rank;
+    }
+
+    /**
+     * Must be called under the shared side of {@link #structureLock}, so the level list may only grow.
+     */
+    private int doAddIndividual(@Nonnull IIndividual<T> addend) {
+        final CascadeEvents<T> events = publisher.hasSubscribers() ? new CascadeEvents<>(publisher) : null;
+        List<IIndividual<T>> pending = Collections.singletonList(addend);
+        int rank = -1;
+        int i = LevelCascade.determineRank(nonDominationLevels, addend);
+        final int firstRank = i;
+        Lock lock = acquireLock(i);
+        while (lock != addLevelLock) {
+            //assertion: we have locked lock == levelLocks.get(i)
+            Lock nextLock = null;
+            try {
+                //evicted members may be dominated by points which were inserted into this level while they were
+                //in transit, so they are checked against the level like the addend itself
+                final JFBYNonDominationLevel<T> level = nonDominationLevels.get(i);
+                final List<IIndividual<T>> dominated = new ArrayList<>();
+                final List<IIndividual<T>> addends = LevelCascade.takeNonDominated(level, pending, dominated);
+                if (!addends.isEmpty()) {
+                    if (rank < 0) {
+                        rank = i;
+                    }
+                    final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevel<T>> memberAdditionResult =
+                        level.addMembers(addends);
+                    nonDominationLevels.set(i, memberAdditionResult.getModifiedLevel());
+                    levelSizes.add(i, memberAdditionResult.getModifiedLevel().getMembers().size() - level.getMembers().size());
+                    pending = LevelCascade.lexMerge(memberAdditionResult.getEvictedMembers(), dominated);
+                    if (events != null) {
+                        events.entered(i, addends);
+                        events.left(i, memberAdditionResult.getEvictedMembers());
+                        events.flush();
+                    }
+                } else {
+                    pending = dominated;
+                }
+
+                if (!pending.isEmpty()) {
+                    nextLock = acquireLock(i + 1);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (nextLock == null) {
+                break;
+            }
+            lock = nextLock;
+            i++;
+        }
+
+        if (!pending.isEmpty()) {
+            //assertion: we have locked addLevelLock
+            try {
+                if (rank < 0) {
+                    rank = nonDominationLevels.size();
+                }
+                while (!pending.isEmpty()) {
+                    final List<IIndividual<T>> dominated = new ArrayList<>();
+                    final List<IIndividual<T>> members = LevelCascade.takeNonDominated(null, pending, dominated);
+                    if (events != null) {
+                        //published before the level is visible, so that no event of the level precedes its creation
+                        events.levelCreated(nonDominationLevels.size());
+                        events.entered(nonDominationLevels.size(), members);
+                        events.flush();
+                    }
+                    levelLocks.add(new ReentrantLock());
+                    nonDominationLevels.add(levelFactory.create(sorter, members)); //New level - full CD calc
+                    levelSizes.add(nonDominationLevels.size() - 1, members.size());
+                    pending = dominated;
+                    i++;
+                }
+            } finally {
+                addLevelLock.unlock();
+            }
+        } else {
+            i++;
+        }
+        metrics.recordCascadeDepth(i - firstRank);
+
+        return rank;
+    }
+
+    /**
+     * No lock identity re-checks are needed: under the shared side of {@link #structureLock} levels and their
+     * locks are never removed.
+     */
+    private Lock acquireLock(int rank) {
+        final long start = PopulationMetrics.startTimer();
+        while (true) {
+            if (rank < nonDominationLevels.size()) {
+                final Lock lock = levelLocks.get(rank);
+                lock.lock();
+                metrics.recordLockWait(start);
+                return lock;
+            }
+
+            addLevelLock.lock();
+            if (rank < nonDominationLevels.size()) {
+                addLevelLock.unlock();
+                metrics.recordRetry();
+            } else {
+                metrics.recordLockWait(start);
+                return addLevelLock;
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public PopulationEventPublisher.Subscription<T> subscribe(@Nonnull PopulationListener<T> listener,
+                                                              int capacity,
+                                                              int maxBatch) {
+        return publisher.subscribe(listener, capacity, maxBatch);
+    }
+
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return A copy of this population. All layers are also copied.
+     */
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public LevelLockJFBYPopulationReadWriteLock<T> clone() {
+        return new LevelLockJFBYPopulationReadWriteLock<>(sorter, copyLevels(), expectedPopSize, deletionThreshold, levelFactory);
+    }
+
+    @Nonnull
+    final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> copyLevels() {
+        final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> levels = new CopyOnWriteArrayList<>();
+        for (JFBYNonDominationLevel<T> level : nonDominationLevels) {
+            levels.add(level.copy());
+        }
+        return levels;
+    }
+
+    @Nonnull
+    final JFB2014 getSorter() {
+        return sorter;
+    }
+
+    private static final class Truncation<T> {
+        /**
+         * Levels the truncation was planned against
+         */
+        private final List<JFBYNonDominationLevel<T>> levels;
+        private final int firstTouchedLevel;
+        /**
+         * Replacement of the level {@code firstTouchedLevel}, {@code null} if it is removed completely
+         */
+        @Nullable
+        private final JFBYNonDominationLevel<T> trimmedLevel;
+        private final List<IIndividual<T>> removals;
+
+        private Truncation(@Nonnull List<JFBYNonDominationLevel<T>> levels,
+                           int firstTouchedLevel,
+                           @Nullable JFBYNonDominationLevel<T> trimmedLevel,
+                           @Nonnull List<IIndividual<T>> removals) {
+            this.levels = levels;
+            this.firstTouchedLevel = firstTouchedLevel;
+            this.trimmedLevel = trimmedLevel;
+            this.removals = removals;
+        }
+
+        /**
+         * Levels are immutable, so the plan still applies if no level from {@code firstTouchedLevel} on was
+         * replaced and no level was appended.
+         */
+        private boolean isValid(@Nonnull List<JFBYNonDominationLevel<T>> current) {
+            if (current.size() != levels.size()) {
+                return false;
+            }
+            for (int i = firstTouchedLevel; i < levels.size(); ++i) {
+                if (current.get(i) != levels.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -12,8 +12,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -31,11 +29,13 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
 
     private final AtomicInteger size = new AtomicInteger(0);
     private final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels;
-    private final Map<IIndividual<T>, Boolean> presentIndividuals = new ConcurrentHashMap<>();
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
 
     private final long expectedPopSize;
     private final double deletionThreshold;
 
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+
     @SuppressWarnings("WeakerAccess")
     public LevelLockJFBYPopulationReleaseLockEarlier() {
         this(Long.MAX_VALUE);
@@ -66,7 +66,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
             levelLocks.add(new ReentrantLock());
             size.addAndGet(level.getMembers().size());
             for (IIndividual<T> individual : level.getMembers()) {
-                presentIndividuals.put(individual, true);
+                presentIndividuals.add(individual);
             }
         }
     }
@@ -91,6 +91,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
     @SuppressWarnings("UnusedReturnValue")
     private int massRemoveWorst() {
         if (size.get() > expectedPopSize * deletionThreshold && removeLevelLock.tryLock()) {
+            final long lockedAt = PopulationMetrics.startTimer();
             try {
                 final int toDelete = (int) (size.get() - expectedPopSize);
                 int remaining = toDelete;
@@ -104,6 +105,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                         || lastLevelIndex != nonDominationLevels.size() - 1) {
                         lastLevelLock.unlock();
                         addLevelLock.unlock();
+                        metrics.recordRetry();
                         continue;
                     } //брали лок на последний уровень
 
@@ -115,9 +117,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                             if (lastLevel.getMembers().isEmpty()) {
                                 System.err.println("Empty last ND level! Levels = " + nonDominationLevels);
                             } else {
-                                for (IIndividual individual : lastLevel.getMembers()) {
-                                    presentIndividuals.remove(individual);
-                                }
+                                presentIndividuals.removeAll(lastLevel.getMembers());
                             }
                             remaining -= lastLevel.getMembers().size();
                         } else {
@@ -166,6 +166,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                         tSize = size.get();
                     }
                 }
+                metrics.recordTruncation(lockedAt, toDelete);
                 return toDelete;
             } finally {
                 removeLevelLock.unlock();
@@ -204,7 +205,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
 
     @Override
     public int addIndividual(@Nonnull IIndividual<T> addend) {
-        if (presentIndividuals.putIfAbsent(addend, true) != null) {
+        if (!presentIndividuals.add(addend)) {
             return determineRank(addend);
         }
 
@@ -219,9 +220,11 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                     break;
                 } else {
                     lock.unlock();
+                    metrics.recordRetry();
                 }
             } catch (ArrayIndexOutOfBoundsException ignored) {
                 lock.unlock();
+                metrics.recordRetry();
             }
         }
 
@@ -236,6 +239,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
             levelLocks.add(new ReentrantLock());
             nonDominationLevels.add(level);
             addLevelLock.unlock();
+            metrics.recordCascadeDepth(1);
         } else {
             List<IIndividual<T>> addends = Collections.singletonList(addend);
             int i = rank;
@@ -264,7 +268,9 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                 final JFBYNonDominationLevel<T> level = new JFBYNonDominationLevel<>(sorter, addends); //New level - full CD calc
                 nonDominationLevels.add(level);
                 addLevelLock.unlock();
+                i++;
             }
+            metrics.recordCascadeDepth(i - rank);
         }
 
         size.incrementAndGet();
@@ -274,6 +280,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
     }
 
     private Lock acquireLock(int rank) {
+        final long start = PopulationMetrics.startTimer();
         while (true) {
             Lock lock = null;
             try {
@@ -281,6 +288,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                     lock = levelLocks.get(rank);
                     lock.lock();
                     if (levelLocks.get(rank) == lock) {
+                        metrics.recordLockWait(start);
                         return lock;
                     } else {
                         lock.unlock();
@@ -290,6 +298,7 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                     if (rank < nonDominationLevels.size()) {
                         addLevelLock.unlock();
                     } else {
+                        metrics.recordLockWait(start);
                         return addLevelLock;
                     }
                 }
@@ -298,9 +307,16 @@ public class LevelLockJFBYPopulationReleaseLockEarlier<T> implements IManagedPop
                     lock.unlock();
                 }
             }
+            metrics.recordRetry();
         }
     }
 
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * @return A copy of this population. All layers are also copied.
      */
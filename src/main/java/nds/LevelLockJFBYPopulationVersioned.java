@@ -0,0 +1,419 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+import ru.ifmo.nds.util.median.QuickSelect;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Level locks as in {@link LevelLockJFBYPopulationOriginal}, but concurrent appends and removals of levels are
+ * detected with a version stamp instead of catching {@link ArrayIndexOutOfBoundsException}.
+ * <p>
+ * The locks live in an immutable {@link Layout} which is replaced under {@code addLevelLock} whenever a level is
+ * appended or removed. A lock taken from a layout is valid if the layout version did not change while waiting for it
+ * or the current layout still has the same lock at that rank. Levels are appended before a new layout is published
+ * and removed after it, so a rank below the length of any published layout indexes an existing level, and the level
+ * behind a held lock can not be removed.
+ */
+@ThreadSafe
+public class LevelLockJFBYPopulationVersioned<T> implements IEventPublishingPopulation<T> {
+    private static final double DEFAULT_DELETION_THRESHOLD = 1.2;
+
+    private volatile Layout layout;
+    private final Lock addLevelLock = new ReentrantLock();
+    private final Lock removeLevelLock = new ReentrantLock();
+
+    private final JFB2014 sorter;
+    private final LevelFactory<T> levelFactory;
+
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels;
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
+
+    private final long expectedPopSize;
+    private final double deletionThreshold;
+
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+    private final PopulationEventPublisher<T> publisher = new PopulationEventPublisher<>();
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationVersioned() {
+        this(Long.MAX_VALUE);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationVersioned(long expectedPopSize) {
+        this(new IncrementalJFB(), new CopyOnWriteArrayList<>(), expectedPopSize, DEFAULT_DELETION_THRESHOLD);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationVersioned(final long expectedPopSize,
+                                            final double deletionThreshold) {
+        this(new IncrementalJFB(), new CopyOnWriteArrayList<>(), expectedPopSize, deletionThreshold);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationVersioned(@Nonnull final JFB2014 sorter,
+                                            @Nonnull final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels,
+                                            final long expectedPopSize,
+                                            final double deletionThreshold) {
+        this(sorter, nonDominationLevels, expectedPopSize, deletionThreshold, LevelFactory.onHeap());
+    }
+
+    /**
+     * @param levelFactory Creates the levels appended by insertions, e.g. {@link OffHeapJFBYNonDominationLevel#factory}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationVersioned(@Nonnull final JFB2014 sorter,
+                                            @Nonnull final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> nonDominationLevels,
+                                            final long expectedPopSize,
+                                            final double deletionThreshold,
+                                            @Nonnull final LevelFactory<T> levelFactory) {
+        this.sorter = sorter;
+        this.levelFactory = levelFactory;
+        this.nonDominationLevels = nonDominationLevels;
+        this.expectedPopSize = expectedPopSize;
+        this.deletionThreshold = deletionThreshold;
+
+        final Lock[] locks = new Lock[nonDominationLevels.size()];
+        for (int i = 0; i < locks.length; ++i) {
+            locks[i] = new ReentrantLock();
+        }
+        this.layout = new Layout(locks, 0);
+        for (INonDominationLevel<T> level : nonDominationLevels) {
+            size.addAndGet(level.getMembers().size());
+            for (IIndividual<T> individual : level.getMembers()) {
+                presentIndividuals.add(individual);
+            }
+        }
+    }
+
+    @Override
+    @Nonnull
+    public PopulationSnapshot<T> getSnapshot() {
+        final ArrayList<INonDominationLevel<T>> rs = new ArrayList<>(nonDominationLevels);
+        int size = 0;
+        for (INonDominationLevel<T> level : rs) {
+            size += level.getMembers().size();
+        }
+        return new PopulationSnapshot<>(rs, size);
+    }
+
+    @Nonnull
+    @Override
+    public List<? extends INonDominationLevel<T>> getLevelsUnsafe() {
+        return Collections.unmodifiableList(nonDominationLevels);
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    private int massRemoveWorst() {
+        if (size.get() > expectedPopSize * deletionThreshold && removeLevelLock.tryLock()) {
+            final long lockedAt = PopulationMetrics.startTimer();
+            try {
+                final int toDelete = (int) (size.get() - expectedPopSize);
+                int remaining = toDelete;
+                while (remaining > 0) {
+                    final Layout seen = layout;
+                    final int lastLevelIndex = seen.locks.length - 1;
+                    if (lastLevelIndex < 0) {
+                        break;
+                    }
+                    final Lock lastLevelLock = seen.locks[lastLevelIndex];
+
+                    final long start = PopulationMetrics.startTimer();
+                    lastLevelLock.lock();
+                    addLevelLock.lock();
+                    metrics.recordLockWait(start);
+                    if (layout.version != seen.version) {
+                        lastLevelLock.unlock();
+                        addLevelLock.unlock();
+                        metrics.recordRetry();
+                        continue;
+                    }
+
+                    try {
+                        final JFBYNonDominationLevel<T> lastLevel = nonDominationLevels.get(lastLevelIndex);
+                        if (lastLevel.getMembers().size() <= remaining) {
+                            layout = seen.withoutLastLevel();
+                            nonDominationLevels.remove(lastLevelIndex);
+                            presentIndividuals.removeAll(lastLevel.getMembers());
+                            remaining -= lastLevel.getMembers().size();
+                            if (publisher.hasSubscribers()) {
+                                publisher.publish(CascadeEvents.truncation(
+                                    Collections.singletonList(lastLevel), lastLevelIndex, Collections.emptyList()));
+                            }
+                        } else {
+                            final double[] cd = new double[lastLevel.getMembers().size()];
+                            int i = 0;
+                            for (IIndividual cdIndividual : lastLevel.getMembers()) {
+                                cd[i++] = cdIndividual.getCrowdingDistance();
+                            }
+                            final double cdThreshold = new QuickSelect().getKthElement(cd, remaining);
+                            final List<IIndividual<T>> newMembers = new ArrayList<>();
+                            final List<IIndividual<T>> removals = new ArrayList<>();
+                            for (IIndividual<T> individual : lastLevel.getMembers()) {
+                                if (remaining > 0 && individual.getCrowdingDistance() <= cdThreshold) {
+                                    presentIndividuals.remove(individual);
+                                    removals.add(individual);
+                                    --remaining;
+                                } else {
+                                    newMembers.add(individual);
+                                }
+                            }
+                            if (newMembers.isEmpty()) {
+                                throw new IllegalStateException("Truncation emptied a level of "
+                                    + lastLevel.getMembers().size() + " members, " + remaining + " left to remove");
+                            }
+
+                            nonDominationLevels.set(lastLevelIndex, lastLevel.removeMembers(removals));
+                            if (publisher.hasSubscribers()) {
+                                publisher.publish(CascadeEvents.truncation(
+                                    Collections.emptyList(), lastLevelIndex + 1, removals));
+                            }
+                        }
+
+                    } finally {
+                        lastLevelLock.unlock();
+                        addLevelLock.unlock();
+                    }
+                }
+                final int deleted = toDelete - remaining;
+                if (deleted > 0) {
+                    size.addAndGet(-deleted);
+                }
+                metrics.recordTruncation(lockedAt, deleted);
+                return deleted;
+            } finally {
+                removeLevelLock.unlock();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int addIndividual(@Nonnull IIndividual<T> addend) {
+        if (!presentIndividuals.add(addend)) {
+            return determineRank(addend);
+        }
+
+        final int rank = cascade(
+            Collections.singletonList(addend),
+            LevelCascade.determineRank(getSnapshot().getLevels(), addend)
+        );
+
+        size.incrementAndGet();
+        massRemoveWorst();
+
+        return rank;
+    }
+
+    /**
+     * Lex-sorts the batch, ranks it against a snapshot once and pushes it down the levels starting from the minimal
+     * rank. Every touched level is locked once, locks are taken hand over hand as in {@link #addIndividual}.
+     */
+    @Override
+    public void addIndividuals(@Nonnull Collection<IIndividual<T>> individuals) {
+        final List<IIndividual<T>> batch = new ArrayList<>(individuals.size());
+        for (IIndividual<T> individual : individuals) {
+            if (presentIndividuals.add(individual)) {
+                batch.add(individual);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        final List<IIndividual<T>> pending = LevelCascade.lexSorted(batch);
+        cascade(pending, LevelCascade.determineMinRank(getSnapshot().getLevels(), pending));
+
+        size.addAndGet(batch.size());
+        massRemoveWorst();
+    }
+
+    /**
+     * Pushes lex-sorted points down the levels starting from {@code minRank}, which may be stale. Members evicted on
+     * the way are checked against the next level like the points themselves. Events of a level are published while
+     * its lock is held.
+     *
+     * @return Rank of the first level which received points
+     */
+    private int cascade(@Nonnull List<IIndividual<T>> pending, final int minRank) {
+        final CascadeEvents<T> events = publisher.hasSubscribers() ? new CascadeEvents<>(publisher) : null;
+        int rank = -1;
+        int i = minRank;
+        Lock lock = acquireLock(i);
+        while (lock != addLevelLock) {
+            //assertion: we hold the lock of the existing level i
+            Lock nextLock = null;
+            try {
+                final JFBYNonDominationLevel<T> level = nonDominationLevels.get(i);
+                final List<IIndividual<T>> dominated = new ArrayList<>();
+                final List<IIndividual<T>> addends = LevelCascade.takeNonDominated(level, pending, dominated);
+                if (!addends.isEmpty()) {
+                    if (rank < 0) {
+                        rank = i;
+                    }
+                    final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevel<T>> memberAdditionResult =
+                        level.addMembers(addends);
+                    nonDominationLevels.set(i, memberAdditionResult.getModifiedLevel());
+                    pending = LevelCascade.lexMerge(memberAdditionResult.getEvictedMembers(), dominated);
+                    if (events != null) {
+                        events.entered(i, addends);
+                        events.left(i, memberAdditionResult.getEvictedMembers());
+                        events.flush();
+                    }
+                } else {
+                    pending = dominated;
+                }
+
+                if (!pending.isEmpty()) {
+                    nextLock = acquireLock(i + 1);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (nextLock == null) {
+                break;
+            }
+            lock = nextLock;
+            i++;
+        }
+
+        if (!pending.isEmpty()) {
+            //assertion: we have locked addLevelLock
+            try {
+                if (rank < 0) {
+                    //levels below a stale minRank may have been truncated meanwhile
+                    rank = nonDominationLevels.size();
+                }
+                while (!pending.isEmpty()) {
+                    final List<IIndividual<T>> dominated = new ArrayList<>();
+                    final List<IIndividual<T>> members = LevelCascade.takeNonDominated(null, pending, dominated);
+                    if (events != null) {
+                        //published before the level is visible, so that no event of the level precedes its creation
+                        final int created = nonDominationLevels.size();
+                        events.levelCreated(created);
+                        events.entered(created, members);
+                        events.flush();
+                    }
+                    appendLevel(levelFactory.create(sorter, members)); //New level - full CD calc
+                    pending = dominated;
+                    i++;
+                }
+            } finally {
+                addLevelLock.unlock();
+            }
+        } else {
+            i++;
+        }
+        metrics.recordCascadeDepth(i - minRank);
+        return rank;
+    }
+
+    /**
+     * Must be called under {@code addLevelLock}
+     */
+    private void appendLevel(@Nonnull JFBYNonDominationLevel<T> level) {
+        nonDominationLevels.add(level);
+        layout = layout.withLevel(new ReentrantLock());
+    }
+
+    /**
+     * @return Lock of the level at {@code rank}, or {@code addLevelLock} if there is no such level
+     */
+    private Lock acquireLock(int rank) {
+        final long start = PopulationMetrics.startTimer();
+        while (true) {
+            final Layout seen = layout;
+            if (rank < seen.locks.length) {
+                final Lock lock = seen.locks[rank];
+                lock.lock();
+                final Layout current = layout;
+                if (current.version == seen.version
+                    || (rank < current.locks.length && current.locks[rank] == lock)) {
+                    metrics.recordLockWait(start);
+                    return lock;
+                }
+                lock.unlock();
+            } else {
+                addLevelLock.lock();
+                if (rank >= layout.locks.length) {
+                    metrics.recordLockWait(start);
+                    return addLevelLock;
+                }
+                addLevelLock.unlock();
+            }
+            metrics.recordRetry();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public PopulationEventPublisher.Subscription<T> subscribe(@Nonnull PopulationListener<T> listener,
+                                                              int capacity,
+                                                              int maxBatch) {
+        return publisher.subscribe(listener, capacity, maxBatch);
+    }
+
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return A copy of this population. All layers are also copied.
+     */
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public LevelLockJFBYPopulationVersioned<T> clone() {
+        final CopyOnWriteArrayList<JFBYNonDominationLevel<T>> levels = new CopyOnWriteArrayList<>();
+        for (JFBYNonDominationLevel<T> level : nonDominationLevels) {
+            levels.add(level.copy());
+        }
+        return new LevelLockJFBYPopulationVersioned<>(sorter, levels, expectedPopSize, deletionThreshold, levelFactory);
+    }
+
+    /**
+     * Level locks of one version of the level array, never modified after publication
+     */
+    @Immutable
+    private static final class Layout {
+        private final Lock[] locks;
+        private final long version;
+
+        private Layout(Lock[] locks, long version) {
+            this.locks = locks;
+            this.version = version;
+        }
+
+        private Layout withLevel(Lock lock) {
+            final Lock[] newLocks = Arrays.copyOf(locks, locks.length + 1);
+            newLocks[locks.length] = lock;
+            return new Layout(newLocks, version + 1);
+        }
+
+        private Layout withoutLastLevel() {
+            return new Layout(Arrays.copyOf(locks, locks.length - 1), version + 1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.impl.RankedIndividual;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cumulative sizes of non-domination levels, maintained alongside the levels so that random members can be drawn
+ * by rank in {@code O(log L)} each, without a snapshot of the population.
+ * <p>
+ * Sizes are updated by deltas through a copy-on-write array, so concurrent updates of different levels never get
+ * lost. Readers may still see sizes which are a step ahead of or behind the levels, therefore every drawn position is
+ * resolved against the current levels by a {@link MemberLookup}, which may reject it.
+ */
+@ThreadSafe
+public final class LevelSizes {
+    private static final int[] EMPTY = new int[0];
+    private static final int MIN_ATTEMPTS = 16;
+    private static final int ATTEMPTS_PER_MEMBER = 8;
+
+    /**
+     * {@code cumulative[i]} is the total size of levels {@code 0..i}
+     */
+    private final AtomicReference<int[]> cumulative = new AtomicReference<>(EMPTY);
+
+    public int total() {
+        final int[] current = cumulative.get();
+        return current.length == 0 ? 0 : current[current.length - 1];
+    }
+
+    /**
+     * Adds {@code delta} to the size of the level {@code rank}, appending empty levels if there are not enough.
+     */
+    public void add(int rank, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        while (true) {
+            final int[] current = cumulative.get();
+            final int[] next = Arrays.copyOf(current, Math.max(current.length, rank + 1));
+            for (int i = current.length; i < next.length; ++i) {
+                next[i] = current.length == 0 ? 0 : current[current.length - 1];
+            }
+            for (int i = rank; i < next.length; ++i) {
+                next[i] += delta;
+            }
+            if (cumulative.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forgets levels starting from {@code fromRank}
+     */
+    public void removeLevels(int fromRank) {
+        while (true) {
+            final int[] current = cumulative.get();
+            if (current.length <= fromRank) {
+                return;
+            }
+            if (cumulative.compareAndSet(current, Arrays.copyOf(current, fromRank))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {@code min(count, total())} distinct random members, {@code null} if the levels changed too much
+     * during the draw, so the caller should fall back to a snapshot
+     */
+    @Nullable
+    public <T> List<RankedIndividual<T>> sample(int count, @Nonnull MemberLookup<T> lookup) {
+        return sample(count, cumulative.get(), lookup);
+    }
+
+    /**
+     * @return Cumulative sizes of {@code levels}
+     */
+    @Nonnull
+    public static int[] cumulative(@Nonnull List<? extends INonDominationLevel<?>> levels) {
+        final int[] result = new int[levels.size()];
+        int sum = 0;
+        for (int i = 0; i < result.length; ++i) {
+            sum += levels.get(i).getMembers().size();
+            result[i] = sum;
+        }
+        return result;
+    }
+
+    /**
+     * Draws distinct positions uniformly: by rejection while {@code count} is at most a half of the population,
+     * by a partial Fisher-Yates shuffle of all positions otherwise.
+     *
+     * @param cumulative Cumulative level sizes
+     * @return {@code min(count, total)} distinct random members in the order of drawing, {@code null} if
+     * {@code lookup} rejected too many positions
+     */
+    @Nullable
+    public static <T> List<RankedIndividual<T>> sample(int count,
+                                                       @Nonnull int[] cumulative,
+                                                       @Nonnull MemberLookup<T> lookup) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative number of random solutions requested");
+        }
+        final int total = cumulative.length == 0 ? 0 : cumulative[cumulative.length - 1];
+        final int actualCount = Math.min(count, total);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final List<RankedIndividual<T>> res = new ArrayList<>(actualCount);
+
+        if (2 * actualCount <= total) {
+            final IIndividual<?>[] drawn = new IIndividual<?>[actualCount];
+            int attempts = MIN_ATTEMPTS + ATTEMPTS_PER_MEMBER * actualCount;
+            while (res.size() < actualCount) {
+                if (--attempts < 0) {
+                    return null;
+                }
+                final int position = random.nextInt(total);
+                final int rank = rankOf(cumulative, position);
+                final IIndividual<T> ind = lookup.get(rank, position - (rank == 0 ? 0 : cumulative[rank - 1]));
+                if (ind != null && !contains(drawn, res.size(), ind)) {
+                    drawn[res.size()] = ind;
+                    res.add(new RankedIndividual<>(ind.getObjectives(), ind.getCrowdingDistance(), rank, ind.getPayload()));
+                }
+            }
+        } else {
+            final int[] positions = new int[total];
+            for (int i = 0; i < total; ++i) {
+                positions[i] = i;
+            }
+            for (int i = 0; i < actualCount; ++i) {
+                final int j = random.nextInt(i, total);
+                final int position = positions[j];
+                positions[j] = positions[i];
+                final int rank = rankOf(cumulative, position);
+                final IIndividual<T> ind = lookup.get(rank, position - (rank == 0 ? 0 : cumulative[rank - 1]));
+                if (ind == null) {
+                    return null;
+                }
+                res.add(new RankedIndividual<>(ind.getObjectives(), ind.getCrowdingDistance(), rank, ind.getPayload()));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return First level whose cumulative size exceeds {@code position}
+     */
+    static int rankOf(@Nonnull int[] cumulative, int position) {
+        int l = 0;
+        int r = cumulative.length - 1;
+        while (l < r) {
+            final int mid = (l + r) >>> 1;
+            if (cumulative[mid] > position) {
+                r = mid;
+            } else {
+                l = mid + 1;
+            }
+        }
+        return l;
+    }
+
+    private static boolean contains(@Nonnull IIndividual<?>[] drawn, int size, @Nonnull IIndividual<?> ind) {
+        for (int i = 0; i < size; ++i) {
+            if (drawn[i] == ind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    public interface MemberLookup<T> {
+        /**
+         * @return Member at {@code index} within the level {@code rank}, {@code null} if there is no such member
+         * anymore
+         */
+        @Nullable
+        IIndividual<T> get(int rank, int index);
+    }
+}
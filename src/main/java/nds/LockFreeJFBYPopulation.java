@@ -0,0 +1,322 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+import ru.ifmo.nds.impl.FitnessAndCdIndividual;
+import ru.ifmo.nds.impl.RankedIndividual;
+import ru.ifmo.nds.util.median.QuickSelect;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free population. The whole set of levels is an immutable {@link State} published through a single
+ * {@link AtomicReference}.
+ * <p>
+ * An insertion is first announced by installing a state which carries it as {@code pending}, then committed by
+ * replacing that state with the one where the addend is pushed through the level cascade. Any thread which
+ * observes a pending insertion helps to commit it before announcing its own, so a stalled inserter never blocks
+ * the others. {@link #getSnapshot()} is a single volatile read and never copies levels.
+ */
+@ThreadSafe
+public class LockFreeJFBYPopulation<T> implements IManagedPopulation<T> {
+    private static final double DEFAULT_DELETION_THRESHOLD = 1.2;
+
+    private final JFB2014 sorter;
+
+    private final AtomicReference<State<T>> state;
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
+
+    private final long expectedPopSize;
+    private final double deletionThreshold;
+
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+
+    @SuppressWarnings("WeakerAccess")
+    public LockFreeJFBYPopulation() {
+        this(Long.MAX_VALUE);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LockFreeJFBYPopulation(long expectedPopSize) {
+        this(new IncrementalJFB(), Collections.emptyList(), expectedPopSize, DEFAULT_DELETION_THRESHOLD);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LockFreeJFBYPopulation(final long expectedPopSize,
+                                  final double deletionThreshold) {
+        this(new IncrementalJFB(), Collections.emptyList(), expectedPopSize, deletionThreshold);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LockFreeJFBYPopulation(@Nonnull final JFB2014 sorter,
+                                  @Nonnull final List<JFBYNonDominationLevel<T>> nonDominationLevels,
+                                  final long expectedPopSize,
+                                  final double deletionThreshold) {
+        this.sorter = sorter;
+        this.expectedPopSize = expectedPopSize;
+        this.deletionThreshold = deletionThreshold;
+
+        int size = 0;
+        for (INonDominationLevel<T> level : nonDominationLevels) {
+            size += level.getMembers().size();
+            for (IIndividual<T> individual : level.getMembers()) {
+                presentIndividuals.add(individual);
+            }
+        }
+        this.state = new AtomicReference<>(new State<>(new ArrayList<>(nonDominationLevels), size, null));
+    }
+
+    @Override
+    @Nonnull
+    public PopulationSnapshot<T> getSnapshot() {
+        return state.get().snapshot;
+    }
+
+    @Nonnull
+    @Override
+    public List<? extends INonDominationLevel<T>> getLevelsUnsafe() {
+        return state.get().levels;
+    }
+
+    @Override
+    public int size() {
+        return state.get().snapshot.getSize();
+    }
+
+    /**
+     * Draws from a single state, so the sample is exact and needs no snapshot.
+     */
+    @Nonnull
+    @Override
+    public List<RankedIndividual<T>> getRandomSolutions(int count) {
+        final State<T> current = state.get();
+        final List<RankedIndividual<T>> res = LevelSizes.sample(
+            count,
+            current.cumulativeSizes,
+            (rank, index) -> current.levels.get(rank).getMembers().get(index)
+        );
+        assert res != null : "Immutable levels never reject a member";
+        return res;
+    }
+
+    @Override
+    public int determineRank(IIndividual<T> point) {
+        return LevelCascade.determineRank(state.get().levels, point);
+    }
+
+    @Override
+    public int addIndividual(@Nonnull IIndividual<T> addend) {
+        if (!presentIndividuals.add(addend)) {
+            return determineRank(addend);
+        }
+
+        final Insertion<T> insertion = new Insertion<>(Collections.singletonList(addend), false);
+        commit(insertion);
+        massRemoveWorst();
+
+        return insertion.rank;
+    }
+
+    /**
+     * The whole batch is committed by a single state transition.
+     */
+    @Override
+    public void addIndividuals(@Nonnull Collection<IIndividual<T>> individuals) {
+        final List<IIndividual<T>> batch = new ArrayList<>(individuals.size());
+        for (IIndividual<T> individual : individuals) {
+            if (presentIndividuals.add(individual)) {
+                batch.add(individual);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        commit(new Insertion<>(LevelCascade.lexSorted(batch), true));
+        massRemoveWorst();
+    }
+
+    private void commit(@Nonnull Insertion<T> insertion) {
+        while (true) {
+            final State<T> current = state.get();
+            if (current.pending != null) {
+                help(current);
+                metrics.recordRetry();
+                continue;
+            }
+
+            final State<T> announced = new State<>(current.levels, current.snapshot.getSize(), insertion);
+            if (state.compareAndSet(current, announced)) {
+                help(announced);
+                return;
+            }
+            metrics.recordRetry();
+        }
+    }
+
+    /**
+     * Commits the insertion pending in {@code announced}. Every helper computes the same successor state, so it
+     * does not matter whose compare-and-set wins.
+     */
+    private void help(@Nonnull State<T> announced) {
+        final Insertion<T> insertion = announced.pending;
+        assert insertion != null;
+
+        final List<JFBYNonDominationLevel<T>> levels = new ArrayList<>(announced.levels);
+        final int rank = LevelCascade.determineMinRank(levels, insertion.addends);
+
+        List<IIndividual<T>> pending = insertion.addends;
+        //evicted members of a level never dominate each other nor are dominated by the next level
+        boolean checkDomination = insertion.batch;
+        int i = rank;
+        while (!pending.isEmpty() && i < levels.size()) {
+            final List<IIndividual<T>> dominated = new ArrayList<>();
+            final List<IIndividual<T>> addends = checkDomination
+                ? LevelCascade.takeNonDominated(levels.get(i), pending, dominated)
+                : pending;
+            if (!addends.isEmpty()) {
+                final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevel<T>> memberAdditionResult =
+                    levels.get(i).addMembers(addends);
+                levels.set(i, memberAdditionResult.getModifiedLevel());
+                pending = LevelCascade.lexMerge(memberAdditionResult.getEvictedMembers(), dominated);
+            } else {
+                pending = dominated;
+            }
+            checkDomination = !dominated.isEmpty();
+            i++;
+        }
+        while (!pending.isEmpty()) {
+            final List<IIndividual<T>> dominated = new ArrayList<>();
+            final List<IIndividual<T>> members = checkDomination
+                ? LevelCascade.takeNonDominated(null, pending, dominated)
+                : pending;
+            levels.add(new JFBYNonDominationLevel<>(sorter, members)); //New level - full CD calc
+            pending = dominated;
+            i++;
+        }
+
+        insertion.rank = rank;
+        if (state.compareAndSet(announced, new State<>(levels, announced.snapshot.getSize() + insertion.addends.size(), null))) {
+            metrics.recordCascadeDepth(i - rank);
+        }
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    private int massRemoveWorst() {
+        while (true) {
+            final long start = PopulationMetrics.startTimer();
+            final State<T> current = state.get();
+            if (current.snapshot.getSize() <= expectedPopSize * deletionThreshold) {
+                return 0;
+            }
+            if (current.pending != null) {
+                help(current);
+                continue;
+            }
+
+            final List<JFBYNonDominationLevel<T>> levels = new ArrayList<>(current.levels);
+            final List<IIndividual<T>> removals = new ArrayList<>();
+            final int toDelete = (int) (current.snapshot.getSize() - expectedPopSize);
+            int remaining = toDelete;
+            while (remaining > 0 && !levels.isEmpty()) {
+                final int lastLevelIndex = levels.size() - 1;
+                final JFBYNonDominationLevel<T> lastLevel = levels.get(lastLevelIndex);
+                if (lastLevel.getMembers().size() <= remaining) {
+                    levels.remove(lastLevelIndex);
+                    removals.addAll(lastLevel.getMembers());
+                    remaining -= lastLevel.getMembers().size();
+                } else {
+                    final double[] cd = new double[lastLevel.getMembers().size()];
+                    int i = 0;
+                    for (IIndividual cdIndividual : lastLevel.getMembers()) {
+                        cd[i++] = cdIndividual.getCrowdingDistance();
+                    }
+                    final double cdThreshold = new QuickSelect().getKthElement(cd, remaining);
+                    final List<IIndividual<T>> levelRemovals = new ArrayList<>();
+                    for (IIndividual<T> individual : lastLevel.getMembers()) {
+                        if (remaining > 0 && individual.getCrowdingDistance() <= cdThreshold) {
+                            levelRemovals.add(individual);
+                            --remaining;
+                        }
+                    }
+
+                    final SortedObjectives<IIndividual<T>, T> nso = lastLevel.getSortedObjectives().update(
+                        Collections.emptyList(),
+                        levelRemovals,
+                        (i1, d) -> new FitnessAndCdIndividual<>(i1.getObjectives(), d, i1.getPayload())
+                    );
+                    levels.set(lastLevelIndex, new JFBYNonDominationLevel<>(sorter, nso.getLexSortedPop(), nso));
+                    removals.addAll(levelRemovals);
+                }
+            }
+
+            if (state.compareAndSet(current, new State<>(levels, current.snapshot.getSize() - removals.size(), null))) {
+                presentIndividuals.removeAll(removals);
+                metrics.recordTruncation(start, removals.size());
+                return toDelete;
+            }
+            metrics.recordRetry();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return A copy of this population. All layers are also copied.
+     */
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public LockFreeJFBYPopulation<T> clone() {
+        final List<JFBYNonDominationLevel<T>> levels = new ArrayList<>();
+        for (JFBYNonDominationLevel<T> level : state.get().levels) {
+            levels.add(level.copy());
+        }
+        return new LockFreeJFBYPopulation<>(sorter, levels, expectedPopSize, deletionThreshold);
+    }
+
+    private static final class Insertion<T> {
+        /**
+         * Lex-sorted
+         */
+        private final List<IIndividual<T>> addends;
+        private final boolean batch;
+        private volatile int rank = -1;
+
+        private Insertion(@Nonnull List<IIndividual<T>> addends, boolean batch) {
+            this.addends = addends;
+            this.batch = batch;
+        }
+    }
+
+    @Immutable
+    private static final class State<T> {
+        private final List<JFBYNonDominationLevel<T>> levels;
+        private final PopulationSnapshot<T> snapshot;
+        /**
+         * See {@link LevelSizes#cumulative(List)}
+         */
+        private final int[] cumulativeSizes;
+        @Nullable
+        private final Insertion<T> pending;
+
+        private State(@Nonnull List<JFBYNonDominationLevel<T>> levels, int size, @Nullable Insertion<T> pending) {
+            this.levels = Collections.unmodifiableList(levels);
+            this.snapshot = new PopulationSnapshot<>(Collections.unmodifiableList(levels), size);
+            this.cumulativeSizes = LevelSizes.cumulative(levels);
+            this.pending = pending;
+        }
+    }
+}
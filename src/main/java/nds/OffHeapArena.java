@@ -0,0 +1,252 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Source of the off-heap segments of {@link OffHeapJFBYNonDominationLevel}.
+ * <p>
+ * Segments are bump-allocated from large slabs, either direct buffers or memory-mapped temporary files, so that the
+ * many short-lived segments of copy-on-write levels neither pay for {@link ByteBuffer#allocateDirect} one by one nor
+ * count against the direct memory limit one by one. A segment is a slice of its slab and keeps it reachable: a slab
+ * is released by the garbage collector once no segment cut from it is in use. A single long-lived level can therefore
+ * retain a whole slab, which is the price of never freeing memory explicitly under concurrent readers.
+ * <p>
+ * Segments larger than a quarter of a slab get a buffer of their own. Such a buffer is taken back by the arena as soon
+ * as its segment is unreachable, which no reader can observe, and handed out again for the next oversize segment that
+ * fits, so that large levels replaced over and over do not allocate a direct buffer each time. Up to
+ * {@link #MAX_POOLED_BUFFERS} buffers are kept for reuse, further ones are left to the garbage collector.
+ */
+@ThreadSafe
+public final class OffHeapArena {
+    public static final int DEFAULT_SLAB_SIZE = 64 << 20;
+    public static final int MAX_POOLED_BUFFERS = 8;
+
+    private final int slabSize;
+    @Nullable
+    private final Path directory;
+    private final AtomicReference<Slab> current = new AtomicReference<>();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder slabCount = new LongAdder();
+    private final ReferenceQueue<ByteBuffer> unreachableSegments = new ReferenceQueue<>();
+    /**
+     * Keeps the references to the oversize segments in use reachable until they are enqueued
+     */
+    private final Set<OversizeSegment> oversizeSegments = ConcurrentHashMap.newKeySet();
+    private final Queue<ByteBuffer> pooledBuffers = new ConcurrentLinkedQueue<>();
+    private final LongAdder oversizeCount = new LongAdder();
+    private final LongAdder reusedCount = new LongAdder();
+
+    private OffHeapArena(int slabSize, @Nullable Path directory) {
+        if (slabSize <= 0) {
+            throw new IllegalArgumentException("Slab size must be positive: " + slabSize);
+        }
+        this.slabSize = slabSize;
+        this.directory = directory;
+    }
+
+    /**
+     * @return Arena of direct buffers of {@link #DEFAULT_SLAB_SIZE} bytes
+     */
+    @Nonnull
+    public static OffHeapArena direct() {
+        return direct(DEFAULT_SLAB_SIZE);
+    }
+
+    @Nonnull
+    public static OffHeapArena direct(int slabSize) {
+        return new OffHeapArena(slabSize, null);
+    }
+
+    /**
+     * @param directory Directory of the mapped files, which are deleted right after mapping
+     */
+    @Nonnull
+    public static OffHeapArena mapped(@Nonnull Path directory, int slabSize) {
+        return new OffHeapArena(slabSize, directory);
+    }
+
+    /**
+     * @return Zeroed buffer of exactly {@code bytes} bytes, position 0
+     */
+    @Nonnull
+    public ByteBuffer allocate(int bytes) {
+        allocatedBytes.add(bytes);
+        //doubles are kept 8-byte aligned within a slab
+        final int aligned = (bytes + 7) & ~7;
+        if (aligned > slabSize / 4) {
+            return allocateOversize(bytes);
+        }
+        while (true) {
+            final Slab slab = current.get();
+            if (slab != null) {
+                final ByteBuffer segment = slab.cut(aligned, bytes);
+                if (segment != null) {
+                    return segment;
+                }
+            }
+            final Slab fresh = new Slab(newBuffer(slabSize));
+            if (current.compareAndSet(slab, fresh)) {
+                slabCount.increment();
+            }
+        }
+    }
+
+    /**
+     * @return Total size of the allocated segments, including released ones
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * @return Number of slabs created so far, including released ones
+     */
+    public long getSlabCount() {
+        return slabCount.sum();
+    }
+
+    /**
+     * @return Number of oversize segments allocated so far, including the ones in reused buffers
+     */
+    public long getOversizeCount() {
+        return oversizeCount.sum();
+    }
+
+    /**
+     * @return Number of oversize segments placed in a buffer released by an earlier one
+     */
+    public long getReusedCount() {
+        return reusedCount.sum();
+    }
+
+    @Nonnull
+    private ByteBuffer allocateOversize(int bytes) {
+        oversizeCount.increment();
+        reclaimOversizeBuffers();
+        ByteBuffer buffer = takePooledBuffer(bytes);
+        if (buffer == null) {
+            //rounded up, so that a buffer also fits a somewhat larger version of the same level
+            final int granularity = slabSize / 4;
+            buffer = newBuffer((int) Math.min(Integer.MAX_VALUE, ((long) bytes + granularity - 1) / granularity * granularity));
+        } else {
+            reusedCount.increment();
+            int i = 0;
+            for (; i + Long.BYTES <= bytes; i += Long.BYTES) {
+                buffer.putLong(i, 0);
+            }
+            for (; i < bytes; ++i) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        final ByteBuffer view = buffer.duplicate();
+        view.limit(bytes);
+        final ByteBuffer segment = view.slice();
+        oversizeSegments.add(new OversizeSegment(segment, buffer, unreachableSegments));
+        return segment;
+    }
+
+    private void reclaimOversizeBuffers() {
+        Reference<? extends ByteBuffer> reference;
+        while ((reference = unreachableSegments.poll()) != null) {
+            final OversizeSegment segment = (OversizeSegment) reference;
+            oversizeSegments.remove(segment);
+            if (pooledBuffers.size() < MAX_POOLED_BUFFERS) {
+                pooledBuffers.add(segment.buffer);
+            }
+        }
+    }
+
+    /**
+     * @return Pooled buffer of at least {@code bytes} and less than twice as many bytes, {@code null} if none
+     */
+    @Nullable
+    private ByteBuffer takePooledBuffer(int bytes) {
+        for (ByteBuffer buffer : pooledBuffers) {
+            if (buffer.capacity() >= bytes && buffer.capacity() / 2 < bytes && pooledBuffers.remove(buffer)) {
+                return buffer;
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    private ByteBuffer newBuffer(int bytes) {
+        if (directory == null) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        try {
+            final Path file = Files.createTempFile(directory, "nds-level-", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            } finally {
+                //the mapping outlives both the channel and the directory entry
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (directory == null ? "direct" : "mapped to " + directory) + ", slabs=" + getSlabCount()
+            + ", allocated=" + getAllocatedBytes() + ", oversize=" + getOversizeCount() + ", reused=" + getReusedCount();
+    }
+
+    /**
+     * Oversize segment in use, enqueued once the segment is unreachable
+     */
+    private static final class OversizeSegment extends PhantomReference<ByteBuffer> {
+        private final ByteBuffer buffer;
+
+        private OversizeSegment(@Nonnull ByteBuffer segment,
+                                @Nonnull ByteBuffer buffer,
+                                @Nonnull ReferenceQueue<ByteBuffer> queue) {
+            super(segment, queue);
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Slab {
+        private final ByteBuffer buffer;
+        private int top;
+
+        private Slab(@Nonnull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return Slice of {@code bytes} bytes starting at the next {@code aligned} bytes, {@code null} if the slab
+         * is exhausted
+         */
+        @Nullable
+        private synchronized ByteBuffer cut(int aligned, int bytes) {
+            if (buffer.capacity() - top < aligned) {
+                return null;
+            }
+            final ByteBuffer view = buffer.duplicate();
+            view.position(top);
+            view.limit(top + bytes);
+            top += aligned;
+            return view.slice();
+        }
+    }
+}
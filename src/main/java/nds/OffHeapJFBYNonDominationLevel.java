@@ -0,0 +1,686 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+import ru.ifmo.nds.util.Utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Level whose objectives, crowding distances and per-objective orders live in off-heap segments of an
+ * {@link OffHeapArena}; the heap only holds the payloads. It extends {@link JFBYNonDominationLevel}, so any
+ * population can hold it, and creates levels of its own kind when members are added or removed.
+ * <p>
+ * Objectives and payloads are kept in {@link Rows} which are only ever appended to and are shared by the levels
+ * derived from one another. A level refers to its lex-sorted members by row in an index segment of its own, next to
+ * their crowding distances and the orders by each objective. {@link #addMembers(List)} ranks the addends against the
+ * rows without the JFB sorter: addends dominated by a member or another addend are returned with the evicted members.
+ * Large batches, such as a whole level pushed down by a cascade, are compared through a {@link DominanceIndex} of the
+ * addends instead of pairwise.
+ * Accepted addends are written past the rows of this level if no other level has claimed them yet and the rows have
+ * room, otherwise the kept members and the addends are compacted into new rows. The per-objective orders of the new
+ * level are merged from the old ones, so only the addends are sorted, and crowding distances are recomputed in a
+ * linear pass.
+ * <p>
+ * {@link #getMembers()} is a view which creates a small {@link IIndividual} the first time a member is accessed and
+ * keeps it, dominance checks read the rows directly. {@link #getSortedObjectives()} builds heap
+ * {@link SortedObjectives} on demand, for code which trims levels through them; populations using
+ * {@link #removeMembers(List)} keep trimmed levels off-heap.
+ */
+@ThreadSafe
+@Immutable
+public class OffHeapJFBYNonDominationLevel<T> extends JFBYNonDominationLevel<T> {
+    private static final int NOT_KEPT = -1;
+    private static final int MIN_SPARE_ROWS = 16;
+    /**
+     * Larger batches of addends are checked against each other and the members through a {@link DominanceIndex}
+     */
+    private static final int PAIRWISE_LIMIT = LevelCascade.PAIRWISE_LIMIT;
+
+    @Nonnull
+    private final JFB2014 sorter;
+    @Nonnull
+    private final OffHeapArena arena;
+    private final int dim;
+    private final int size;
+    @Nonnull
+    private final Rows rows;
+    /**
+     * Number of rows written when this level was created, rows from here on belong to levels derived from others
+     */
+    private final int rowsEnd;
+    /**
+     * Crowding distances of the lex-sorted members, then their rows, then the members in ascending order of each
+     * objective
+     */
+    @Nonnull
+    private final ByteBuffer index;
+    @Nonnull
+    private final List<IIndividual<T>> members = new MemberList();
+    @Nullable
+    private volatile OffHeapIndividual<T>[] memberViews;
+    @Nullable
+    private volatile SortedObjectives<IIndividual<T>, T> sortedObjectives;
+
+    /**
+     * @param members Lex-sorted, mutually non-dominated members
+     */
+    public OffHeapJFBYNonDominationLevel(@Nonnull JFB2014 sorter,
+                                         @Nonnull OffHeapArena arena,
+                                         @Nonnull List<IIndividual<T>> members) {
+        this(sorter, arena, dimensionOf(members), rowsOf(arena, members), members.size(), firstRows(members.size()), null);
+    }
+
+    /**
+     * @param memberRows Rows of the lex-sorted members
+     * @param orders     Per objective, members in ascending order of that objective, {@code null} to sort
+     */
+    private OffHeapJFBYNonDominationLevel(@Nonnull JFB2014 sorter,
+                                          @Nonnull OffHeapArena arena,
+                                          int dim,
+                                          @Nonnull Rows rows,
+                                          int rowsEnd,
+                                          @Nonnull int[] memberRows,
+                                          @Nullable int[][] orders) {
+        super(sorter, Collections.emptyList(), SortedObjectives.empty(0));
+        this.sorter = sorter;
+        this.arena = arena;
+        this.dim = dim;
+        this.size = memberRows.length;
+        this.rows = rows;
+        this.rowsEnd = rowsEnd;
+
+        if (orders == null) {
+            orders = new int[dim][];
+            for (int obj = 0; obj < dim; ++obj) {
+                orders[obj] = sortedMembers(rows, memberRows, obj);
+            }
+        }
+        final double[] cd = crowdingDistances(rows, memberRows, orders);
+
+        final ByteBuffer s = arena.allocate(size * (Double.BYTES + (dim + 1) * Integer.BYTES))
+            .order(ByteOrder.nativeOrder());
+        s.asDoubleBuffer().put(cd, 0, size);
+        s.position(size * Double.BYTES);
+        s.asIntBuffer().put(memberRows, 0, size);
+        s.position(s.position() + size * Integer.BYTES);
+        for (int[] order : orders) {
+            s.asIntBuffer().put(order, 0, size);
+            s.position(s.position() + size * Integer.BYTES);
+        }
+        s.clear();
+        this.index = s;
+    }
+
+    /**
+     * @return Factory of off-heap levels allocated from {@code arena}
+     */
+    @Nonnull
+    public static <T> LevelFactory<T> factory(@Nonnull OffHeapArena arena) {
+        return (sorter, members) -> new OffHeapJFBYNonDominationLevel<>(sorter, arena, members);
+    }
+
+    @Override
+    @Nonnull
+    public List<IIndividual<T>> getMembers() {
+        return members;
+    }
+
+    @Override
+    @Nonnull
+    public SortedObjectives<IIndividual<T>, T> getSortedObjectives() {
+        SortedObjectives<IIndividual<T>, T> result = sortedObjectives;
+        if (result == null) {
+            //benign race: every thread builds the same objectives of the immutable index
+            final List<int[]> orders = new ArrayList<>(dim);
+            for (int obj = 0; obj < dim; ++obj) {
+                orders.add(orderOf(obj));
+            }
+            result = SortedObjectives.restore(dim, orders, new ArrayList<>(members));
+            sortedObjectives = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean dominatedByAnyPointOfThisLayer(@Nonnull IIndividual point) {
+        final double[] objectives = point.getObjectives();
+        for (int i = 0; i < size; ++i) {
+            final int row = memberRow(i);
+            //a member lex-greater than the point has a greater first objective, so it can not dominate it
+            if (rows.objective(row, 0) > objectives[0]) {
+                return false;
+            }
+            if (rows.dominates(row, objectives)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public MemberAdditionResult<T, JFBYNonDominationLevel<T>> addMembers(@Nonnull List<IIndividual<T>> addends) {
+        if (addends.isEmpty()) {
+            return new MemberAdditionResult<>(Collections.emptyList(), this);
+        }
+        if (size == 0 && dim == 0) {
+            //a level created without members does not know the number of objectives
+            final int addendDim = dimensionOf(addends);
+            return new OffHeapJFBYNonDominationLevel<T>(sorter, arena, addendDim, Rows.reserved(arena, addendDim, 0), 0,
+                new int[0], null).addMembers(addends);
+        }
+        final List<IIndividual<T>> sortedAddends = new ArrayList<>(addends);
+        sortedAddends.sort(LEX_ORDER);
+        final int k = sortedAddends.size();
+
+        final DominanceIndex addendIndex = k > PAIRWISE_LIMIT ? DominanceIndex.create(dim, sortedAddends) : null;
+        final boolean[] accepted = new boolean[k];
+        final List<IIndividual<T>> acceptedAddends = new ArrayList<>();
+        for (int a = 0; a < k; ++a) {
+            final double[] objectives = sortedAddends.get(a).getObjectives();
+            accepted[a] = !dominatedByAnyPointOfThisLayer(sortedAddends.get(a))
+                && !(addendIndex != null ? addendIndex.dominatedByAny(objectives) : dominatedByAny(sortedAddends, objectives));
+            if (accepted[a]) {
+                acceptedAddends.add(sortedAddends.get(a));
+            }
+        }
+        final int acceptedCount = acceptedAddends.size();
+
+        final DominanceIndex acceptedIndex = acceptedCount > PAIRWISE_LIMIT
+            ? DominanceIndex.create(dim, acceptedAddends)
+            : null;
+        final double[] memberObjectives = new double[dim];
+        final boolean[] evicted = new boolean[size];
+        int evictedCount = 0;
+        for (int i = 0; i < size && acceptedCount > 0; ++i) {
+            final int row = memberRow(i);
+            if (acceptedIndex != null) {
+                rows.read(row, memberObjectives);
+                evicted[i] = acceptedIndex.dominatedByAny(memberObjectives);
+            } else {
+                for (int a = 0; a < acceptedCount && !evicted[i]; ++a) {
+                    evicted[i] = rows.isDominatedBy(row, acceptedAddends.get(a).getObjectives());
+                }
+            }
+            if (evicted[i]) {
+                ++evictedCount;
+            }
+        }
+
+        final List<IIndividual<T>> nextLevel = new ArrayList<>(evictedCount + k - acceptedCount);
+        for (int i = 0, a = 0; i < size || a < k; ) {
+            if (a < k && accepted[a]) {
+                ++a;
+            } else if (i < size && !evicted[i]) {
+                ++i;
+            } else if (a >= k || (i < size && rows.lexCompare(memberRow(i), sortedAddends.get(a).getObjectives()) <= 0)) {
+                nextLevel.add(members.get(i++));
+            } else {
+                nextLevel.add(sortedAddends.get(a++));
+            }
+        }
+        if (acceptedCount == 0 && evictedCount == 0) {
+            return new MemberAdditionResult<>(nextLevel, this);
+        }
+
+        //members of the new level: kept members and accepted addends, merged in lex order
+        final int newSize = size - evictedCount + acceptedCount;
+        //rows are shared until half of them are no longer members
+        final Rows newRows = rowsEnd - size <= size && (acceptedCount == 0 || rows.reserve(rowsEnd, acceptedCount))
+            ? rows
+            : Rows.reserved(arena, dim, newSize);
+        int nextRow = newRows == rows ? rowsEnd : 0;
+        final int[] memberRows = new int[newSize];
+        final int[] newIndexOfMember = new int[size];
+        final int[] newIndexOfAddend = new int[k];
+        int m = 0;
+        for (int i = 0, a = 0; i < size || a < k; ) {
+            if (i < size && evicted[i]) {
+                newIndexOfMember[i++] = NOT_KEPT;
+            } else if (a < k && !accepted[a]) {
+                newIndexOfAddend[a++] = NOT_KEPT;
+            } else if (a >= k || (i < size && rows.lexCompare(memberRow(i), sortedAddends.get(a).getObjectives()) <= 0)) {
+                int row = memberRow(i);
+                if (newRows != rows) {
+                    newRows.copy(nextRow, rows, row);
+                    row = nextRow++;
+                }
+                memberRows[m] = row;
+                newIndexOfMember[i++] = m++;
+            } else {
+                final IIndividual<T> addend = sortedAddends.get(a);
+                newRows.write(nextRow, addend.getObjectives(), addend.getPayload());
+                memberRows[m] = nextRow++;
+                newIndexOfAddend[a++] = m++;
+            }
+        }
+
+        final int[][] orders = new int[dim][];
+        final Integer[] addendOrder = new Integer[acceptedCount];
+        for (int obj = 0; obj < dim; ++obj) {
+            for (int a = 0, j = 0; a < k; ++a) {
+                if (accepted[a]) {
+                    addendOrder[j++] = a;
+                }
+            }
+            final int o = obj;
+            Arrays.sort(addendOrder, Comparator.comparingDouble(a -> sortedAddends.get(a).getObjectives()[o]));
+
+            final int[] order = new int[newSize];
+            int c = 0;
+            int j = 0;
+            for (int p = 0; p < size; ++p) {
+                final int member = index.getInt(orderOffset(obj, p));
+                if (newIndexOfMember[member] == NOT_KEPT) {
+                    continue;
+                }
+                final double value = objective(member, obj);
+                while (j < acceptedCount && sortedAddends.get(addendOrder[j]).getObjectives()[obj] <= value) {
+                    order[c++] = newIndexOfAddend[addendOrder[j++]];
+                }
+                order[c++] = newIndexOfMember[member];
+            }
+            while (j < acceptedCount) {
+                order[c++] = newIndexOfAddend[addendOrder[j++]];
+            }
+            orders[obj] = order;
+        }
+        return new MemberAdditionResult<>(nextLevel,
+            new OffHeapJFBYNonDominationLevel<>(sorter, arena, dim, newRows, nextRow, memberRows, orders));
+    }
+
+    /**
+     * Removals created by {@link #getMembers()} of this level are matched by member, others by objectives
+     */
+    @Override
+    @Nonnull
+    public JFBYNonDominationLevel<T> removeMembers(@Nonnull List<IIndividual<T>> removals) {
+        final boolean[] removed = new boolean[size];
+        int removedCount = 0;
+        for (IIndividual<T> removal : removals) {
+            final int i = memberOf(removal);
+            if (i >= 0 && !removed[i]) {
+                removed[i] = true;
+                ++removedCount;
+            }
+        }
+        if (removedCount == 0) {
+            return this;
+        }
+
+        final int newSize = size - removedCount;
+        final Rows newRows = rowsEnd - newSize <= newSize ? rows : Rows.reserved(arena, dim, newSize);
+        final int[] memberRows = new int[newSize];
+        final int[] newIndex = new int[size];
+        for (int i = 0, m = 0; i < size; ++i) {
+            if (removed[i]) {
+                newIndex[i] = NOT_KEPT;
+            } else {
+                memberRows[m] = memberRow(i);
+                if (newRows != rows) {
+                    newRows.copy(m, rows, memberRows[m]);
+                    memberRows[m] = m;
+                }
+                newIndex[i] = m++;
+            }
+        }
+        final int[][] orders = new int[dim][newSize];
+        for (int obj = 0; obj < dim; ++obj) {
+            for (int p = 0, c = 0; p < size; ++p) {
+                final int member = index.getInt(orderOffset(obj, p));
+                if (newIndex[member] != NOT_KEPT) {
+                    orders[obj][c++] = newIndex[member];
+                }
+            }
+        }
+        return new OffHeapJFBYNonDominationLevel<>(sorter, arena, dim, newRows,
+            newRows == rows ? rowsEnd : newSize, memberRows, orders);
+    }
+
+    /**
+     * The level is immutable, so the copy is the level itself
+     */
+    @Override
+    public OffHeapJFBYNonDominationLevel<T> copy() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        final List<String> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            rows.add(Arrays.toString(objectivesOf(i)));
+        }
+        return "members=" + rows;
+    }
+
+    private double crowdingDistance(int member) {
+        return index.getDouble(member * Double.BYTES);
+    }
+
+    private int memberRow(int member) {
+        return index.getInt(size * Double.BYTES + member * Integer.BYTES);
+    }
+
+    private int orderOffset(int obj, int position) {
+        return size * (Double.BYTES + Integer.BYTES) + (obj * size + position) * Integer.BYTES;
+    }
+
+    private double objective(int member, int obj) {
+        return rows.objective(memberRow(member), obj);
+    }
+
+    @Nonnull
+    private double[] objectivesOf(int member) {
+        final double[] objectives = new double[dim];
+        rows.read(memberRow(member), objectives);
+        return objectives;
+    }
+
+    @Nonnull
+    private int[] orderOf(int obj) {
+        final int[] order = new int[size];
+        for (int p = 0; p < size; ++p) {
+            order[p] = index.getInt(orderOffset(obj, p));
+        }
+        return order;
+    }
+
+    private static <T> boolean dominatedByAny(@Nonnull List<IIndividual<T>> individuals, @Nonnull double[] objectives) {
+        for (IIndividual<T> individual : individuals) {
+            if (Utils.dominates(individual.getObjectives(), objectives, objectives.length) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Lex index of {@code individual}, -1 if it is not a member
+     */
+    private int memberOf(@Nonnull IIndividual<T> individual) {
+        if (individual instanceof OffHeapIndividual && ((OffHeapIndividual<?>) individual).level == this) {
+            return ((OffHeapIndividual<?>) individual).member;
+        }
+        final double[] objectives = individual.getObjectives();
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int cmp = rows.lexCompare(memberRow(mid), objectives);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static final Comparator<IIndividual<?>> LEX_ORDER =
+        (a, b) -> Utils.lexCompare(a.getObjectives(), b.getObjectives(), a.getObjectives().length);
+
+    private static int dimensionOf(@Nonnull List<? extends IIndividual<?>> members) {
+        return members.isEmpty() ? 0 : members.get(0).getObjectives().length;
+    }
+
+    @Nonnull
+    private static Rows rowsOf(@Nonnull OffHeapArena arena, @Nonnull List<? extends IIndividual<?>> members) {
+        final Rows rows = Rows.reserved(arena, dimensionOf(members), members.size());
+        for (int i = 0; i < members.size(); ++i) {
+            rows.write(i, members.get(i).getObjectives(), members.get(i).getPayload());
+        }
+        return rows;
+    }
+
+    @Nonnull
+    private static int[] firstRows(int count) {
+        final int[] rows = new int[count];
+        for (int i = 0; i < count; ++i) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    @Nonnull
+    private static int[] sortedMembers(@Nonnull Rows rows, @Nonnull int[] memberRows, int obj) {
+        final int size = memberRows.length;
+        final Integer[] members = new Integer[size];
+        for (int i = 0; i < size; ++i) {
+            members[i] = i;
+        }
+        Arrays.sort(members, Comparator.comparingDouble(i -> rows.objective(memberRows[i], obj)));
+        final int[] order = new int[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = members[i];
+        }
+        return order;
+    }
+
+    @Nonnull
+    private static double[] crowdingDistances(@Nonnull Rows rows, @Nonnull int[] memberRows, @Nonnull int[][] orders) {
+        final int size = memberRows.length;
+        final double[] cd = new double[size];
+        if (size == 0) {
+            return cd;
+        }
+        for (int obj = 0; obj < orders.length; ++obj) {
+            final int[] order = orders[obj];
+            cd[order[0]] = Double.POSITIVE_INFINITY;
+            cd[order[size - 1]] = Double.POSITIVE_INFINITY;
+            final double range = rows.objective(memberRows[order[size - 1]], obj) - rows.objective(memberRows[order[0]], obj);
+            if (range > 0) {
+                final double inverseDelta = 1.0 / range;
+                for (int j = 1; j < size - 1; ++j) {
+                    cd[order[j]] += (rows.objective(memberRows[order[j + 1]], obj)
+                        - rows.objective(memberRows[order[j - 1]], obj)) * inverseDelta;
+                }
+            }
+        }
+        return cd;
+    }
+
+    /**
+     * Objectives and payloads of the members of related levels. Rows are only appended: a level writes its new
+     * members past the rows of the level it was derived from after reserving them, so rows read by existing levels
+     * never change.
+     */
+    @ThreadSafe
+    private static final class Rows {
+        private final int dim;
+        @Nonnull
+        private final ByteBuffer objectives;
+        @Nonnull
+        private final Object[] payloads;
+        private final AtomicInteger end = new AtomicInteger();
+
+        private Rows(@Nonnull OffHeapArena arena, int dim, int capacity) {
+            this.dim = dim;
+            this.objectives = arena.allocate(capacity * dim * Double.BYTES).order(ByteOrder.nativeOrder());
+            this.payloads = new Object[capacity];
+        }
+
+        /**
+         * @return Rows with spare room, whose first {@code count} rows are reserved
+         */
+        @Nonnull
+        private static Rows reserved(@Nonnull OffHeapArena arena, int dim, int count) {
+            final Rows rows = new Rows(arena, dim, count + Math.max(MIN_SPARE_ROWS, count >> 2));
+            rows.end.set(count);
+            return rows;
+        }
+
+        /**
+         * @return Whether the {@code count} rows from {@code from} on, the first unreserved one, are now reserved
+         */
+        private boolean reserve(int from, int count) {
+            return from + count <= payloads.length && end.compareAndSet(from, from + count);
+        }
+
+        private void write(int row, @Nonnull double[] values, Object payload) {
+            for (int obj = 0; obj < dim; ++obj) {
+                objectives.putDouble((row * dim + obj) * Double.BYTES, values[obj]);
+            }
+            payloads[row] = payload;
+        }
+
+        private void copy(int row, @Nonnull Rows source, int sourceRow) {
+            for (int obj = 0; obj < dim; ++obj) {
+                objectives.putDouble((row * dim + obj) * Double.BYTES, source.objective(sourceRow, obj));
+            }
+            payloads[row] = source.payloads[sourceRow];
+        }
+
+        private double objective(int row, int obj) {
+            return objectives.getDouble((row * dim + obj) * Double.BYTES);
+        }
+
+        private void read(int row, @Nonnull double[] target) {
+            for (int obj = 0; obj < dim; ++obj) {
+                target[obj] = objective(row, obj);
+            }
+        }
+
+        /**
+         * @return Negative if the row is lex-smaller than {@code values}, positive if greater, zero if equal
+         */
+        private int lexCompare(int row, @Nonnull double[] values) {
+            for (int obj = 0; obj < dim; ++obj) {
+                final int cmp = Double.compare(objective(row, obj), values[obj]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return Whether the row dominates {@code values}
+         */
+        private boolean dominates(int row, @Nonnull double[] values) {
+            boolean strictly = false;
+            for (int obj = 0; obj < dim; ++obj) {
+                final double value = objective(row, obj);
+                if (value > values[obj]) {
+                    return false;
+                }
+                strictly |= value < values[obj];
+            }
+            return strictly;
+        }
+
+        /**
+         * @return Whether {@code values} dominate the row
+         */
+        private boolean isDominatedBy(int row, @Nonnull double[] values) {
+            boolean strictly = false;
+            for (int obj = 0; obj < dim; ++obj) {
+                final double value = objective(row, obj);
+                if (values[obj] > value) {
+                    return false;
+                }
+                strictly |= values[obj] < value;
+            }
+            return strictly;
+        }
+    }
+
+    /**
+     * Read-only view of the members, creating each member once
+     */
+    private final class MemberList extends AbstractList<IIndividual<T>> implements RandomAccess {
+        @Override
+        @SuppressWarnings("unchecked")
+        public IIndividual<T> get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of level of size " + size);
+            }
+            //benign races: members are immutable, so a member created twice is merely garbage
+            OffHeapIndividual<T>[] views = memberViews;
+            if (views == null) {
+                views = new OffHeapIndividual[size];
+                memberViews = views;
+            }
+            OffHeapIndividual<T> view = views[index];
+            if (view == null) {
+                view = new OffHeapIndividual<>(OffHeapJFBYNonDominationLevel.this, index);
+                views[index] = view;
+            }
+            return view;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Member with objectives copied out of its row. Members are equal if they have the same objectives, as objective
+     * vectors are unique within a level.
+     */
+    @Immutable
+    private static final class OffHeapIndividual<T> implements IIndividual<T> {
+        private final OffHeapJFBYNonDominationLevel<T> level;
+        private final int member;
+        private final double[] objectives;
+
+        private OffHeapIndividual(@Nonnull OffHeapJFBYNonDominationLevel<T> level, int member) {
+            this.level = level;
+            this.member = member;
+            this.objectives = level.objectivesOf(member);
+        }
+
+        @Override
+        public double[] getObjectives() {
+            return objectives;
+        }
+
+        @Override
+        public double getCrowdingDistance() {
+            return level.crowdingDistance(member);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getPayload() {
+            return (T) level.rows.payloads[level.memberRow(member)];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IIndividual)) {
+                return false;
+            }
+            return Arrays.equals(objectives, ((IIndividual<?>) o).getObjectives());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(objectives);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(objectives) + ", cd=" + getCrowdingDistance();
+        }
+    }
+}
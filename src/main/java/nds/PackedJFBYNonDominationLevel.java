@@ -0,0 +1,154 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Counterpart of {@link JFBYNonDominationLevel} backed by {@link PackedSortedObjectives}: dominance checks scan
+ * the packed column-major objectives instead of member objects. It extends {@link JFBYNonDominationLevel}, so any
+ * population can hold it through {@link LevelFactory#packed()}, and creates packed levels when members are added or
+ * removed. {@link #getSortedObjectives()} builds heap {@link SortedObjectives} on demand, for code which trims levels
+ * through them.
+ */
+@ThreadSafe
+@Immutable
+public class PackedJFBYNonDominationLevel<T> extends JFBYNonDominationLevel<T> {
+    @Nonnull
+    private final JFB2014 sorter;
+    @Nonnull
+    private final PackedSortedObjectives<T> sortedObjectives;
+    @Nullable
+    private volatile SortedObjectives<IIndividual<T>, T> heapSortedObjectives;
+
+    public PackedJFBYNonDominationLevel(@Nonnull JFB2014 sorter, @Nonnull List<IIndividual<T>> members) {
+        super(sorter, Collections.emptyList(), SortedObjectives.empty(0));
+        this.sorter = sorter;
+        if (!members.isEmpty()) {
+            this.sortedObjectives = PackedSortedObjectives.create(members.get(0).getObjectives().length, members);
+        } else {
+            this.sortedObjectives = PackedSortedObjectives.empty(0);
+        }
+    }
+
+    public PackedJFBYNonDominationLevel(@Nonnull JFB2014 sorter, @Nonnull PackedSortedObjectives<T> sortedObjectives) {
+        super(sorter, Collections.emptyList(), SortedObjectives.empty(0));
+        this.sorter = sorter;
+        this.sortedObjectives = sortedObjectives;
+    }
+
+    @Override
+    @Nonnull
+    public List<IIndividual<T>> getMembers() {
+        return sortedObjectives.getLexSortedPop();
+    }
+
+    @Nonnull
+    public PackedSortedObjectives<T> getPackedSortedObjectives() {
+        return sortedObjectives;
+    }
+
+    @Override
+    @Nonnull
+    public SortedObjectives<IIndividual<T>, T> getSortedObjectives() {
+        SortedObjectives<IIndividual<T>, T> result = heapSortedObjectives;
+        if (result == null) {
+            //benign race: every thread builds the same objectives of the immutable packed ones
+            final int dim = sortedObjectives.getDim();
+            final List<int[]> orders = new ArrayList<>(dim);
+            for (int obj = 0; obj < dim; ++obj) {
+                orders.add(sortedObjectives.getObjectiveOrder(obj));
+            }
+            result = SortedObjectives.restore(dim, orders, new ArrayList<>(getMembers()));
+            heapSortedObjectives = result;
+        }
+        return result;
+    }
+
+    /**
+     * Ranks the addends against the packed rows instead of running the JFB sorter over the whole level: an addend
+     * stays if neither a member nor another addend dominates it, and a member is evicted if a staying addend
+     * dominates it. Members are mutually non-dominated, so no other member can be evicted.
+     */
+    @Override
+    public MemberAdditionResult<T, JFBYNonDominationLevel<T>> addMembers(@Nonnull List<IIndividual<T>> addends) {
+        if (sortedObjectives.size() == 0) {
+            final List<IIndividual<T>> rejected = new ArrayList<>();
+            final List<IIndividual<T>> accepted = LevelCascade.takeNonDominated(null, LevelCascade.lexSorted(addends), rejected);
+            return new MemberAdditionResult<>(rejected, new PackedJFBYNonDominationLevel<>(sorter, accepted));
+        }
+
+        final List<IIndividual<T>> rejected = new ArrayList<>();
+        final List<IIndividual<T>> accepted = LevelCascade.takeNonDominated(this, LevelCascade.lexSorted(addends), rejected);
+        if (accepted.isEmpty()) {
+            return new MemberAdditionResult<>(rejected, this);
+        }
+
+        final double[] columns = sortedObjectives.getObjectives();
+        final List<IIndividual<T>> members = getMembers();
+        final List<IIndividual<T>> evicted = new ArrayList<>();
+        for (int i = 0; i < members.size(); ++i) {
+            for (IIndividual<T> addend : accepted) {
+                if (dominatesRow(addend.getObjectives(), columns, members.size(), i)) {
+                    evicted.add(members.get(i));
+                    break;
+                }
+            }
+        }
+
+        final PackedSortedObjectives<T> nso = sortedObjectives.update(accepted, evicted);
+        return new MemberAdditionResult<>(
+            LevelCascade.lexMerge(rejected, evicted),
+            new PackedJFBYNonDominationLevel<>(sorter, nso)
+        );
+    }
+
+    private static boolean dominatesRow(@Nonnull double[] point, @Nonnull double[] columns, int rows, int row) {
+        boolean strictly = false;
+        for (int obj = 0; obj < point.length; ++obj) {
+            final double value = columns[obj * rows + row];
+            if (point[obj] > value) {
+                return false;
+            }
+            strictly |= point[obj] < value;
+        }
+        return strictly;
+    }
+
+    /**
+     * @param removals Members of this level in lex order
+     * @return Packed level without {@code removals}, with crowding distances recomputed
+     */
+    @Override
+    @Nonnull
+    public JFBYNonDominationLevel<T> removeMembers(@Nonnull List<IIndividual<T>> removals) {
+        return new PackedJFBYNonDominationLevel<>(sorter, sortedObjectives.update(Collections.emptyList(), removals));
+    }
+
+    @Override
+    public boolean dominatedByAnyPointOfThisLayer(@Nonnull IIndividual point) {
+        return DominationKernels.getDefault().dominatedByAny(sortedObjectives.getObjectives(), point.getObjectives());
+    }
+
+    @Override
+    public PackedJFBYNonDominationLevel<T> copy() {
+        return new PackedJFBYNonDominationLevel<>(sorter, sortedObjectives);
+    }
+
+    @Override
+    public String toString() {
+        return "members=" + getMembers().stream()
+            .map(IIndividual::getObjectives)
+            .map(Arrays::toString)
+            .collect(Collectors.toList());
+    }
+}
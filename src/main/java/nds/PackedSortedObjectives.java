@@ -0,0 +1,252 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.impl.FitnessAndCdIndividual;
+import ru.ifmo.nds.util.Utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Primitive, structure-of-arrays counterpart of {@link SortedObjectives}.
+ * <p>
+ * Objectives of the lex-sorted members are kept in one column-major {@code double[]} ({@code objectives[k * size + i]}),
+ * the layout {@link DominationKernel} scans, crowding distances in a parallel {@code double[]}, and per-objective sort
+ * orders in one column-major {@code int[]} ({@code coordOrder[k * size + j]} is the row of the j-th smallest value of
+ * objective k).
+ * Member references are kept in a separate array and are re-created on {@link #update} only when their crowding
+ * distance has actually changed, so object allocation per insertion scales with the number of changed members.
+ */
+@Immutable
+public class PackedSortedObjectives<T> {
+    private static final int[] EMPTY_ORDER = new int[0];
+    private static final double[] EMPTY_VALUES = new double[0];
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final int dim;
+    private final int size;
+    @Nonnull
+    private final double[] objectives;
+    @Nonnull
+    private final double[] crowdingDistances;
+    @Nonnull
+    private final int[] coordOrder;
+    @Nonnull
+    private final IIndividual<T>[] members;
+
+    private PackedSortedObjectives(final int dim,
+                                   final int size,
+                                   @Nonnull final double[] objectives,
+                                   @Nonnull final double[] crowdingDistances,
+                                   @Nonnull final int[] coordOrder,
+                                   @Nonnull final IIndividual<T>[] members) {
+        this.dim = dim;
+        this.size = size;
+        this.objectives = objectives;
+        this.crowdingDistances = crowdingDistances;
+        this.coordOrder = coordOrder;
+        this.members = members;
+    }
+
+    public static <T1> PackedSortedObjectives<T1> empty(int dim) {
+        return new PackedSortedObjectives<>(dim, 0, EMPTY_VALUES, EMPTY_VALUES, EMPTY_ORDER, newMembersArray(0));
+    }
+
+    /**
+     * @param pop Lex-sorted members
+     */
+    public static <T1> PackedSortedObjectives<T1> create(int dim, @Nonnull List<IIndividual<T1>> pop) {
+        final PackedSortedObjectives<T1> empty = empty(dim);
+        return empty.update(pop, Collections.emptyList());
+    }
+
+    /**
+     * @param toAdd    Lex-sorted individuals to add
+     * @param toRemove Lex-sorted current members to remove
+     * @return New instance, this one is left intact
+     */
+    public PackedSortedObjectives<T> update(@Nonnull List<IIndividual<T>> toAdd, @Nonnull List<IIndividual<T>> toRemove) {
+        final int targetSize = size + toAdd.size() - toRemove.size();
+        final double[] newObjectives = new double[targetSize * dim];
+        final IIndividual<T>[] sources = newMembersArray(targetSize);
+        final int[] oldToNew = new int[size];
+        final int[] addToNew = new int[toAdd.size()];
+
+        int iPop = 0;
+        int iAdd = 0;
+        int iRem = 0;
+        int iNew = 0;
+        while (iPop < size || iAdd < toAdd.size()) {
+            if (iPop < size && iRem < toRemove.size() && members[iPop].equals(toRemove.get(iRem))) {
+                oldToNew[iPop++] = -1;
+                ++iRem;
+            } else if (iPop < size
+                && (iAdd >= toAdd.size()
+                || Utils.lexCompare(members[iPop].getObjectives(), toAdd.get(iAdd).getObjectives(), dim) <= 0)) {
+                for (int k = 0; k < dim; ++k) {
+                    newObjectives[k * targetSize + iNew] = objectives[k * size + iPop];
+                }
+                sources[iNew] = members[iPop];
+                oldToNew[iPop++] = iNew++;
+            } else {
+                final IIndividual<T> addend = toAdd.get(iAdd);
+                final double[] addendObjectives = addend.getObjectives();
+                for (int k = 0; k < dim; ++k) {
+                    newObjectives[k * targetSize + iNew] = addendObjectives[k];
+                }
+                sources[iNew] = addend;
+                addToNew[iAdd++] = iNew++;
+            }
+        }
+
+        final int[] newCoordOrder = new int[targetSize * dim];
+        final int[] addOrder = new int[toAdd.size()];
+        for (int obj = 0; obj < dim; ++obj) {
+            sortByObjective(addOrder, toAdd, obj);
+            final int oldBase = obj * size;
+            final int newBase = obj * targetSize;
+            int cOld = 0;
+            int cAdd = 0;
+            int cNew = 0;
+            while (cNew < targetSize) {
+                if (cOld < size && oldToNew[coordOrder[oldBase + cOld]] < 0) {
+                    ++cOld;
+                } else if (cAdd < addOrder.length
+                    && (cOld >= size
+                    || toAdd.get(addOrder[cAdd]).getObjectives()[obj] <= objectives[oldBase + coordOrder[oldBase + cOld]])) {
+                    newCoordOrder[newBase + cNew++] = addToNew[addOrder[cAdd++]];
+                } else {
+                    newCoordOrder[newBase + cNew++] = oldToNew[coordOrder[oldBase + cOld++]];
+                }
+            }
+        }
+
+        final double[] newCd = calculateCD(dim, targetSize, newObjectives, newCoordOrder);
+
+        final IIndividual<T>[] newMembers = newMembersArray(targetSize);
+        for (int i = 0; i < size; ++i) {
+            final int j = oldToNew[i];
+            if (j >= 0 && Double.compare(crowdingDistances[i], newCd[j]) == 0) {
+                newMembers[j] = members[i];
+            }
+        }
+        for (int i = 0; i < targetSize; ++i) {
+            if (newMembers[i] == null) {
+                newMembers[i] = new FitnessAndCdIndividual<>(sources[i].getObjectives(), newCd[i], sources[i].getPayload());
+            }
+        }
+
+        return new PackedSortedObjectives<>(dim, targetSize, newObjectives, newCd, newCoordOrder, newMembers);
+    }
+
+    /**
+     * Stable merge sort of indices of {@code pop} by objective {@code obj}, so that equal values keep lex order
+     */
+    private static <T> void sortByObjective(@Nonnull int[] order, @Nonnull List<IIndividual<T>> pop, int obj) {
+        final double[] values = new double[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+            values[i] = pop.get(i).getObjectives()[obj];
+        }
+        mergeSort(order, new int[order.length], values, 0, order.length);
+    }
+
+    private static void mergeSort(@Nonnull int[] order, @Nonnull int[] buffer, @Nonnull double[] values, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; ++i) {
+                final int index = order[i];
+                int j = i - 1;
+                while (j >= from && values[order[j]] > values[index]) {
+                    order[j + 1] = order[j];
+                    --j;
+                }
+                order[j + 1] = index;
+            }
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, values, from, mid);
+        mergeSort(order, buffer, values, mid, to);
+        if (values[order[mid - 1]] <= values[order[mid]]) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; ++i) {
+            if (right >= to || left < mid && values[buffer[left]] <= values[buffer[right]]) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static double[] calculateCD(int dim, int targetSize, @Nonnull double[] objectives, @Nonnull int[] coordOrder) {
+        final double[] cd = new double[targetSize];
+        if (targetSize == 0) {
+            return cd;
+        }
+
+        for (int obj = 0; obj < dim; ++obj) {
+            final int base = obj * targetSize;
+            final int first = coordOrder[base];
+            final int last = coordOrder[base + targetSize - 1];
+            cd[first] = Double.POSITIVE_INFINITY;
+            cd[last] = Double.POSITIVE_INFINITY;
+            final double inverseDelta = 1.0 / (objectives[base + last] - objectives[base + first]);
+
+            for (int j = 1; j < targetSize - 1; ++j) {
+                final double next = objectives[base + coordOrder[base + j + 1]];
+                final double prev = objectives[base + coordOrder[base + j - 1]];
+                cd[coordOrder[base + j]] += (next - prev) * inverseDelta;
+            }
+        }
+        return cd;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> IIndividual<T>[] newMembersArray(int size) {
+        return (IIndividual<T>[]) new IIndividual[size];
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Column-major objectives of lex-sorted members. Must not be modified.
+     */
+    @Nonnull
+    public double[] getObjectives() {
+        return objectives;
+    }
+
+    /**
+     * @return Crowding distances, parallel to the columns of {@link #getObjectives()}. Must not be modified.
+     */
+    @Nonnull
+    public double[] getCrowdingDistances() {
+        return crowdingDistances;
+    }
+
+    /**
+     * @return Indices into {@link #getLexSortedPop()} in ascending order of objective {@code obj}
+     */
+    @Nonnull
+    int[] getObjectiveOrder(int obj) {
+        return Arrays.copyOfRange(coordOrder, obj * size, (obj + 1) * size);
+    }
+
+    @Nonnull
+    public List<IIndividual<T>> getLexSortedPop() {
+        return Collections.unmodifiableList(Arrays.asList(members));
+    }
+}
@@ -0,0 +1,101 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Splits the scan of a large level across {@link ForkJoinPool} workers. Only the rows which may dominate the point
+ * by the lex-order cut-off are scanned; if there are fewer than {@code threshold} of them the scan stays on the
+ * calling thread. A found dominator cancels the remaining chunks.
+ */
+@ThreadSafe
+public final class ParallelDominationKernel implements DominationKernel {
+    @Nonnull
+    private final DominationKernel sequential;
+    private final int threshold;
+    @Nonnull
+    private final ForkJoinPool pool;
+
+    /**
+     * @param sequential Kernel which scans a single chunk
+     * @param threshold  Minimal number of rows to split, also the chunk size
+     * @param pool       Pool to run chunks in
+     */
+    public ParallelDominationKernel(@Nonnull DominationKernel sequential, int threshold, @Nonnull ForkJoinPool pool) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Non-positive parallel scan threshold: " + threshold);
+        }
+        this.sequential = sequential;
+        this.threshold = threshold;
+        this.pool = pool;
+    }
+
+    @Override
+    public boolean dominatedByAny(@Nonnull double[] members, int fromRow, int toRow, @Nonnull double[] point) {
+        final int to = cutOff(members, fromRow, toRow, point);
+        if (to - fromRow < threshold) {
+            return sequential.dominatedByAny(members, fromRow, to, point);
+        }
+
+        final Scan scan = new Scan(members, fromRow, to, point, new AtomicBoolean(false));
+        return ForkJoinTask.inForkJoinPool() ? scan.invoke() : pool.invoke(scan);
+    }
+
+    /**
+     * @return End of the rows whose first objective does not exceed the point's one
+     */
+    private static int cutOff(@Nonnull double[] members, int fromRow, int toRow, @Nonnull double[] point) {
+        //the first objective is the first column of the block
+        int l = fromRow;
+        int r = toRow;
+        while (l < r) {
+            final int mid = (l + r) >>> 1;
+            if (members[mid] > point[0]) {
+                r = mid;
+            } else {
+                l = mid + 1;
+            }
+        }
+        return l;
+    }
+
+    private final class Scan extends RecursiveTask<Boolean> {
+        private final double[] members;
+        private final int fromRow;
+        private final int toRow;
+        private final double[] point;
+        private final AtomicBoolean found;
+
+        private Scan(double[] members, int fromRow, int toRow, double[] point, AtomicBoolean found) {
+            this.members = members;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.point = point;
+            this.found = found;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (found.get()) {
+                return true;
+            }
+            if (toRow - fromRow <= threshold) {
+                final boolean dominated = sequential.dominatedByAny(members, fromRow, toRow, point);
+                if (dominated) {
+                    found.set(true);
+                }
+                return dominated;
+            }
+
+            final int mid = (fromRow + toRow) >>> 1;
+            final Scan left = new Scan(members, fromRow, mid, point, found);
+            left.fork();
+            final boolean rightDominated = new Scan(members, mid, toRow, point, found).compute();
+            return left.join() || rightDominated;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the payloads of individuals in a {@link PopulationCheckpoint}. The checkpoint stores the length of every
+ * encoded payload and reads it back from a buffer limited to exactly these bytes, so implementations do not need to
+ * write lengths or delimiters themselves.
+ */
+public interface PayloadSerializer<T> {
+    /**
+     * @param buffer Buffer to put the encoded payload into. If it overflows, the call is repeated with a larger one.
+     */
+    void write(@Nullable T payload, @Nonnull ByteBuffer buffer);
+
+    @Nullable
+    T read(@Nonnull ByteBuffer buffer);
+
+    /**
+     * Drops payloads: restored individuals have {@code null} ones
+     */
+    @Nonnull
+    static <T> PayloadSerializer<T> none() {
+        return new PayloadSerializer<T>() {
+            @Override
+            public void write(@Nullable T payload, @Nonnull ByteBuffer buffer) {
+            }
+
+            @Nullable
+            @Override
+            public T read(@Nonnull ByteBuffer buffer) {
+                return null;
+            }
+        };
+    }
+
+    @Nonnull
+    static PayloadSerializer<double[]> doubleArray() {
+        return new PayloadSerializer<double[]>() {
+            @Override
+            public void write(@Nullable double[] payload, @Nonnull ByteBuffer buffer) {
+                if (payload != null) {
+                    //marks a non-null payload, an empty array still takes a byte
+                    buffer.put((byte) 1);
+                    buffer.asDoubleBuffer().put(payload);
+                    buffer.position(buffer.position() + payload.length * Double.BYTES);
+                }
+            }
+
+            @Nullable
+            @Override
+            public double[] read(@Nonnull ByteBuffer buffer) {
+                if (!buffer.hasRemaining()) {
+                    return null;
+                }
+                buffer.get();
+                final double[] payload = new double[buffer.remaining() / Double.BYTES];
+                buffer.asDoubleBuffer().get(payload);
+                return payload;
+            }
+        };
+    }
+
+    /**
+     * Java serialization of every payload, e.g. for MOEA Framework solutions. Simple but slow and verbose, a
+     * dedicated serializer should be preferred for large populations.
+     */
+    @Nonnull
+    static <T extends Serializable> PayloadSerializer<T> serializable() {
+        return new PayloadSerializer<T>() {
+            @Override
+            public void write(@Nullable T payload, @Nonnull ByteBuffer buffer) {
+                if (payload == null) {
+                    return;
+                }
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(payload);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                buffer.put(bytes.toByteArray());
+            }
+
+            @Nullable
+            @Override
+            @SuppressWarnings("unchecked")
+            public T read(@Nonnull ByteBuffer buffer) {
+                if (!buffer.hasRemaining()) {
+                    return null;
+                }
+                final byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (T) in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Can not restore payload", e);
+                }
+            }
+        };
+    }
+}
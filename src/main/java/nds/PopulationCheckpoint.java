@@ -0,0 +1,337 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
+import ru.ifmo.nds.dcns.sorter.JFB2014;
+import ru.ifmo.nds.impl.FitnessAndCdIndividual;
+
+import javax.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Binary checkpoint of the non-domination levels of a population.
+ * <p>
+ * Layout, big-endian: a header of magic, format version, number of objectives, number of levels and number of
+ * individuals, then per level its size, a flag byte, the objectives of its lex-sorted members as one block of
+ * doubles, their crowding distances, for levels with {@link SortedObjectives} the per-objective orders of the members,
+ * and finally the payloads, each prefixed with its length and encoded by a {@link PayloadSerializer}.
+ * <p>
+ * Restoring reads the levels back as they were: ranks are not recomputed, and levels saved with their orders get
+ * their {@link SortedObjectives} and crowding distances back without any sorting. The restored levels are passed
+ * to the constructor of a population, e.g.
+ * {@code new LevelLockJFBYPopulationVersioned<>(sorter, PopulationCheckpoint.read(path, sorter, serializer), ...)}.
+ * Files are written and read through a {@link FileChannel} with a direct buffer and bulk transfers of the objective
+ * blocks.
+ */
+public final class PopulationCheckpoint {
+    private static final int MAGIC = 0x4E445343; //NDSC
+    private static final int FORMAT_VERSION = 1;
+    private static final byte HAS_ORDER = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int PAYLOAD_BUFFER_SIZE = 1 << 10;
+
+    private PopulationCheckpoint() {
+    }
+
+    /**
+     * Writes a consistent snapshot of {@code population}
+     */
+    public static <T> void write(@Nonnull IManagedPopulation<T> population,
+                                 @Nonnull Path path,
+                                 @Nonnull PayloadSerializer<T> serializer) throws IOException {
+        write(population.getSnapshot(), path, serializer);
+    }
+
+    public static <T> void write(@Nonnull PopulationSnapshot<T> snapshot,
+                                 @Nonnull Path path,
+                                 @Nonnull PayloadSerializer<T> serializer) throws IOException {
+        final List<INonDominationLevel<T>> levels = snapshot.getLevels();
+        int dim = 0;
+        long size = 0;
+        for (INonDominationLevel<T> level : levels) {
+            if (!level.getMembers().isEmpty()) {
+                dim = level.getMembers().get(0).getObjectives().length;
+            }
+            size += level.getMembers().size();
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ChannelWriter out = new ChannelWriter(channel);
+            out.ensure(Integer.BYTES * 4 + Long.BYTES);
+            out.buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dim).putInt(levels.size()).putLong(size);
+            for (INonDominationLevel<T> level : levels) {
+                writeLevel(out, level, dim, serializer);
+            }
+            out.flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Restores levels with {@link IncrementalJFB}, the default sorter of the level-lock populations
+     */
+    @Nonnull
+    public static <T> CopyOnWriteArrayList<JFBYNonDominationLevel<T>> read(@Nonnull Path path,
+                                                                             @Nonnull PayloadSerializer<T> serializer) throws IOException {
+        return read(path, new IncrementalJFB(), serializer);
+    }
+
+    /**
+     * @param sorter Sorter of the restored levels, the one of the population they are passed to
+     * @return Levels in rank order
+     */
+    @Nonnull
+    public static <T> CopyOnWriteArrayList<JFBYNonDominationLevel<T>> read(@Nonnull Path path,
+                                                                             @Nonnull JFB2014 sorter,
+                                                                             @Nonnull PayloadSerializer<T> serializer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ChannelReader in = new ChannelReader(channel);
+            in.ensure(Integer.BYTES * 4 + Long.BYTES);
+            if (in.buffer.getInt() != MAGIC) {
+                throw new IOException("Not a population checkpoint: " + path);
+            }
+            final int version = in.buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + path);
+            }
+            final int dim = in.buffer.getInt();
+            final int levelCount = in.buffer.getInt();
+            final long size = in.buffer.getLong();
+
+            final List<JFBYNonDominationLevel<T>> levels = new ArrayList<>(levelCount);
+            long restored = 0;
+            for (int i = 0; i < levelCount; ++i) {
+                final JFBYNonDominationLevel<T> level = readLevel(in, sorter, dim, serializer);
+                restored += level.getMembers().size();
+                levels.add(level);
+            }
+            if (restored != size) {
+                throw new IOException("Checkpoint declares " + size + " individuals, contains " + restored);
+            }
+            return new CopyOnWriteArrayList<>(levels);
+        }
+    }
+
+    private static <T> void writeLevel(@Nonnull ChannelWriter out,
+                                       @Nonnull INonDominationLevel<T> level,
+                                       int dim,
+                                       @Nonnull PayloadSerializer<T> serializer) throws IOException {
+        final SortedObjectives<IIndividual<T>, T> sortedObjectives =
+            level instanceof JFBYNonDominationLevel ? ((JFBYNonDominationLevel<T>) level).getSortedObjectives() : null;
+        final List<IIndividual<T>> members = sortedObjectives != null ? sortedObjectives.getLexSortedPop() : level.getMembers();
+        final int n = members.size();
+        final boolean hasOrder = sortedObjectives != null && n > 0 && sortedObjectives.getObjectiveOrder(0).length == n;
+
+        out.ensure(Integer.BYTES + 1);
+        out.buffer.putInt(n).put(hasOrder ? HAS_ORDER : 0);
+
+        final double[] objectives = new double[n * dim];
+        final double[] crowdingDistances = new double[n];
+        for (int i = 0; i < n; ++i) {
+            final IIndividual<T> member = members.get(i);
+            System.arraycopy(member.getObjectives(), 0, objectives, i * dim, dim);
+            crowdingDistances[i] = member.getCrowdingDistance();
+        }
+        out.putDoubles(objectives);
+        out.putDoubles(crowdingDistances);
+        if (hasOrder) {
+            for (int obj = 0; obj < dim; ++obj) {
+                out.putInts(sortedObjectives.getObjectiveOrder(obj));
+            }
+        }
+
+        for (IIndividual<T> member : members) {
+            final ByteBuffer payload = out.encode(member.getPayload(), serializer);
+            out.ensure(Integer.BYTES + payload.remaining());
+            out.buffer.putInt(payload.remaining()).put(payload);
+        }
+    }
+
+    @Nonnull
+    private static <T> JFBYNonDominationLevel<T> readLevel(@Nonnull ChannelReader in,
+                                                           @Nonnull JFB2014 sorter,
+                                                           int dim,
+                                                           @Nonnull PayloadSerializer<T> serializer) throws IOException {
+        in.ensure(Integer.BYTES + 1);
+        final int n = in.buffer.getInt();
+        final boolean hasOrder = in.buffer.get() == HAS_ORDER;
+        if (n < 0) {
+            throw new IOException("Negative level size " + n);
+        }
+
+        final double[] objectives = new double[Math.multiplyExact(n, dim)];
+        final double[] crowdingDistances = new double[n];
+        in.getDoubles(objectives);
+        in.getDoubles(crowdingDistances);
+        List<int[]> objectiveOrder = null;
+        if (hasOrder) {
+            objectiveOrder = new ArrayList<>(dim);
+            for (int obj = 0; obj < dim; ++obj) {
+                final int[] order = new int[n];
+                in.getInts(order);
+                for (int index : order) {
+                    if (index < 0 || index >= n) {
+                        throw new IOException("Member index " + index + " out of level of size " + n);
+                    }
+                }
+                objectiveOrder.add(order);
+            }
+        }
+
+        final List<IIndividual<T>> members = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            in.ensure(Integer.BYTES);
+            final int length = in.buffer.getInt();
+            in.ensure(length);
+            final ByteBuffer payloadBytes = in.buffer.slice();
+            payloadBytes.limit(length);
+            in.buffer.position(in.buffer.position() + length);
+            members.add(new FitnessAndCdIndividual<>(
+                Arrays.copyOfRange(objectives, i * dim, (i + 1) * dim),
+                crowdingDistances[i],
+                serializer.read(payloadBytes)
+            ));
+        }
+
+        if (objectiveOrder == null) {
+            //a level without saved orders, only this level is sorted again
+            return new JFBYNonDominationLevel<>(sorter, LevelCascade.lexSorted(members));
+        }
+        final SortedObjectives<IIndividual<T>, T> sortedObjectives = SortedObjectives.restore(dim, objectiveOrder, members);
+        return new JFBYNonDominationLevel<>(sorter, sortedObjectives.getLexSortedPop(), sortedObjectives);
+    }
+
+    private static final class ChannelWriter {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private ByteBuffer payloadBuffer = ByteBuffer.allocate(PAYLOAD_BUFFER_SIZE);
+
+        private ChannelWriter(@Nonnull FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Makes room for {@code bytes} bytes, growing the buffer for records larger than it
+         */
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+        }
+
+        /**
+         * @return Encoded payload, valid until the next call
+         */
+        @Nonnull
+        private <T> ByteBuffer encode(T payload, @Nonnull PayloadSerializer<T> serializer) {
+            while (true) {
+                payloadBuffer.clear();
+                try {
+                    serializer.write(payload, payloadBuffer);
+                    payloadBuffer.flip();
+                    return payloadBuffer;
+                } catch (BufferOverflowException ignored) {
+                    payloadBuffer = ByteBuffer.allocate(payloadBuffer.capacity() * 2);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void putDoubles(@Nonnull double[] values) throws IOException {
+            int offset = 0;
+            while (offset < values.length) {
+                ensure(Double.BYTES);
+                final int count = Math.min(values.length - offset, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                offset += count;
+            }
+        }
+
+        private void putInts(@Nonnull int[] values) throws IOException {
+            int offset = 0;
+            while (offset < values.length) {
+                ensure(Integer.BYTES);
+                final int count = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+        }
+    }
+
+    private static final class ChannelReader {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private ChannelReader(@Nonnull FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        /**
+         * Makes {@code bytes} bytes available, growing the buffer for records larger than it
+         */
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            if (buffer.capacity() < bytes) {
+                final ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated population checkpoint");
+                }
+            }
+            buffer.flip();
+        }
+
+        private void getDoubles(@Nonnull double[] values) throws IOException {
+            int offset = 0;
+            while (offset < values.length) {
+                ensure(Double.BYTES);
+                final int count = Math.min(values.length - offset, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                offset += count;
+            }
+        }
+
+        private void getInts(@Nonnull int[] values) throws IOException {
+            int offset = 0;
+            while (offset < values.length) {
+                ensure(Integer.BYTES);
+                final int count = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Change of a population as seen by a {@link PopulationListener}. Events of one level are published in the order the
+ * level was modified, as they are emitted under the level's lock; events of different levels may interleave.
+ */
+@Immutable
+public final class PopulationEvent<T> {
+    public enum Type {
+        /**
+         * A new individual entered level {@link #getRank()}
+         */
+        INSERTED,
+        /**
+         * A member was pushed out of level {@link #getFromRank()} and entered level {@link #getRank()}
+         */
+        EVICTED,
+        /**
+         * A member of level {@link #getRank()} was removed by truncation
+         */
+        TRUNCATED,
+        /**
+         * Level {@link #getRank()} was appended, its members follow as separate events
+         */
+        LEVEL_CREATED,
+        /**
+         * Level {@link #getRank()}, the last one, was removed after its members were truncated
+         */
+        LEVEL_REMOVED
+    }
+
+    private final Type type;
+    private final int fromRank;
+    private final int rank;
+    @Nullable
+    private final IIndividual<T> individual;
+
+    private PopulationEvent(@Nonnull Type type, int fromRank, int rank, @Nullable IIndividual<T> individual) {
+        this.type = type;
+        this.fromRank = fromRank;
+        this.rank = rank;
+        this.individual = individual;
+    }
+
+    @Nonnull
+    public static <T> PopulationEvent<T> inserted(int rank, @Nonnull IIndividual<T> individual) {
+        return new PopulationEvent<>(Type.INSERTED, rank, rank, individual);
+    }
+
+    @Nonnull
+    public static <T> PopulationEvent<T> evicted(int fromRank, int toRank, @Nonnull IIndividual<T> individual) {
+        return new PopulationEvent<>(Type.EVICTED, fromRank, toRank, individual);
+    }
+
+    @Nonnull
+    public static <T> PopulationEvent<T> truncated(int rank, @Nonnull IIndividual<T> individual) {
+        return new PopulationEvent<>(Type.TRUNCATED, rank, rank, individual);
+    }
+
+    @Nonnull
+    public static <T> PopulationEvent<T> levelCreated(int rank) {
+        return new PopulationEvent<>(Type.LEVEL_CREATED, rank, rank, null);
+    }
+
+    @Nonnull
+    public static <T> PopulationEvent<T> levelRemoved(int rank) {
+        return new PopulationEvent<>(Type.LEVEL_REMOVED, rank, rank, null);
+    }
+
+    @Nonnull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return Level the member left, equal to {@link #getRank()} unless the event is {@link Type#EVICTED}
+     */
+    public int getFromRank() {
+        return fromRank;
+    }
+
+    /**
+     * @return Level the event happened at, the destination level of an eviction
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * @return Inserted, evicted or truncated individual, {@code null} for level events
+     */
+    @Nullable
+    public IIndividual<T> getIndividual() {
+        return individual;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case EVICTED:
+                return type + "(" + fromRank + "->" + rank + ")";
+            case LEVEL_CREATED:
+            case LEVEL_REMOVED:
+                return type + "(" + rank + ")";
+            default:
+                return type + "(" + rank + ", " + individual + ")";
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans events of a population out to its subscriptions without ever blocking the publishing thread.
+ * <p>
+ * Every subscription has a bounded buffer and a daemon thread which drains it in batches of up to {@code maxBatch}
+ * events. An event which does not fit into a full buffer is dropped and counted, and the listener is told about the
+ * loss by {@link PopulationListener#onOverflow(long)} before its next batch, so a slow subscriber only loses its own
+ * events. Populations check {@link #hasSubscribers()} before building events, which keeps the cost of an unobserved
+ * population at one volatile read per operation.
+ */
+@ThreadSafe
+public final class PopulationEventPublisher<T> {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_MAX_BATCH = 1024;
+
+    private static final long POLL_MILLIS = 100;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final List<Subscription<T>> subscriptions = new CopyOnWriteArrayList<>();
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * @param capacity Max. number of buffered events, further events are dropped until the listener catches up
+     * @param maxBatch Max. number of events passed to one {@link PopulationListener#onEvents} call
+     * @return Running subscription, to be closed to stop the delivery
+     */
+    @Nonnull
+    public Subscription<T> subscribe(@Nonnull PopulationListener<T> listener, int capacity, int maxBatch) {
+        if (capacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive: " + capacity + ", " + maxBatch);
+        }
+        final Subscription<T> subscription = new Subscription<>(this, listener, capacity, maxBatch);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Hands the events to every subscription, never blocks
+     */
+    public void publish(@Nonnull List<PopulationEvent<T>> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Subscription<T> subscription : subscriptions) {
+            subscription.enqueue(events);
+        }
+    }
+
+    public static final class Subscription<T> implements AutoCloseable {
+        private final PopulationEventPublisher<T> publisher;
+        private final PopulationListener<T> listener;
+        private final BlockingQueue<PopulationEvent<T>> buffer;
+        private final int maxBatch;
+        private final Thread thread;
+
+        private final AtomicLong unreportedDrops = new AtomicLong();
+        private final LongAdder drops = new LongAdder();
+        private final LongAdder enqueued = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private volatile boolean closed;
+
+        private Subscription(@Nonnull PopulationEventPublisher<T> publisher,
+                             @Nonnull PopulationListener<T> listener,
+                             int capacity,
+                             int maxBatch) {
+            this.publisher = publisher;
+            this.listener = listener;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+            this.maxBatch = maxBatch;
+            this.thread = new Thread(this::deliver, "population-events-" + THREAD_COUNT.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        private void enqueue(@Nonnull List<PopulationEvent<T>> events) {
+            for (PopulationEvent<T> event : events) {
+                if (buffer.offer(event)) {
+                    enqueued.increment();
+                } else {
+                    unreportedDrops.incrementAndGet();
+                    drops.increment();
+                }
+            }
+        }
+
+        private void deliver() {
+            try {
+                while (!closed) {
+                    final PopulationEvent<T> first = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    final long lost = unreportedDrops.getAndSet(0);
+                    if (lost > 0) {
+                        listener.onOverflow(lost);
+                    }
+                    if (first == null) {
+                        continue;
+                    }
+
+                    final List<PopulationEvent<T>> batch = new ArrayList<>(Math.min(maxBatch, buffer.size() + 1));
+                    batch.add(first);
+                    buffer.drainTo(batch, maxBatch - 1);
+                    listener.onEvents(batch);
+                    delivered.add(batch.size());
+                }
+            } catch (InterruptedException ignored) {
+                //closed
+            } finally {
+                closed = true;
+                publisher.subscriptions.remove(this);
+            }
+        }
+
+        /**
+         * @return Number of events dropped because the buffer was full
+         */
+        public long getDroppedCount() {
+            return drops.sum();
+        }
+
+        /**
+         * @return Number of events passed to the listener
+         */
+        public long getDeliveredCount() {
+            return delivered.sum();
+        }
+
+        /**
+         * Waits until the events buffered before the call are passed to the listener, or until the subscription is
+         * closed. Must not be called from the listener.
+         */
+        public void awaitDelivery() throws InterruptedException {
+            final long target = enqueued.sum();
+            while (!closed && delivered.sum() < target) {
+                Thread.sleep(1);
+            }
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Stops the delivery, buffered events are discarded. A batch being delivered is completed first.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            publisher.subscriptions.remove(this);
+        }
+
+        @Override
+        public String toString() {
+            return "delivered=" + getDeliveredCount() + ", dropped=" + getDroppedCount() + ", buffered=" + buffer.size();
+        }
+    }
+}
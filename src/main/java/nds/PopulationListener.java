@@ -0,0 +1,25 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Subscriber of {@link IEventPublishingPopulation#subscribe}. Both methods are called from the subscription's own delivery
+ * thread, never concurrently and never from an inserting thread.
+ */
+public interface PopulationListener<T> {
+    /**
+     * @param events Consecutive events in publication order, not retained by the population
+     */
+    void onEvents(@Nonnull List<PopulationEvent<T>> events);
+
+    /**
+     * Events were dropped because the subscription's buffer was full. The listener's view is incomplete from now
+     * on and should be rebuilt from {@link IManagedPopulation#getSnapshot()}; events delivered afterwards may already
+     * be reflected in that snapshot.
+     *
+     * @param dropped Number of events dropped since the previous batch
+     */
+    default void onOverflow(long dropped) {
+    }
+}
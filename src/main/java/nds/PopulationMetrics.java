@@ -0,0 +1,235 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a population: time spent waiting for level locks, retries after concurrent level changes, number of
+ * levels touched by an insertion and truncations by {@code massRemoveWorst} with the time they hold the removal lock.
+ * The hit rate of the population's {@link DuplicateIndex} is counted by the index itself, under the same switch,
+ * and only exposed here.
+ * <p>
+ * Recording is off unless the JVM runs with {@code -Dnds.metrics=true}. The switch is a static final flag, so with
+ * recording off the JIT removes the calls together with their {@link #startTimer()} timestamps.
+ */
+@ThreadSafe
+public final class PopulationMetrics implements PopulationMetricsMXBean {
+    public static final String ENABLED_PROPERTY = "nds.metrics";
+
+    static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    /**
+     * Never recorded into, returned by populations without instrumentation
+     */
+    public static final PopulationMetrics NONE = new PopulationMetrics(false, null);
+
+    private final boolean recording;
+    @Nullable
+    private final DuplicateIndex duplicates;
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LongAdder retries = new LongAdder();
+    private final LatencyHistogram cascadeDepth = new LatencyHistogram();
+    private final LatencyHistogram truncationHold = new LatencyHistogram();
+    private final LongAdder truncatedMembers = new LongAdder();
+
+    public PopulationMetrics() {
+        this(ENABLED, null);
+    }
+
+    public PopulationMetrics(@Nullable DuplicateIndex duplicates) {
+        this(ENABLED, duplicates);
+    }
+
+    private PopulationMetrics(boolean recording, @Nullable DuplicateIndex duplicates) {
+        this.recording = recording;
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * @return Start of a timed section, 0 if recording is off
+     */
+    public static long startTimer() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public void recordLockWait(long start) {
+        if (ENABLED && recording) {
+            lockWait.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * A lock, level or rank turned out to be stale because of a concurrent modification, so the work is redone
+     */
+    public void recordRetry() {
+        if (ENABLED && recording) {
+            retries.increment();
+        }
+    }
+
+    /**
+     * @param levels Number of levels an insertion has modified or created
+     */
+    public void recordCascadeDepth(int levels) {
+        if (ENABLED && recording) {
+            cascadeDepth.record(levels);
+        }
+    }
+
+    /**
+     * @param start   Time the removal lock was acquired, see {@link #startTimer()}
+     * @param removed Number of removed members
+     */
+    public void recordTruncation(long start, int removed) {
+        if (ENABLED && recording) {
+            truncationHold.record(System.nanoTime() - start);
+            truncatedMembers.add(removed);
+        }
+    }
+
+    /**
+     * Registers this object with the platform MBean server as {@code nds:type=PopulationMetrics,name=<name>}
+     *
+     * @return Registered name, to be passed to {@link #unregister(ObjectName)}
+     */
+    @Nonnull
+    public ObjectName register(@Nonnull String name) {
+        try {
+            final ObjectName objectName = new ObjectName("nds:type=PopulationMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not register population metrics " + name, e);
+        }
+    }
+
+    public static void unregister(@Nonnull ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not unregister population metrics " + objectName, e);
+        }
+    }
+
+    @Nonnull
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    @Nonnull
+    public LatencyHistogram getCascadeDepth() {
+        return cascadeDepth;
+    }
+
+    @Nonnull
+    public LatencyHistogram getTruncationHold() {
+        return truncationHold;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED && recording;
+    }
+
+    @Override
+    public long getLockAcquisitionCount() {
+        return lockWait.getCount();
+    }
+
+    @Override
+    public double getLockWaitMeanNanos() {
+        return lockWait.getMean();
+    }
+
+    @Override
+    public long getLockWaitP99Nanos() {
+        return lockWait.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getLockWaitMaxNanos() {
+        return lockWait.getMax();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getInsertionCount() {
+        return cascadeDepth.getCount();
+    }
+
+    @Override
+    public double getCascadeDepthMean() {
+        return cascadeDepth.getMean();
+    }
+
+    @Override
+    public long getCascadeDepthP99() {
+        return cascadeDepth.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getCascadeDepthMax() {
+        return cascadeDepth.getMax();
+    }
+
+    @Override
+    public long getTruncationCount() {
+        return truncationHold.getCount();
+    }
+
+    @Override
+    public long getTruncatedMemberCount() {
+        return truncatedMembers.sum();
+    }
+
+    @Override
+    public double getTruncationHoldMeanNanos() {
+        return truncationHold.getMean();
+    }
+
+    @Override
+    public long getTruncationHoldP99Nanos() {
+        return truncationHold.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getTruncationHoldMaxNanos() {
+        return truncationHold.getMax();
+    }
+
+    @Override
+    public long getDuplicateLookupCount() {
+        return duplicates == null ? 0 : duplicates.getLookupCount();
+    }
+
+    @Override
+    public double getDuplicateHitRate() {
+        return duplicates == null ? 0 : duplicates.getHitRate();
+    }
+
+    @Override
+    public void reset() {
+        lockWait.reset();
+        retries.reset();
+        cascadeDepth.reset();
+        truncationHold.reset();
+        truncatedMembers.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "lockWait{" + lockWait + "}, retries=" + getRetryCount()
+            + ", cascadeDepth{" + cascadeDepth + "}, truncationHold{" + truncationHold + "}"
+            + ", truncatedMembers=" + getTruncatedMemberCount()
+            + (duplicates == null ? "" : ", duplicates{" + duplicates + "}");
+    }
+}
@@ -0,0 +1,42 @@
+package nds;
+
+/**
+ * JMX view of {@link PopulationMetrics}, times are in nanoseconds.
+ */
+public interface PopulationMetricsMXBean {
+    boolean isEnabled();
+
+    long getLockAcquisitionCount();
+
+    double getLockWaitMeanNanos();
+
+    long getLockWaitP99Nanos();
+
+    long getLockWaitMaxNanos();
+
+    long getRetryCount();
+
+    long getInsertionCount();
+
+    double getCascadeDepthMean();
+
+    long getCascadeDepthP99();
+
+    long getCascadeDepthMax();
+
+    long getTruncationCount();
+
+    long getTruncatedMemberCount();
+
+    double getTruncationHoldMeanNanos();
+
+    long getTruncationHoldP99Nanos();
+
+    long getTruncationHoldMaxNanos();
+
+    long getDuplicateLookupCount();
+
+    double getDuplicateHitRate();
+
+    void reset();
+}
@@ -0,0 +1,122 @@
+package nds;
+
+import ru.ifmo.nds.IIndividual;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rank of a point, i.e. the first level which does not dominate it. Domination by a level is monotone in the level
+ * index, so the rank is found by a search over the levels.
+ * <p>
+ * By default it is a binary search. If the {@code nds.rankSearch.probes} system property is greater than one, each
+ * step probes that many evenly spaced candidate levels at once in the common {@link ForkJoinPool}, so the number of
+ * sequential steps drops from {@code log2(L)} to {@code log(L) / log(probes + 1)}.
+ */
+public final class RankSearch {
+    public static final String PROBES_PROPERTY = "nds.rankSearch.probes";
+
+    private static final int PROBES = Integer.getInteger(PROBES_PROPERTY, 1);
+
+    private RankSearch() {
+    }
+
+    public static <T> int determineRank(@Nonnull List<? extends INonDominationLevel<T>> levels,
+                                        @Nonnull IIndividual<T> point) {
+        return PROBES > 1
+            ? determineRank(levels, point, PROBES, ForkJoinPool.commonPool())
+            : binarySearch(levels, point);
+    }
+
+    /**
+     * @param probes Number of levels probed in parallel at each step
+     * @param pool   Pool to run probes in
+     */
+    public static <T> int determineRank(@Nonnull List<? extends INonDominationLevel<T>> levels,
+                                        @Nonnull IIndividual<T> point,
+                                        int probes,
+                                        @Nonnull ForkJoinPool pool) {
+        int l = 0;
+        int r = levels.size() - 1;
+        int lastNonDominating = r + 1;
+        final List<Probe<T>> tasks = new ArrayList<>(probes);
+        while (l <= r) {
+            final int count = r - l + 1;
+            final int k = Math.min(probes, count);
+            tasks.clear();
+            for (int j = 0; j < k; ++j) {
+                //evenly spaced, distinct since count >= k
+                final int test = count == k ? l + j : l + (int) ((long) (j + 1) * count / (k + 1));
+                tasks.add(new Probe<>(test, levels.get(test), point));
+            }
+            if (k == 1) {
+                tasks.get(0).compute();
+            } else if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            }
+
+            int nextL = l;
+            int nextR = r;
+            for (Probe<T> task : tasks) {
+                if (task.dominated) {
+                    nextL = task.test + 1;
+                } else {
+                    lastNonDominating = task.test;
+                    nextR = task.test - 1;
+                    break;
+                }
+            }
+            l = nextL;
+            r = nextR;
+        }
+
+        return lastNonDominating;
+    }
+
+    static <T> int binarySearch(@Nonnull List<? extends INonDominationLevel<T>> levels,
+                                @Nonnull IIndividual<T> point) {
+        int l = 0;
+        int r = levels.size() - 1;
+        int lastNonDominating = r + 1;
+        while (l <= r) {
+            final int test = (l + r) / 2;
+            if (!levels.get(test).dominatedByAnyPointOfThisLayer(point)) {
+                lastNonDominating = test;
+                r = test - 1;
+            } else {
+                l = test + 1;
+            }
+        }
+
+        return lastNonDominating;
+    }
+
+    private static final class Probe<T> extends RecursiveAction {
+        private final int test;
+        private final INonDominationLevel<T> level;
+        private final IIndividual<T> point;
+        private boolean dominated;
+
+        private Probe(int test, @Nonnull INonDominationLevel<T> level, @Nonnull IIndividual<T> point) {
+            this.test = test;
+            this.level = level;
+            this.point = point;
+        }
+
+        @Override
+        protected void compute() {
+            dominated = level.dominatedByAnyPointOfThisLayer(point);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package nds;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Portable kernel. The per-row comparison has no data-dependent branches, so the JIT compiles it into
+ * conditional moves; the only branch per row is the lex-order cut-off.
+ */
+@ThreadSafe
+public final class ScalarDominationKernel implements DominationKernel {
+    public static final ScalarDominationKernel INSTANCE = new ScalarDominationKernel();
+
+    private ScalarDominationKernel() {
+    }
+
+    @Override
+    public boolean dominatedByAny(@Nonnull double[] members, int fromRow, int toRow, @Nonnull double[] point) {
+        final int dim = point.length;
+        final int rows = members.length / dim;
+        final double first = point[0];
+        for (int row = fromRow; row < toRow; ++row) {
+            if (members[row] > first) {
+                return false;
+            }
+            int notWorse = 0;
+            int better = 0;
+            for (int k = 0, i = row; k < dim; ++k, i += rows) {
+                final double m = members[i];
+                final double p = point[k];
+                notWorse += m <= p ? 1 : 0;
+                better |= m < p ? 1 : 0;
+            }
+            if ((notWorse == dim) & (better != 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
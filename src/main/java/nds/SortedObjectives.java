@@ -1,6 +1,7 @@
 package nds;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -11,6 +12,12 @@ import ru.ifmo.nds.util.ObjectiveComparator;
 import ru.ifmo.nds.util.Utils;
 
 public class SortedObjectives<T extends IIndividual<P>, P> {
+    private static final int REMOVED = -2147483648;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final double[] EMPTY_COORD = new double[0];
+    private static final int[] EMPTY_INDEX = new int[0];
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private final int dim;
     @Nonnull
     private final List<double[]> coordSorted;
@@ -35,6 +42,36 @@ public class SortedObjectives<T extends IIndividual<P>, P> {
         return empty.update(pop, Collections.emptyList(), cdUpdater);
     }
 
+    /**
+     * Rebuilds sorted objectives from orders saved by {@link #getObjectiveOrder(int)}, without sorting or
+     * recomputing crowding distances.
+     *
+     * @param objectiveOrder Per objective, indices into {@code lexSortedPop} in ascending order of that objective
+     */
+    static <T1 extends IIndividual<P1>, P1> SortedObjectives<T1, P1> restore(int dim, @Nonnull List<int[]> objectiveOrder, @Nonnull List<T1> lexSortedPop) {
+        if (lexSortedPop.isEmpty()) {
+            return empty(dim);
+        }
+        final List<double[]> coordSorted = new ArrayList<>(dim);
+        for (int obj = 0; obj < dim; ++obj) {
+            final int[] order = objectiveOrder.get(obj);
+            final double[] coord = new double[order.length];
+            for (int j = 0; j < order.length; ++j) {
+                coord[j] = lexSortedPop.get(order[j]).getObjectives()[obj];
+            }
+            coordSorted.add(coord);
+        }
+        return new SortedObjectives<>(dim, coordSorted, objectiveOrder, lexSortedPop);
+    }
+
+    /**
+     * @return Indices into {@link #getLexSortedPop()} in ascending order of objective {@code obj}, not to be modified
+     */
+    @Nonnull
+    int[] getObjectiveOrder(int obj) {
+        return this.coordCorrespIndex.isEmpty() ? EMPTY_INDEX : this.coordCorrespIndex.get(obj);
+    }
+
     private void merge(@Nonnull List<T> pop, @Nonnull int[] ind, @Nonnull List<T> l, @Nonnull int[] il, @Nonnull List<T> r, @Nonnull int[] ir, @Nonnull Comparator<? super T> comparator) {
         int i = 0;
         int j = 0;
@@ -188,6 +225,177 @@ public class SortedObjectives<T extends IIndividual<P>, P> {
         }
     }
 
+    /**
+     * Same result as {@link #update}, up to the order of equal coordinates, with less garbage: index bookkeeping
+     * lives in thread-local scratch buffers, addends are sorted per objective with a primitive index sort, and
+     * crowding distance is recomputed only for addends and for members whose neighbours have changed in some
+     * objective. The other members are carried over as is, without calling {@code cdUpdater}. If the range of
+     * any objective changes, all distances are recomputed.
+     */
+    public SortedObjectives<T, P> updateIncremental(@Nonnull List<T> toAdd, @Nonnull List<T> toRemove, @Nonnull BiFunction<T, Double, T> cdUpdater) {
+        final int oldSize = this.lexSortedPop.size();
+        final int addSize = toAdd.size();
+        final int targetSize = oldSize + addSize - toRemove.size();
+        final Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(oldSize, addSize, targetSize);
+        final int[] newPosition = scratch.newPosition;
+        final int[] addendIndices = scratch.addendIndices;
+        final boolean[] changed = scratch.changed;
+        Arrays.fill(changed, 0, targetSize, false);
+
+        final List<T> newLexSortedPop = new ArrayList<>(targetSize);
+        int iPop = 0;
+        int iAdd = 0;
+        int iRem = 0;
+        while (iPop < oldSize || iAdd < addSize) {
+            if (iPop < oldSize && iRem < toRemove.size() && this.lexSortedPop.get(iPop).equals(toRemove.get(iRem))) {
+                newPosition[iPop++] = REMOVED;
+                ++iRem;
+            } else if (iPop < oldSize
+                && (iAdd >= addSize || Utils.lexCompare(this.lexSortedPop.get(iPop).getObjectives(), toAdd.get(iAdd).getObjectives(), this.dim) <= 0)) {
+                newPosition[iPop] = newLexSortedPop.size();
+                newLexSortedPop.add(this.lexSortedPop.get(iPop++));
+            } else {
+                addendIndices[iAdd] = newLexSortedPop.size();
+                changed[newLexSortedPop.size()] = true;
+                newLexSortedPop.add(toAdd.get(iAdd++));
+            }
+        }
+
+        final List<double[]> newCoordSorted = new ArrayList<>(this.dim);
+        final List<int[]> newCorrespIndex = new ArrayList<>(this.dim);
+        final double[] keys = scratch.keys;
+        final int[] order = scratch.order;
+        boolean rangeChanged = false;
+        for (int obj = 0; obj < this.dim; ++obj) {
+            final double[] oldCoord = this.coordSorted.isEmpty() ? EMPTY_COORD : this.coordSorted.get(obj);
+            final int[] oldIndex = this.coordCorrespIndex.isEmpty() ? EMPTY_INDEX : this.coordCorrespIndex.get(obj);
+            final double[] newCoord = new double[targetSize];
+            final int[] newIndex = new int[targetSize];
+            newCoordSorted.add(newCoord);
+            newCorrespIndex.add(newIndex);
+
+            for (int i = 0; i < addSize; ++i) {
+                keys[i] = toAdd.get(i).getObjectives()[obj];
+                order[i] = i;
+            }
+            sortIndices(order, keys, scratch.sortBuffer, addSize);
+
+            int cAddends = 0;
+            int cOldSorted = 0;
+            int cNew = 0;
+            boolean previousChanged = false;
+            while (cNew < targetSize) {
+                if (cOldSorted < oldCoord.length && newPosition[oldIndex[cOldSorted]] == REMOVED) {
+                    ++cOldSorted;
+                    if (cNew > 0) {
+                        changed[newIndex[cNew - 1]] = true;
+                    }
+                    previousChanged = true;
+                } else if (cAddends < addSize && (cOldSorted >= oldCoord.length || keys[order[cAddends]] <= oldCoord[cOldSorted])) {
+                    newCoord[cNew] = keys[order[cAddends]];
+                    newIndex[cNew] = addendIndices[order[cAddends++]];
+                    if (cNew > 0) {
+                        changed[newIndex[cNew - 1]] = true;
+                    }
+                    ++cNew;
+                    previousChanged = true;
+                } else {
+                    newCoord[cNew] = oldCoord[cOldSorted];
+                    newIndex[cNew] = newPosition[oldIndex[cOldSorted++]];
+                    if (previousChanged) {
+                        changed[newIndex[cNew]] = true;
+                        previousChanged = false;
+                    }
+                    ++cNew;
+                }
+            }
+            if (targetSize > 0) {
+                if (cOldSorted < oldCoord.length) {
+                    //trailing members were removed
+                    changed[newIndex[targetSize - 1]] = true;
+                }
+                if (oldCoord.length == 0
+                    || oldCoord[0] != newCoord[0]
+                    || oldCoord[oldCoord.length - 1] != newCoord[targetSize - 1]) {
+                    rangeChanged = true;
+                }
+            }
+        }
+
+        if (targetSize > 0) {
+            final double[] cd = scratch.cd;
+            Arrays.fill(cd, 0, targetSize, 0.0D);
+            for (int obj = 0; obj < this.dim; ++obj) {
+                final double[] coord = newCoordSorted.get(obj);
+                final int[] index = newCorrespIndex.get(obj);
+                cd[index[0]] = Double.POSITIVE_INFINITY;
+                cd[index[targetSize - 1]] = Double.POSITIVE_INFINITY;
+                final double inverseDelta = 1.0D / (coord[targetSize - 1] - coord[0]);
+
+                for (int j = 1; j < targetSize - 1; ++j) {
+                    if (rangeChanged || changed[index[j]]) {
+                        cd[index[j]] += (coord[j + 1] - coord[j - 1]) * inverseDelta;
+                    }
+                }
+            }
+
+            for (int i = 0; i < targetSize; ++i) {
+                if (rangeChanged || changed[i]) {
+                    newLexSortedPop.set(i, cdUpdater.apply(newLexSortedPop.get(i), cd[i]));
+                }
+            }
+        }
+
+        return new SortedObjectives<>(this.dim, newCoordSorted, newCorrespIndex, newLexSortedPop);
+    }
+
+    /**
+     * Stable sort of {@code order[0, n)} by {@code keys[order[i]]}.
+     */
+    private static void sortIndices(@Nonnull int[] order, @Nonnull double[] keys, @Nonnull int[] buffer, int n) {
+        if (n <= INSERTION_SORT_THRESHOLD) {
+            for (int i = 1; i < n; ++i) {
+                final int current = order[i];
+                final double key = keys[current];
+                int j = i - 1;
+                while (j >= 0 && keys[order[j]] > key) {
+                    order[j + 1] = order[j];
+                    --j;
+                }
+                order[j + 1] = current;
+            }
+            return;
+        }
+
+        int[] src = order;
+        int[] dst = buffer;
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                final int mid = Math.min(lo + width, n);
+                final int hi = Math.min(lo + 2 * width, n);
+                int l = lo;
+                int r = mid;
+                int k = lo;
+                while (l < mid && r < hi) {
+                    dst[k++] = keys[src[r]] < keys[src[l]] ? src[r++] : src[l++];
+                }
+                while (l < mid) {
+                    dst[k++] = src[l++];
+                }
+                while (r < hi) {
+                    dst[k++] = src[r++];
+                }
+            }
+            final int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != order) {
+            System.arraycopy(src, 0, order, 0, n);
+        }
+    }
+
     private List<T> calculateCD(@Nonnull BiFunction<T, Double, T> cdUpdater, int targetSize, @Nonnull List<T> newLexSortedPop, @Nonnull List<double[]> newCoordSorted, @Nonnull List<int[]> newCorrespIndex) {
         double[] cd = new double[targetSize];
 
@@ -216,5 +424,33 @@ public class SortedObjectives<T extends IIndividual<P>, P> {
     public List<T> getLexSortedPop() {
         return Collections.unmodifiableList(this.lexSortedPop);
     }
-}
 
+    /**
+     * Per-thread buffers of {@link #updateIncremental}. They only grow.
+     */
+    private static final class Scratch {
+        private int[] newPosition = EMPTY_INDEX;
+        private int[] addendIndices = EMPTY_INDEX;
+        private int[] order = EMPTY_INDEX;
+        private int[] sortBuffer = EMPTY_INDEX;
+        private double[] keys = EMPTY_COORD;
+        private double[] cd = EMPTY_COORD;
+        private boolean[] changed = new boolean[0];
+
+        private void ensureCapacity(int oldSize, int addSize, int targetSize) {
+            if (newPosition.length < oldSize) {
+                newPosition = new int[oldSize];
+            }
+            if (addendIndices.length < addSize) {
+                addendIndices = new int[addSize];
+                order = new int[addSize];
+                sortBuffer = new int[addSize];
+                keys = new double[addSize];
+            }
+            if (cd.length < targetSize) {
+                cd = new double[targetSize];
+                changed = new boolean[targetSize];
+            }
+        }
+    }
+}
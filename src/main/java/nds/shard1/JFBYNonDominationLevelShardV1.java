@@ -11,17 +11,17 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 
+import nds.DominationKernels;
 import nds.INonDominationLevel;
 import ru.ifmo.nds.IIndividual;
 import ru.ifmo.nds.dcns.sorter.JFB2014;
 import ru.ifmo.nds.impl.FitnessAndCdIndividual;
 import ru.ifmo.nds.util.RankedPopulation;
 
-import static ru.ifmo.nds.util.Utils.dominates;
-
 @ThreadSafe
 @Immutable
 public class JFBYNonDominationLevelShardV1<T> implements INonDominationLevel<T> {
@@ -40,6 +40,12 @@ public class JFBYNonDominationLevelShardV1<T> implements INonDominationLevel<T>
     @Nonnull
     private volatile SortedObjectivesShardV1<IIndividual<T>, T> sortedObjectives;
 
+    /**
+     * Lazily packed members of {@link #sortedObjectives}, see {@link DominationKernels#pack(List)}
+     */
+    @Nullable
+    private volatile PackedMembers packedMembers;
+
     private final Lock leftMembersLock = new ReentrantLock();
     private final Lock rightMembersLock = new ReentrantLock();
     private final Lock levelLock = new ReentrantLock();
@@ -191,22 +197,14 @@ public class JFBYNonDominationLevelShardV1<T> implements INonDominationLevel<T>
 
     @Override
     public boolean dominatedByAnyPointOfThisLayer(@Nonnull IIndividual point) {
-        final double[] pointObj = point.getObjectives();
-        for (IIndividual member : membersLeft) {
-            final double[] memberObj = member.getObjectives();
-            if (memberObj[0] > pointObj[0])
-                break;
-            if (dominates(memberObj, pointObj, pointObj.length) < 0)
-                return true;
-        }
-        for (IIndividual member : membersRight) {
-            final double[] memberObj = member.getObjectives();
-            if (memberObj[0] > pointObj[0])
-                break;
-            if (dominates(memberObj, pointObj, pointObj.length) < 0)
-                return true;
+        final SortedObjectivesShardV1<IIndividual<T>, T> current = sortedObjectives;
+        PackedMembers packed = packedMembers;
+        if (packed == null || packed.source != current) {
+            //left members precede right ones in lex order, so a single packed block covers both halves
+            packed = new PackedMembers(current, DominationKernels.pack(current.getLexSortedPop()));
+            packedMembers = packed;
         }
-        return false;
+        return DominationKernels.getDefault().dominatedByAny(packed.rows, point.getObjectives());
     }
 
     @Override
@@ -227,4 +225,18 @@ public class JFBYNonDominationLevelShardV1<T> implements INonDominationLevel<T>
             .map(Arrays::toString)
             .collect(Collectors.toList());
     }
+
+    /**
+     * Rows packed from a particular version of {@link #sortedObjectives}, so that a block packed by a reader racing
+     * with {@link #addMembers(List)} is never taken for the current one
+     */
+    private static final class PackedMembers {
+        private final Object source;
+        private final double[] rows;
+
+        private PackedMembers(@Nonnull Object source, @Nonnull double[] rows) {
+            this.source = source;
+            this.rows = rows;
+        }
+    }
 }
@@ -1,8 +1,10 @@
 package nds.shard1;
 
 import javafx.util.Pair;
+import nds.DuplicateIndex;
 import nds.IManagedPopulation;
 import nds.INonDominationLevel;
+import nds.PopulationMetrics;
 import nds.PopulationSnapshot;
 import ru.ifmo.nds.IIndividual;
 import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
@@ -33,11 +35,13 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
 
     private final AtomicInteger size = new AtomicInteger(0);
     private final CopyOnWriteArrayList<JFBYNonDominationLevelShardV1<T>> nonDominationLevels;
-    private final Map<IIndividual<T>, Boolean> presentIndividuals = new ConcurrentHashMap<>();
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
 
     private final long expectedPopSize;
     private final double deletionThreshold;
 
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+
     private final Map<Integer, Pair<Long, Integer>> levelsTs;
 
     @SuppressWarnings("WeakerAccess")
@@ -71,7 +75,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
             levelLocks.add(new ReentrantLock());
             size.addAndGet(level.getMembers().size());
             for (IIndividual<T> individual : level.getMembers()) {
-                presentIndividuals.put(individual, true);
+                presentIndividuals.add(individual);
             }
         }
     }
@@ -96,6 +100,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
     @SuppressWarnings("UnusedReturnValue")
     private int massRemoveWorst() {
         if (size.get() > expectedPopSize * deletionThreshold && removeLevelLock.tryLock()) {
+            final long lockedAt = PopulationMetrics.startTimer();
             try {
                 final int toDelete = (int) (size.get() - expectedPopSize);
                 int remaining = toDelete;
@@ -109,6 +114,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                         || lastLevelIndex != nonDominationLevels.size() - 1) {
                         lastLevelLock.unlock();
                         addLevelLock.unlock();
+                        metrics.recordRetry();
                         continue;
                     }
 
@@ -120,9 +126,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                             if (lastLevel.getMembers().isEmpty()) {
                                 System.err.println("Empty last ND level! Levels = " + nonDominationLevels);
                             } else {
-                                for (IIndividual individual : lastLevel.getMembers()) {
-                                    presentIndividuals.remove(individual);
-                                }
+                                presentIndividuals.removeAll(lastLevel.getMembers());
                             }
                             remaining -= lastLevel.getMembers().size();
                         } else {
@@ -172,6 +176,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                         tSize = size.get();
                     }
                 }
+                metrics.recordTruncation(lockedAt, toDelete);
                 return toDelete;
             } finally {
                 removeLevelLock.unlock();
@@ -212,7 +217,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
     public int addIndividual(@Nonnull IIndividual<T> addend) {
         final long ts = System.nanoTime();
 
-        if (presentIndividuals.putIfAbsent(addend, true) != null) {
+        if (!presentIndividuals.add(addend)) {
             return determineRank(addend);
         }
 
@@ -228,9 +233,11 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                     break;
                 } else {
                     lock.unlock();
+                    metrics.recordRetry();
                 }
             } catch (ArrayIndexOutOfBoundsException ignored) {
                 lock.unlock();
+                metrics.recordRetry();
             }
         }
 
@@ -243,6 +250,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
             levelLocks.add(new ReentrantLock());
             nonDominationLevels.add(level);
             addLevelLock.unlock();
+            metrics.recordCascadeDepth(1);
         } else {
             List<IIndividual<T>> addends = Collections.singletonList(addend);
             int i = rank;
@@ -261,7 +269,9 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                 } finally {
                     addLevelLock.unlock();
                 }
+                i++;
             }
+            metrics.recordCascadeDepth(i - rank);
         }
 
         final long spent = System.nanoTime() - ts;
@@ -275,6 +285,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
     }
 
     private Lock acquireLock(int rank) {
+        final long start = PopulationMetrics.startTimer();
         while (true) {
             Lock lock = null;
             try {
@@ -282,6 +293,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                     lock = levelLocks.get(rank);
                     lock.lock();
                     if (levelLocks.get(rank) == lock) {
+                        metrics.recordLockWait(start);
                         return lock;
                     } else {
                         lock.unlock();
@@ -291,6 +303,7 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                     if (rank < nonDominationLevels.size()) {
                         addLevelLock.unlock();
                     } else {
+                        metrics.recordLockWait(start);
                         return addLevelLock;
                     }
                 }
@@ -299,9 +312,16 @@ public class LevelLockJFBYPopulationShardV1<T> implements IManagedPopulation<T>
                     lock.unlock();
                 }
             }
+            metrics.recordRetry();
         }
     }
 
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * @return A copy of this population. All layers are also copied.
      */
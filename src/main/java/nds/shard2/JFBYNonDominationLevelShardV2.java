@@ -1,5 +1,7 @@
 package nds.shard2;
 
+import nds.DominanceIndex;
+import nds.DominationKernels;
 import nds.INonDominationLevel;
 import ru.ifmo.nds.IIndividual;
 import ru.ifmo.nds.dcns.sorter.JFB2014;
@@ -7,15 +9,18 @@ import ru.ifmo.nds.impl.FitnessAndCdIndividual;
 import ru.ifmo.nds.util.RankedPopulation;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import static ru.ifmo.nds.util.Utils.dominates;
+import static ru.ifmo.nds.util.Utils.lexCompare;
 
 @ThreadSafe
 @Immutable
@@ -29,6 +34,19 @@ public class JFBYNonDominationLevelShardV2<T> implements INonDominationLevel<T>
     @Nonnull
     private final SortedObjectivesShardV2<IIndividual<T>, T> sortedObjectives;
 
+    /**
+     * Lazily packed {@link #members}, see {@link DominationKernels#pack(List)}
+     */
+    @Nullable
+    private volatile double[] packedMembers;
+
+    /**
+     * Lazily built, then maintained by {@link #addMembers(List)} and {@link #evictDominatedMembers(List)} while the
+     * level is large enough
+     */
+    @Nullable
+    private volatile DominanceIndex index;
+
     /**
      * Inefficient (O(NlogN) CD recalc) new level construction
      * @param sorter Sorter impl
@@ -50,9 +68,17 @@ public class JFBYNonDominationLevelShardV2<T> implements INonDominationLevel<T>
     public JFBYNonDominationLevelShardV2(@Nonnull JFB2014 sorter,
                                   @Nonnull List<IIndividual<T>> members,
                                   @Nonnull SortedObjectivesShardV2<IIndividual<T>, T> sortedObjectives) {
+        this(sorter, members, sortedObjectives, null);
+    }
+
+    private JFBYNonDominationLevelShardV2(@Nonnull JFB2014 sorter,
+                                          @Nonnull List<IIndividual<T>> members,
+                                          @Nonnull SortedObjectivesShardV2<IIndividual<T>, T> sortedObjectives,
+                                          @Nullable DominanceIndex index) {
         this.sorter = sorter;
         this.members = Collections.unmodifiableList(members);
         this.sortedObjectives = sortedObjectives;
+        this.index = index;
     }
 
     @Override
@@ -92,18 +118,26 @@ public class JFBYNonDominationLevelShardV2<T> implements INonDominationLevel<T>
 
         return new MemberAdditionResult<>(
             nextLevel,
-            new JFBYNonDominationLevelShardV2<>(sorter, nso.getLexSortedPop(), nso)
+            new JFBYNonDominationLevelShardV2<>(sorter, nso.getLexSortedPop(), nso, updatedIndex(addends, nextLevel, nso))
         );
     }
 
     public MemberAdditionResult<T, JFBYNonDominationLevelShardV2<T>> evictDominatedMembers(@Nonnull List<IIndividual<T>> addends) {
-        final int[] ranks = new int[members.size()];
-        final RankedPopulation<IIndividual<T>> rp = sorter.addRankedMembers(members, ranks, addends, 0);
-        final ArrayList<IIndividual<T>> nextLevel = new ArrayList<>(ranks.length);
-
-        for (int i = 0; i < rp.getPop().length; ++i) {
-            if (rp.getRanks()[i] != 0) {
-                nextLevel.add(rp.getPop()[i]);
+        final List<IIndividual<T>> nextLevel;
+        if (DominanceIndex.isEnabledFor(members.size())) {
+            nextLevel = membersDominatedBy(addends, getIndex(addends.get(0).getObjectives().length));
+        } else {
+            final int[] ranks = new int[members.size()];
+            final RankedPopulation<IIndividual<T>> rp = sorter.addRankedMembers(members, ranks, addends, 0);
+            nextLevel = new ArrayList<>(ranks.length);
+
+            //addends are not inserted here, so the ones dominated by members are not evictions either
+            final Set<IIndividual<T>> addendSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            addendSet.addAll(addends);
+            for (int i = 0; i < rp.getPop().length; ++i) {
+                if (rp.getRanks()[i] != 0 && !addendSet.contains(rp.getPop()[i])) {
+                    nextLevel.add(rp.getPop()[i]);
+                }
             }
         }
 
@@ -115,29 +149,84 @@ public class JFBYNonDominationLevelShardV2<T> implements INonDominationLevel<T>
 
         return new MemberAdditionResult<>(
             nextLevel,
-            new JFBYNonDominationLevelShardV2<>(sorter, nso.getLexSortedPop(), nso)
+            new JFBYNonDominationLevelShardV2<>(sorter, nso.getLexSortedPop(), nso,
+                updatedIndex(Collections.emptyList(), nextLevel, nso))
         );
     }
 
+    /**
+     * @return Lex-sorted members dominated by any of {@code addends}
+     */
+    @Nonnull
+    private List<IIndividual<T>> membersDominatedBy(@Nonnull List<IIndividual<T>> addends,
+                                                    @Nonnull DominanceIndex dominanceIndex) {
+        final int dim = addends.get(0).getObjectives().length;
+        final List<double[]> dominated = new ArrayList<>();
+        for (IIndividual<T> addend : addends) {
+            dominanceIndex.collectDominatedBy(addend.getObjectives(), dominated);
+        }
+        dominated.sort((a, b) -> lexCompare(a, b, dim));
+
+        //a member dominated by several addends is reported several times, so surplus copies are skipped
+        final List<IIndividual<T>> result = new ArrayList<>(dominated.size());
+        int j = 0;
+        for (IIndividual<T> member : members) {
+            while (j < dominated.size() && lexCompare(dominated.get(j), member.getObjectives(), dim) < 0) {
+                ++j;
+            }
+            if (j == dominated.size()) {
+                break;
+            }
+            if (lexCompare(dominated.get(j), member.getObjectives(), dim) == 0) {
+                result.add(member);
+                ++j;
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    private DominanceIndex getIndex(int dim) {
+        DominanceIndex currentIndex = index;
+        if (currentIndex == null) {
+            //benign race: every thread indexes the same immutable members
+            currentIndex = DominanceIndex.create(dim, members);
+            index = currentIndex;
+        }
+        return currentIndex;
+    }
+
+    @Nullable
+    private DominanceIndex updatedIndex(@Nonnull List<IIndividual<T>> toAdd,
+                                        @Nonnull List<IIndividual<T>> toRemove,
+                                        @Nonnull SortedObjectivesShardV2<IIndividual<T>, T> nso) {
+        final DominanceIndex currentIndex = index;
+        return currentIndex != null && DominanceIndex.isEnabledFor(nso.getLexSortedPop().size())
+            ? currentIndex.update(toAdd, toRemove)
+            : null;
+    }
+
 
     @Override
     public boolean dominatedByAnyPointOfThisLayer(@Nonnull IIndividual point) {
-        final double[] pointObj = point.getObjectives();
-        for (IIndividual member : members) {
-            final double[] memberObj = member.getObjectives();
-            if (memberObj[0] > pointObj[0])
-                break;
-            if (dominates(memberObj, pointObj, pointObj.length) < 0)
-                return true;
+        if (DominanceIndex.isEnabledFor(members.size())) {
+            return getIndex(point.getObjectives().length).dominatedByAny(point.getObjectives());
+        }
+
+        double[] packed = packedMembers;
+        if (packed == null) {
+            //benign race: every thread packs the same immutable members
+            packed = DominationKernels.pack(members);
+            packedMembers = packed;
         }
-        return false;
+        return DominationKernels.getDefault().dominatedByAny(packed, point.getObjectives());
     }
 
     @Override
     public JFBYNonDominationLevelShardV2<T> copy() {
         final List<IIndividual<T>> newMembers = new ArrayList<>(members.size());
         newMembers.addAll(members);
-        return new JFBYNonDominationLevelShardV2<>(sorter, newMembers, sortedObjectives);
+        return new JFBYNonDominationLevelShardV2<>(sorter, newMembers, sortedObjectives, index);
     }
 
     @Override
@@ -1,37 +1,67 @@
 package nds.shard2;
 
+import nds.DuplicateIndex;
 import nds.IManagedPopulation;
 import nds.INonDominationLevel;
+import nds.LevelCascade;
+import nds.LevelSizes;
+import nds.PopulationMetrics;
 import nds.PopulationSnapshot;
 import ru.ifmo.nds.IIndividual;
 import ru.ifmo.nds.dcns.sorter.IncrementalJFB;
 import ru.ifmo.nds.dcns.sorter.JFB2014;
 import ru.ifmo.nds.impl.FitnessAndCdIndividual;
+import ru.ifmo.nds.impl.RankedIndividual;
 import ru.ifmo.nds.util.median.QuickSelect;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static ru.ifmo.nds.util.Utils.lexCompare;
 
+/**
+ * Level-lock population where every level is split into shards, each guarded by its own lock. A new individual is
+ * added to a random shard and evicts the members it dominates from the others.
+ * <p>
+ * The number of shards of a level is given by a {@link ShardingPolicy}. A level whose shard count differs from the
+ * policy's one, or whose shard sizes diverge, is rebalanced: its members are merged and split again into
+ * lex-contiguous shards with fresh locks. Rebalancing only happens if all shard locks of the level are free, so
+ * inserters never wait for it.
+ * <p>
+ * If the policy {@link ShardingPolicy#partitionsByFirstObjective() partitions by the first objective}, each layout
+ * of a level fixes the lower bound of the first objective for every shard. An addend can only dominate members
+ * whose first objective is not less than its own, so it goes to the shard of its range and only that shard and the
+ * ones above it are locked.
+ */
 @ThreadSafe
 public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T> {
     private static final double DEFAULT_DELETION_THRESHOLD = 1.2;
+    private static final int DEFAULT_SHARD_COUNT = 2;
+    /**
+     * Shards of a level are rebalanced if the largest one exceeds twice the smallest one plus this slack
+     */
+    private static final int REBALANCE_SLACK = 16;
 
-    private final List<List<Lock>> levelLocks = new CopyOnWriteArrayList<>();
+    private static final double[] NO_BOUNDS = new double[0];
+
+    private final List<List<ShardLock>> levelLocks = new CopyOnWriteArrayList<>();
+    /**
+     * Lower bounds of the first objective of the shards of each level, published before the shards of a new layout
+     * and tagged with them, so that bounds are never applied to shards of another layout
+     */
+    private final List<LevelBounds<T>> levelBounds = new CopyOnWriteArrayList<>();
     private final Lock addLevelLock = new ReentrantLock();
     private final Lock removeLevelLock = new ReentrantLock();
 
@@ -39,7 +69,8 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
 
     private final AtomicInteger size = new AtomicInteger(0);
     private final CopyOnWriteArrayList<List<JFBYNonDominationLevelShardV2<T>>> nonDominationLevels;
-    private final Map<IIndividual<T>, Boolean> presentIndividuals = new ConcurrentHashMap<>();
+    private final LevelSizes levelSizes = new LevelSizes();
+    private final DuplicateIndex presentIndividuals = new DuplicateIndex();
     private final Random random = ThreadLocalRandom.current();
 
     private final long expectedPopSize;
@@ -47,6 +78,15 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
 
     private final AtomicLong atomicLong = new AtomicLong(0);
 
+    private final ShardingPolicy shardingPolicy;
+    private final LongAdder shardLockAcquisitions = new LongAdder();
+    private final LongAdder contendedShardLockAcquisitions = new LongAdder();
+    private final LongAdder rebalances = new LongAdder();
+    private final PopulationMetrics metrics = new PopulationMetrics(presentIndividuals);
+
+    @Nullable
+    private volatile CachedSnapshot<T> cachedSnapshot;
+
     @SuppressWarnings("WeakerAccess")
     public LevelLockJFBYPopulationShardV2() {
         this(Long.MAX_VALUE);
@@ -63,47 +103,103 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
         this(new IncrementalJFB(), new CopyOnWriteArrayList<>(), expectedPopSize, deletionThreshold);
     }
 
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationShardV2(final long expectedPopSize,
+                                          @Nonnull final ShardingPolicy shardingPolicy) {
+        this(new IncrementalJFB(), new CopyOnWriteArrayList<>(), expectedPopSize, DEFAULT_DELETION_THRESHOLD, shardingPolicy);
+    }
+
     @SuppressWarnings("WeakerAccess")
     public LevelLockJFBYPopulationShardV2(@Nonnull final JFB2014 sorter,
                                      @Nonnull final CopyOnWriteArrayList<List<JFBYNonDominationLevelShardV2<T>>> nonDominationLevels,
                                      final long expectedPopSize,
                                      final double deletionThreshold) {
+        this(sorter, nonDominationLevels, expectedPopSize, deletionThreshold, ShardingPolicy.fixed(DEFAULT_SHARD_COUNT));
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public LevelLockJFBYPopulationShardV2(@Nonnull final JFB2014 sorter,
+                                          @Nonnull final CopyOnWriteArrayList<List<JFBYNonDominationLevelShardV2<T>>> nonDominationLevels,
+                                          final long expectedPopSize,
+                                          final double deletionThreshold,
+                                          @Nonnull final ShardingPolicy shardingPolicy) {
         this.sorter = sorter;
         this.nonDominationLevels = nonDominationLevels;
         this.expectedPopSize = expectedPopSize;
         this.deletionThreshold = deletionThreshold;
+        this.shardingPolicy = shardingPolicy;
+
+        for (int i = 0; i < nonDominationLevels.size(); ++i) {
+            if (shardingPolicy.partitionsByFirstObjective()) {
+                final List<JFBYNonDominationLevelShardV2<T>> shards = nonDominationLevels.get(i);
+                List<IIndividual<T>> members = new ArrayList<>();
+                for (JFBYNonDominationLevelShardV2<T> shard : shards) {
+                    members = lexMerge(shard.getMembers(), members);
+                }
+                final int[] cuts = cutPoints(members, shards.size());
+                final List<JFBYNonDominationLevelShardV2<T>> split = split(members, cuts);
+                levelBounds.add(new LevelBounds<>(split, lowerBounds(members, cuts)));
+                nonDominationLevels.set(i, split);
+            } else {
+                levelBounds.add(new LevelBounds<>(nonDominationLevels.get(i), NO_BOUNDS));
+            }
+        }
 
         for (List<JFBYNonDominationLevelShardV2<T>> nonDominationLevelShards : nonDominationLevels) {
-            final List<Lock> lockList = new ArrayList<>();
+            final List<ShardLock> lockList = new CopyOnWriteArrayList<>();
+            final int rank = levelLocks.size();
             levelLocks.add(lockList);
             for (INonDominationLevel<T> level : nonDominationLevelShards) {
-                lockList.add(new ReentrantLock());
+                lockList.add(new ShardLock());
                 size.addAndGet(level.getMembers().size());
+                levelSizes.add(rank, level.getMembers().size());
                 for (IIndividual<T> individual : level.getMembers()) {
-                    presentIndividuals.put(individual, true);
+                    presentIndividuals.add(individual);
                 }
             }
         }
 
     }
 
+    /**
+     * Levels are merged from their shards only if the shards were replaced since the previous snapshot, so repeated
+     * snapshots without insertions in between cost a pass over the shard references.
+     */
     @Override
     @Nonnull
     public PopulationSnapshot<T> getSnapshot() {
-        final ArrayList<INonDominationLevel<T>> rs = new ArrayList<>();
-        for (List<JFBYNonDominationLevelShardV2<T>> shards : nonDominationLevels) {
-            List<IIndividual<T>> levelMembers = new ArrayList<>();
-            for (JFBYNonDominationLevelShardV2<T> shard : shards) {
-                levelMembers = lexMerge(shard.getMembers(), levelMembers);
+        final CachedSnapshot<T> cached = cachedSnapshot;
+        final List<List<JFBYNonDominationLevelShardV2<T>>> levels = new ArrayList<>(nonDominationLevels);
+        final List<MergedLevel<T>> mergedLevels = new ArrayList<>(levels.size());
+        boolean changed = cached == null || cached.mergedLevels.size() != levels.size();
+        for (int i = 0; i < levels.size(); ++i) {
+            final MergedLevel<T> previous = cached != null && i < cached.mergedLevels.size()
+                ? cached.mergedLevels.get(i)
+                : null;
+            if (previous != null && previous.isMergeOf(levels.get(i))) {
+                mergedLevels.add(previous);
+            } else {
+                mergedLevels.add(merge(levels.get(i)));
+                changed = true;
             }
-            rs.add(new JFBYNonDominationLevelShardV2<>(sorter, levelMembers));
         }
+        if (!changed) {
+            return cached.snapshot;
+        }
+
+        final CachedSnapshot<T> result = new CachedSnapshot<>(mergedLevels);
+        cachedSnapshot = result;
+        return result.snapshot;
+    }
 
-        int size = 0;
-        for (INonDominationLevel<T> level : rs) {
-            size += level.getMembers().size();
+    @Nonnull
+    private MergedLevel<T> merge(@Nonnull List<JFBYNonDominationLevelShardV2<T>> levelShards) {
+        final List<JFBYNonDominationLevelShardV2<T>> shards = new ArrayList<>(levelShards);
+        List<IIndividual<T>> levelMembers = new ArrayList<>();
+        for (JFBYNonDominationLevelShardV2<T> shard : shards) {
+            levelMembers = lexMerge(shard.getMembers(), levelMembers);
         }
-        return new PopulationSnapshot<T>(rs, size);
+        return new MergedLevel<>(shards, new JFBYNonDominationLevelShardV2<>(sorter, levelMembers));
     }
 
     public List<List<JFBYNonDominationLevelShardV2<T>>> getSnapshotLevels() {
@@ -123,12 +219,14 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
     @SuppressWarnings("UnusedReturnValue")
     private int massRemoveWorst() {
         if (size.get() > expectedPopSize * deletionThreshold && removeLevelLock.tryLock()) {
+            final long lockedAt = PopulationMetrics.startTimer();
+            final int toDelete = (int) (size.get() - expectedPopSize);
+            int remaining = toDelete;
             try {
-                int remaining = (int) (size.get() - expectedPopSize);
 
                 final int lastLevelIndex = nonDominationLevels.size() - 1;
                 if (lastLevelIndex == 0) {
-                    final int shardId = random.nextInt(2);
+                    final int shardId = random.nextInt(nonDominationLevels.get(lastLevelIndex).size());
 
                     final Lock lock = acquireLock(lastLevelIndex, shardId);
                     if (lock != null) {
@@ -144,15 +242,10 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
                                 int kth = Math.min(cd.length / 2, remaining);
                                 final double cdThreshold = new QuickSelect().getKthElement(cd, kth);
 
-                                if (cdThreshold <= 0.001) {
-                                    System.err.println(lastLevel.getMembers());
-                                }
-
                                 final List<IIndividual<T>> newMembers = new ArrayList<>();
                                 final List<IIndividual<T>> removals = new ArrayList<>();
                                 for (IIndividual<T> individual : lastLevel.getMembers()) {
                                     if (kth > 0 && individual.getCrowdingDistance() <= cdThreshold) {
-                                        presentIndividuals.remove(individual);
                                         removals.add(individual);
                                         --kth;
                                     } else {
@@ -160,11 +253,10 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
                                     }
                                 }
                                 if (newMembers.isEmpty()) {
-                                    System.err.println("Empty members generated");
-                                    System.out.println(cdThreshold);
-                                    System.out.println(Arrays.toString(cd));
-                                    throw new RuntimeException(remaining + "<" + lastLevel.getMembers().size());
+                                    throw new IllegalStateException("Truncation emptied a level of "
+                                        + lastLevel.getMembers().size() + " members, " + remaining + " left to remove");
                                 }
+                                presentIndividuals.removeAll(removals);
 
                                 final SortedObjectivesShardV2<IIndividual<T>, T> nso = lastLevel.getSortedObjectives().update(
                                     Collections.emptyList(),
@@ -174,6 +266,8 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
 
                                 final JFBYNonDominationLevelShardV2<T> newLevel = new JFBYNonDominationLevelShardV2<>(sorter, nso.getLexSortedPop(), nso);
                                 nonDominationLevels.get(lastLevelIndex).set(shardId, newLevel);
+                                levelSizes.add(lastLevelIndex, -removals.size());
+                                remaining -= removals.size();
                             }
                         } finally {
                             lock.unlock();
@@ -183,49 +277,112 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
                     return 0;
                 }
 
-                try {
-                    final List<JFBYNonDominationLevelShardV2<T>> lastLevelShards = nonDominationLevels.get(lastLevelIndex);
-                    final List<Lock> lastLevelShardLocks = levelLocks.get(lastLevelIndex);
-                    for (int i = 0; i < lastLevelShards.size(); ++i) {
-                        if (lastLevelShardLocks.get(i).tryLock()) {
-                            try {
-                                remaining -= lastLevelShards.get(i).getMembers().size();
-                                for (IIndividual<T> tiIndividual : lastLevelShards.get(i).getMembers()) {
-                                    presentIndividuals.remove(tiIndividual);
-                                }
-                                lastLevelShards.set(i, new JFBYNonDominationLevelShardV2<>(sorter, Collections.emptyList()));
-                            } finally {
-                                lastLevelShardLocks.get(i).unlock();
+                final List<JFBYNonDominationLevelShardV2<T>> lastLevelShards = nonDominationLevels.get(lastLevelIndex);
+                final List<ShardLock> lastLevelShardLocks = levelLocks.get(lastLevelIndex);
+                for (int i = 0; i < lastLevelShards.size(); ++i) {
+                    if (lastLevelShardLocks.get(i).tryLock()) {
+                        try {
+                            if (nonDominationLevels.get(lastLevelIndex) != lastLevelShards) {
+                                //the level was rebalanced
+                                break;
                             }
+                            remaining -= lastLevelShards.get(i).getMembers().size();
+                            levelSizes.add(lastLevelIndex, -lastLevelShards.get(i).getMembers().size());
+                            presentIndividuals.removeAll(lastLevelShards.get(i).getMembers());
+                            lastLevelShards.set(i, new JFBYNonDominationLevelShardV2<>(sorter, Collections.emptyList()));
+                        } finally {
+                            lastLevelShardLocks.get(i).unlock();
                         }
-                        if (remaining <= 0)
-                            break;
-                    }
-                    if (lastLevelShards.stream().mapToInt(level -> level.getMembers().size()).sum() == 0) {
-                        nonDominationLevels.remove(lastLevelIndex);
-                        levelLocks.remove(lastLevelIndex);
-                    }
-                } finally {
-                    try {
-                        //addLevelLock.unlock();
-                    } catch (Exception ignored) {
                     }
+                    if (remaining <= 0)
+                        break;
+                }
+                if (lastLevelShards.stream().mapToInt(level -> level.getMembers().size()).sum() == 0) {
+                    removeEmptyLastLevel(lastLevelIndex, lastLevelShards, lastLevelShardLocks);
                 }
             } finally {
+                metrics.recordTruncation(lockedAt, toDelete - remaining);
                 removeLevelLock.unlock();
             }
         }
         return 0;
     }
 
+    /**
+     * Removes the level under {@link #addLevelLock}, which guards appends, so that the level lists and
+     * {@link LevelSizes} are never shortened and extended at once. Nothing is removed if a level was appended, the
+     * level was rebalanced or an inserter holds or has refilled one of its shards meanwhile.
+     */
+    private void removeEmptyLastLevel(int rank,
+                                      @Nonnull List<JFBYNonDominationLevelShardV2<T>> shards,
+                                      @Nonnull List<ShardLock> locks) {
+        addLevelLock.lock();
+        int locked = 0;
+        try {
+            if (nonDominationLevels.size() - 1 != rank
+                || nonDominationLevels.get(rank) != shards
+                || levelLocks.get(rank) != locks) {
+                return;
+            }
+            for (; locked < locks.size(); ++locked) {
+                if (!locks.get(locked).tryLock()) {
+                    return;
+                }
+            }
+            for (JFBYNonDominationLevelShardV2<T> shard : shards) {
+                if (!shard.getMembers().isEmpty()) {
+                    return;
+                }
+            }
+            nonDominationLevels.remove(rank);
+            levelLocks.remove(rank);
+            levelBounds.remove(rank);
+            levelSizes.removeLevels(rank);
+        } finally {
+            for (int i = 0; i < locked; ++i) {
+                locks.get(i).unlock();
+            }
+            addLevelLock.unlock();
+        }
+    }
+
     @Override
     public int size() {
         return size.get();
     }
 
+    /**
+     * Draws from the live shards through {@link LevelSizes}, so levels are not merged as in {@link #getSnapshot()}.
+     */
+    @Nonnull
+    @Override
+    public List<RankedIndividual<T>> getRandomSolutions(int count) {
+        final List<RankedIndividual<T>> res = levelSizes.sample(count, this::memberAt);
+        return res != null ? res : IManagedPopulation.super.getRandomSolutions(count);
+    }
+
+    @Nullable
+    private IIndividual<T> memberAt(int rank, int index) {
+        try {
+            int offset = index;
+            for (JFBYNonDominationLevelShardV2<T> shard : nonDominationLevels.get(rank)) {
+                final List<IIndividual<T>> members = shard.getMembers();
+                if (offset < members.size()) {
+                    return members.get(offset);
+                }
+                offset -= members.size();
+            }
+            return null;
+        } catch (IndexOutOfBoundsException ignored) {
+            //the level was removed
+            return null;
+        }
+    }
+
     private int determineRank(IIndividual<T> point, int rankHint) {
         if (rankHint < 0) {
-            final List<List<JFBYNonDominationLevelShardV2<T>>> ndLayers = getSnapshotLevels();
+            //shard lists are copy-on-write, so only the outer list needs a copy
+            final List<List<JFBYNonDominationLevelShardV2<T>>> ndLayers = new ArrayList<>(nonDominationLevels);
 
             int l = 0;
             int r = ndLayers.size() - 1;
@@ -248,94 +405,449 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
 
     @Override
     public int addIndividual(@Nonnull IIndividual<T> addend) {
-        while (true) {
-            try {
-                return doAddIndividual(addend);
-            } catch (ArrayIndexOutOfBoundsException ignored) {
-                ignored.printStackTrace();
-            }
+        if (!presentIndividuals.add(addend)) {
+            return determineRank(addend);
         }
-    }
 
-    public int doAddIndividual(@Nonnull IIndividual<T> addend) {
-        if (presentIndividuals.putIfAbsent(addend, true) != null) {
-            return determineRank(addend);
+        final int rank = determineRank(addend, -1);
+
+        final long id = atomicLong.incrementAndGet();
+
+        List<IIndividual<T>> addends = Collections.singletonList(addend);
+        int i = rank;
+        while (!addends.isEmpty()) {
+            if (i >= nonDominationLevels.size()) {
+                final int appended = appendLevels(i, addends);
+                if (appended > 0) {
+                    i += appended;
+                    break;
+                }
+                //another inserter has appended the level meanwhile
+                metrics.recordRetry();
+            }
+            addends = shardingPolicy.partitionsByFirstObjective() ? addToLevelRanges(i, addends) : addToLevel(i, addends);
+            maybeRebalance(i);
+            i++;
         }
+        metrics.recordCascadeDepth(i - rank);
 
-        int rank = determineRank(addend, -1);
+        size.incrementAndGet();
+        massRemoveWorst();
 
-        //Locked current level or all level addition
+        return rank;
+    }
 
-        final long id = atomicLong.incrementAndGet();
+    /**
+     * Appends levels for {@code members} if the population still has no level {@code rank}
+     *
+     * @return Number of appended levels, 0 if the level exists by now and the members must be inserted into it
+     */
+    private int appendLevels(int rank, @Nonnull List<IIndividual<T>> members) {
+        addLevelLock.lock();
+        try {
+            return rank < nonDominationLevels.size() ? 0 : addLevels(members);
+        } finally {
+            addLevelLock.unlock();
+        }
+    }
 
+    /**
+     * @return Shards of the level, {@code null} if the level has been removed by truncation
+     */
+    @Nullable
+    private List<JFBYNonDominationLevelShardV2<T>> levelShards(int rank) {
         if (rank >= nonDominationLevels.size()) {
-            addLevelLock.lock(); //fixme racy level add
-            final List<IIndividual<T>> individuals = Collections.singletonList(addend);
-            final JFBYNonDominationLevelShardV2<T> level = new JFBYNonDominationLevelShardV2<>(
-                sorter,
-                individuals
-            );
-            levelLocks.add(new CopyOnWriteArrayList<>(Arrays.asList(new ReentrantLock(), new ReentrantLock())));
-            nonDominationLevels.add(new CopyOnWriteArrayList<>(Arrays.asList(level, new JFBYNonDominationLevelShardV2<>(sorter, Collections.emptyList()))));
-            addLevelLock.unlock(); //created 2 shards
-        } else {
-            List<IIndividual<T>> addends = Collections.singletonList(addend);
-            int i = rank;
-            while (!addends.isEmpty() && i < nonDominationLevels.size()) {
-                //assertion: we have locked levelLocks.get(i)
-                final List<JFBYNonDominationLevelShardV2<T>> levelShards = nonDominationLevels.get(i);
-                final int modifiedIndex = random.nextInt(levelShards.size());
-                List<IIndividual<T>> nextAddends = new ArrayList<>();
-                for (int j = 0; j < levelShards.size(); ++j) {
+            return null;
+        }
+        try {
+            return nonDominationLevels.get(rank);
+        } catch (IndexOutOfBoundsException ignored) {
+            //the level was removed after the size check
+            return null;
+        }
+    }
+
+    /**
+     * Adds {@code addends} to a random shard of the level and evicts the members they dominate from the other
+     * shards. If the level gets rebalanced meanwhile, the shards are walked again in the new layout; addends which
+     * were already added have been carried over by the rebalancing, so then they only evict.
+     *
+     * @return Evicted members, lex-sorted
+     */
+    @Nonnull
+    private List<IIndividual<T>> addToLevel(int rank, @Nonnull List<IIndividual<T>> addends) {
+        List<IIndividual<T>> evicted = new ArrayList<>();
+        boolean added = false;
+        layout:
+        while (true) {
+            final List<JFBYNonDominationLevelShardV2<T>> levelShards = levelShards(rank);
+            if (levelShards == null) {
+                //the level was truncated away meanwhile
+                if (added || appendLevels(rank, addends) > 0) {
+                    return evicted;
+                }
+                metrics.recordRetry();
+                continue;
+            }
+            final int modifiedIndex = added ? -1 : random.nextInt(levelShards.size());
+            for (int j = 0; j < levelShards.size(); ++j) {
+                final Lock l = acquireLock(rank, j);
+                if (l == null) {
+                    metrics.recordRetry();
+                    continue layout;
+                }
+                try {
+                    if (l == addLevelLock) {
+                        //the level was truncated away meanwhile
+                        if (!added) {
+                            addLevels(addends);
+                        }
+                        return evicted;
+                    }
+                    if (nonDominationLevels.get(rank) != levelShards) {
+                        metrics.recordRetry();
+                        continue layout;
+                    }
                     final JFBYNonDominationLevelShardV2<T> level = levelShards.get(j);
-                    final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevelShardV2<T>> memberAdditionResult;
-                    final Lock l = acquireLock(i, j);
-                    try {
-                        if (l == addLevelLock) {
-                            break;
+                    JFBYNonDominationLevelShardV2<T> modifiedLevel = level;
+                    if (j == modifiedIndex) {
+                        //addends may be dominated by points which were inserted into the shard while they were in
+                        //transit, or by each other, these go on to the next level like evicted members
+                        final List<IIndividual<T>> dominated = new ArrayList<>();
+                        final List<IIndividual<T>> nonDominated = LevelCascade.takeNonDominated(level, addends, dominated);
+                        if (!nonDominated.isEmpty()) {
+                            final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevelShardV2<T>> memberAdditionResult =
+                                level.addMembers(nonDominated);
+                            modifiedLevel = memberAdditionResult.getModifiedLevel();
+                            evicted = lexMerge(evicted, memberAdditionResult.getEvictedMembers());
                         }
-                        if (j == modifiedIndex) {
-                            memberAdditionResult = level.addMembers(addends);
-                        } else {
-                            memberAdditionResult = level.evictDominatedMembers(addends);
+                        evicted = lexMerge(evicted, dominated);
+                        added = true;
+                    } else {
+                        final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevelShardV2<T>> memberAdditionResult =
+                            level.evictDominatedMembers(addends);
+                        modifiedLevel = memberAdditionResult.getModifiedLevel();
+                        evicted = lexMerge(evicted, memberAdditionResult.getEvictedMembers());
+                    }
+                    levelShards.set(j, modifiedLevel);
+                    levelSizes.add(rank, modifiedLevel.getMembers().size() - level.getMembers().size());
+                } finally {
+                    l.unlock();
+                }
+            }
+            return evicted;
+        }
+    }
+
+    /**
+     * Range-partitioned counterpart of {@link #addToLevel(int, List)}. Addends are lex-sorted, so the ones falling
+     * into a shard are contiguous and every shard is only checked against the addends from its range and below.
+     * Addends which were added before the level got rebalanced form a prefix, which only evicts afterwards.
+     *
+     * @return Evicted members, lex-sorted
+     */
+    @Nonnull
+    private List<IIndividual<T>> addToLevelRanges(int rank, @Nonnull List<IIndividual<T>> addends) {
+        List<IIndividual<T>> evicted = new ArrayList<>();
+        int added = 0;
+        layout:
+        while (true) {
+            final List<JFBYNonDominationLevelShardV2<T>> levelShards = levelShards(rank);
+            final LevelBounds<T> levelBounds = levelShards == null ? null : levelBounds(rank);
+            if (levelShards == null || levelBounds == null) {
+                //the level was truncated away meanwhile
+                if (added == addends.size() || appendLevels(rank, addends.subList(added, addends.size())) > 0) {
+                    return evicted;
+                }
+                metrics.recordRetry();
+                continue;
+            }
+            if (levelBounds.shards != levelShards) {
+                //bounds of a rebalancing which has not published its shards yet, or shards of a newer layout
+                metrics.recordRetry();
+                Thread.yield();
+                continue;
+            }
+            final double[] bounds = levelBounds.lower;
+            for (int j = shardOf(bounds, addends.get(0).getObjectives()[0]); j < levelShards.size(); ++j) {
+                final Lock l = acquireLock(rank, j);
+                if (l == null) {
+                    metrics.recordRetry();
+                    continue layout;
+                }
+                try {
+                    if (l == addLevelLock) {
+                        //the level was truncated away meanwhile
+                        if (added < addends.size()) {
+                            addLevels(addends.subList(added, addends.size()));
+                        }
+                        return evicted;
+                    }
+                    if (nonDominationLevels.get(rank) != levelShards) {
+                        metrics.recordRetry();
+                        continue layout;
+                    }
+                    final int from = Math.max(added, firstNotBelow(addends, bounds[j]));
+                    final int to = j + 1 < bounds.length ? Math.max(from, firstNotBelow(addends, bounds[j + 1])) : addends.size();
+                    final JFBYNonDominationLevelShardV2<T> level = levelShards.get(j);
+                    JFBYNonDominationLevelShardV2<T> modifiedLevel = level;
+                    if (from > 0) {
+                        final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevelShardV2<T>> memberAdditionResult =
+                            modifiedLevel.evictDominatedMembers(addends.subList(0, from));
+                        modifiedLevel = memberAdditionResult.getModifiedLevel();
+                        evicted = lexMerge(evicted, memberAdditionResult.getEvictedMembers());
+                    }
+                    if (to > from) {
+                        //addends may be dominated by points which were inserted into the shard while they were in
+                        //transit, or by each other, these go on to the next level like evicted members
+                        final List<IIndividual<T>> dominated = new ArrayList<>();
+                        final List<IIndividual<T>> nonDominated =
+                            LevelCascade.takeNonDominated(modifiedLevel, addends.subList(from, to), dominated);
+                        if (!nonDominated.isEmpty()) {
+                            final INonDominationLevel.MemberAdditionResult<T, JFBYNonDominationLevelShardV2<T>> memberAdditionResult =
+                                modifiedLevel.addMembers(nonDominated);
+                            modifiedLevel = memberAdditionResult.getModifiedLevel();
+                            evicted = lexMerge(evicted, memberAdditionResult.getEvictedMembers());
                         }
-                        levelShards.set(j, memberAdditionResult.getModifiedLevel());
-                        nextAddends = lexMerge(nextAddends, memberAdditionResult.getEvictedMembers());
-                    } finally {
-                        l.unlock();
+                        evicted = lexMerge(evicted, dominated);
+                        added = to;
                     }
+                    levelShards.set(j, modifiedLevel);
+                    levelSizes.add(rank, modifiedLevel.getMembers().size() - level.getMembers().size());
+                } finally {
+                    l.unlock();
                 }
-                addends = nextAddends;
-                i++;
             }
-            if (!addends.isEmpty()) {
-                addLevelLock.lock();
-
-                final JFBYNonDominationLevelShardV2<T> level = new JFBYNonDominationLevelShardV2<>(
-                    sorter,
-                    addends
-                );
-                levelLocks.add(new CopyOnWriteArrayList<>(Arrays.asList(new ReentrantLock(), new ReentrantLock())));
-                nonDominationLevels.add(new CopyOnWriteArrayList<>(Arrays.asList(level, new JFBYNonDominationLevelShardV2<>(sorter, Collections.emptyList()))));
-                addLevelLock.unlock(); //created 2 shards
+            return evicted;
+        }
+    }
+
+    /**
+     * @return Last shard whose lower bound does not exceed {@code objective}
+     */
+    private static int shardOf(@Nonnull double[] bounds, double objective) {
+        int l = 0;
+        int r = bounds.length - 1;
+        while (l < r) {
+            final int mid = (l + r + 1) >>> 1;
+            if (bounds[mid] <= objective) {
+                l = mid;
+            } else {
+                r = mid - 1;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * @param sorted Lex-sorted individuals
+     * @return Index of the first individual whose first objective is not less than {@code bound}
+     */
+    private static <T> int firstNotBelow(@Nonnull List<IIndividual<T>> sorted, double bound) {
+        int l = 0;
+        int r = sorted.size();
+        while (l < r) {
+            final int mid = (l + r) >>> 1;
+            if (sorted.get(mid).getObjectives()[0] < bound) {
+                l = mid + 1;
+            } else {
+                r = mid;
             }
         }
+        return l;
+    }
 
+    /**
+     * @return Bounds of the level, {@code null} if the level has been removed by truncation
+     */
+    @Nullable
+    private LevelBounds<T> levelBounds(int rank) {
+        try {
+            return levelBounds.get(rank);
+        } catch (IndexOutOfBoundsException ignored) {
+            //the level was removed
+            return null;
+        }
+    }
 
-        size.incrementAndGet();
-        massRemoveWorst();
+    /**
+     * Appends as many levels as lex-sorted {@code members} need, members which dominate each other go to separate
+     * levels. Must be called under {@link #addLevelLock}.
+     *
+     * @return Number of appended levels
+     */
+    private int addLevels(@Nonnull List<IIndividual<T>> members) {
+        int levels = 0;
+        List<IIndividual<T>> pending = members;
+        while (!pending.isEmpty()) {
+            final List<IIndividual<T>> dominated = new ArrayList<>();
+            addLevel(LevelCascade.takeNonDominated(null, pending, dominated));
+            pending = dominated;
+            ++levels;
+        }
+        return levels;
+    }
 
-        return rank;
+    /**
+     * Must be called under {@link #addLevelLock}
+     */
+    private void addLevel(@Nonnull List<IIndividual<T>> members) {
+        final int[] cuts = cutPoints(members, shardingPolicy.shardCount(members.size()));
+        final List<JFBYNonDominationLevelShardV2<T>> shards = split(members, cuts);
+        levelBounds.add(new LevelBounds<>(
+            shards,
+            shardingPolicy.partitionsByFirstObjective() ? lowerBounds(members, cuts) : NO_BOUNDS
+        ));
+        levelLocks.add(newShardLocks(cuts.length - 1));
+        nonDominationLevels.add(shards);
+        levelSizes.add(nonDominationLevels.size() - 1, members.size());
+    }
+
+    /**
+     * Rebalances the level if its shard count differs from the policy's one or its shard sizes diverge, provided
+     * that no shard of the level is locked.
+     */
+    private void maybeRebalance(int rank) {
+        final List<JFBYNonDominationLevelShardV2<T>> levelShards;
+        final List<ShardLock> locks;
+        try {
+            levelShards = nonDominationLevels.get(rank);
+            locks = levelLocks.get(rank);
+        } catch (IndexOutOfBoundsException ignored) {
+            //the level was removed
+            return;
+        }
+
+        int levelSize = 0;
+        int minShardSize = Integer.MAX_VALUE;
+        int maxShardSize = 0;
+        for (JFBYNonDominationLevelShardV2<T> shard : levelShards) {
+            final int shardSize = shard.getMembers().size();
+            levelSize += shardSize;
+            minShardSize = Math.min(minShardSize, shardSize);
+            maxShardSize = Math.max(maxShardSize, shardSize);
+        }
+        final int shardCount = shardingPolicy.shardCount(levelSize);
+        if (shardCount == levelShards.size() && maxShardSize <= 2 * minShardSize + REBALANCE_SLACK) {
+            return;
+        }
+
+        int locked = 0;
+        try {
+            for (; locked < locks.size(); ++locked) {
+                if (!locks.get(locked).tryLock()) {
+                    return;
+                }
+            }
+            if (nonDominationLevels.get(rank) != levelShards || levelLocks.get(rank) != locks) {
+                return;
+            }
+
+            List<IIndividual<T>> members = new ArrayList<>();
+            for (JFBYNonDominationLevelShardV2<T> shard : levelShards) {
+                members = lexMerge(shard.getMembers(), members);
+            }
+            //bounds are replaced before shards and shards before their locks: whoever gets a new lock sees the new
+            //shards, whoever sees the new shards sees their bounds
+            final int[] cuts = cutPoints(members, shardCount);
+            if (shardCount == levelShards.size() && maxShardSize(cuts) >= maxShardSize) {
+                //ties in the first objective do not allow a better split
+                return;
+            }
+            final List<JFBYNonDominationLevelShardV2<T>> shards = split(members, cuts);
+            levelBounds.set(rank, new LevelBounds<>(
+                shards,
+                shardingPolicy.partitionsByFirstObjective() ? lowerBounds(members, cuts) : NO_BOUNDS
+            ));
+            nonDominationLevels.set(rank, shards);
+            levelLocks.set(rank, newShardLocks(shardCount));
+            rebalances.increment();
+        } finally {
+            for (int i = 0; i < locked; ++i) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Cuts are moved past ties in the first objective, so that each value of it belongs to a single shard. Shards
+     * may therefore be empty.
+     *
+     * @param members Lex-sorted members of a level
+     * @return Boundaries of {@code shardCount} lex-contiguous shards, {@code shardCount + 1} of them
+     */
+    @Nonnull
+    private static <T> int[] cutPoints(@Nonnull List<IIndividual<T>> members, int shardCount) {
+        final int[] cuts = new int[shardCount + 1];
+        for (int i = 1; i <= shardCount; ++i) {
+            int cut = Math.max(cuts[i - 1], (int) ((long) members.size() * i / shardCount));
+            while (cut > 0 && cut < members.size()
+                && members.get(cut).getObjectives()[0] == members.get(cut - 1).getObjectives()[0]) {
+                ++cut;
+            }
+            cuts[i] = cut;
+        }
+        return cuts;
     }
 
+    private static int maxShardSize(@Nonnull int[] cuts) {
+        int result = 0;
+        for (int i = 0; i + 1 < cuts.length; ++i) {
+            result = Math.max(result, cuts[i + 1] - cuts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return Lower bound of the first objective of each shard; empty shards at the end start at infinity
+     */
+    @Nonnull
+    private static <T> double[] lowerBounds(@Nonnull List<IIndividual<T>> members, @Nonnull int[] cuts) {
+        final double[] bounds = new double[cuts.length - 1];
+        bounds[0] = Double.NEGATIVE_INFINITY;
+        for (int i = 1; i < bounds.length; ++i) {
+            bounds[i] = cuts[i] < members.size() ? members.get(cuts[i]).getObjectives()[0] : Double.POSITIVE_INFINITY;
+        }
+        return bounds;
+    }
+
+    @Nonnull
+    private List<JFBYNonDominationLevelShardV2<T>> split(@Nonnull List<IIndividual<T>> members, @Nonnull int[] cuts) {
+        final List<JFBYNonDominationLevelShardV2<T>> shards = new ArrayList<>(cuts.length - 1);
+        for (int i = 0; i + 1 < cuts.length; ++i) {
+            shards.add(new JFBYNonDominationLevelShardV2<>(sorter, new ArrayList<>(members.subList(cuts[i], cuts[i + 1]))));
+        }
+        return new CopyOnWriteArrayList<>(shards);
+    }
+
+    @Nonnull
+    private List<ShardLock> newShardLocks(int shardCount) {
+        final List<ShardLock> locks = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; ++i) {
+            locks.add(new ShardLock());
+        }
+        return new CopyOnWriteArrayList<>(locks);
+    }
+
+    /**
+     * @return Lock of the shard, {@link #addLevelLock} if there is no such level, {@code null} if the level has
+     * been rebalanced into fewer shards
+     */
+    @Nullable
     private Lock acquireLock(int rank, int shard) {
+        final long start = PopulationMetrics.startTimer();
         while (true) {
-            Lock lock = null;
+            ShardLock lock = null;
             try {
                 if (rank < nonDominationLevels.size()) {
-                    lock = levelLocks.get(rank).get(shard);
-                    lock.lock();
-                    if (levelLocks.get(rank).get(shard) == lock) {
+                    final List<ShardLock> locks = levelLocks.get(rank);
+                    if (shard >= locks.size()) {
+                        return null;
+                    }
+                    lock = locks.get(shard);
+                    lock.lockMeasured();
+                    if (levelLocks.get(rank) == locks) {
+                        metrics.recordLockWait(start);
                         return lock;
                     } else {
                         lock.unlock();
@@ -345,17 +857,58 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
                     if (rank < nonDominationLevels.size()) {
                         addLevelLock.unlock();
                     } else {
+                        metrics.recordLockWait(start);
                         return addLevelLock;
                     }
                 }
-            } catch (ArrayIndexOutOfBoundsException ignored) {
-                if (lock != null) {
+            } catch (IndexOutOfBoundsException ignored) {
+                if (lock != null && lock.isHeldByCurrentThread()) {
                     lock.unlock();
                 }
             }
+            metrics.recordRetry();
         }
     }
 
+    @Nonnull
+    @Override
+    public PopulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Share of shard lock acquisitions which found the lock held by another thread
+     */
+    public double getShardContention() {
+        final long acquisitions = shardLockAcquisitions.sum();
+        return acquisitions == 0 ? 0 : (double) contendedShardLockAcquisitions.sum() / acquisitions;
+    }
+
+    /**
+     * @return For every level, the contention of each of its current shard locks, see {@link #getShardContention()}
+     */
+    @Nonnull
+    public double[][] getShardContentionByLevel() {
+        final List<List<ShardLock>> locks = new ArrayList<>(levelLocks);
+        final double[][] result = new double[locks.size()][];
+        for (int i = 0; i < result.length; ++i) {
+            final List<ShardLock> levelShardLocks = locks.get(i);
+            result[i] = new double[levelShardLocks.size()];
+            for (int j = 0; j < result[i].length; ++j) {
+                result[i][j] = levelShardLocks.get(j).getContention();
+            }
+        }
+        return result;
+    }
+
+    public long getShardLockAcquisitions() {
+        return shardLockAcquisitions.sum();
+    }
+
+    public long getRebalanceCount() {
+        return rebalances.sum();
+    }
+
     /**
      * @return A copy of this population. All layers are also copied.
      */
@@ -392,4 +945,79 @@ public class LevelLockJFBYPopulationShardV2<T> implements IManagedPopulation<T>
         }
         return result;
     }
+
+    private static final class LevelBounds<T> {
+        private final List<JFBYNonDominationLevelShardV2<T>> shards;
+        private final double[] lower;
+
+        private LevelBounds(@Nonnull List<JFBYNonDominationLevelShardV2<T>> shards, @Nonnull double[] lower) {
+            this.shards = shards;
+            this.lower = lower;
+        }
+    }
+
+    /**
+     * Level merged from its shards. Shards are immutable, so the merge stays valid while the level holds the very
+     * same shard instances.
+     */
+    private static final class MergedLevel<T> {
+        private final List<JFBYNonDominationLevelShardV2<T>> shards;
+        private final JFBYNonDominationLevelShardV2<T> level;
+
+        private MergedLevel(@Nonnull List<JFBYNonDominationLevelShardV2<T>> shards,
+                            @Nonnull JFBYNonDominationLevelShardV2<T> level) {
+            this.shards = shards;
+            this.level = level;
+        }
+
+        private boolean isMergeOf(@Nonnull List<JFBYNonDominationLevelShardV2<T>> levelShards) {
+            int i = 0;
+            for (JFBYNonDominationLevelShardV2<T> shard : levelShards) {
+                if (i >= shards.size() || shards.get(i) != shard) {
+                    return false;
+                }
+                ++i;
+            }
+            return i == shards.size();
+        }
+    }
+
+    private static final class CachedSnapshot<T> {
+        private final List<MergedLevel<T>> mergedLevels;
+        private final PopulationSnapshot<T> snapshot;
+
+        private CachedSnapshot(@Nonnull List<MergedLevel<T>> mergedLevels) {
+            this.mergedLevels = mergedLevels;
+            final List<INonDominationLevel<T>> levels = new ArrayList<>(mergedLevels.size());
+            int size = 0;
+            for (MergedLevel<T> mergedLevel : mergedLevels) {
+                levels.add(mergedLevel.level);
+                size += mergedLevel.level.getMembers().size();
+            }
+            this.snapshot = new PopulationSnapshot<>(Collections.unmodifiableList(levels), size);
+        }
+    }
+
+    /**
+     * Shard lock which counts how often it was found held by another thread
+     */
+    private final class ShardLock extends ReentrantLock {
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contendedAcquisitions = new LongAdder();
+
+        private void lockMeasured() {
+            if (!tryLock()) {
+                contendedAcquisitions.increment();
+                contendedShardLockAcquisitions.increment();
+                lock();
+            }
+            acquisitions.increment();
+            shardLockAcquisitions.increment();
+        }
+
+        private double getContention() {
+            final long count = acquisitions.sum();
+            return count == 0 ? 0 : (double) contendedAcquisitions.sum() / count;
+        }
+    }
 }
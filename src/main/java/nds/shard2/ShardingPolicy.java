@@ -0,0 +1,65 @@
+package nds.shard2;
+
+/**
+ * Number of shards a level of {@link LevelLockJFBYPopulationShardV2} is split into. Levels are rebalanced towards
+ * this count as they grow and shrink.
+ */
+@FunctionalInterface
+public interface ShardingPolicy {
+    int DEFAULT_MEMBERS_PER_SHARD = 32;
+
+    /**
+     * @param levelSize Number of members of the level
+     * @return Number of shards, at least one
+     */
+    int shardCount(int levelSize);
+
+    /**
+     * @return Whether every shard holds a fixed range of the first objective, so that an insertion only touches the
+     * shard of its range and the ones above it. Otherwise a random shard receives the addends and all the others
+     * are checked for dominated members.
+     */
+    default boolean partitionsByFirstObjective() {
+        return false;
+    }
+
+    /**
+     * @param shardCounts Policy giving the number of shards
+     * @return Policy with the same number of shards, each holding a range of the first objective
+     */
+    static ShardingPolicy byFirstObjective(ShardingPolicy shardCounts) {
+        return new ShardingPolicy() {
+            @Override
+            public int shardCount(int levelSize) {
+                return shardCounts.shardCount(levelSize);
+            }
+
+            @Override
+            public boolean partitionsByFirstObjective() {
+                return true;
+            }
+        };
+    }
+
+    static ShardingPolicy fixed(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Non-positive number of shards: " + shards);
+        }
+        return levelSize -> shards;
+    }
+
+    static ShardingPolicy adaptive(int threads) {
+        return adaptive(threads, DEFAULT_MEMBERS_PER_SHARD);
+    }
+
+    /**
+     * One shard per {@code membersPerShard} members, but no more shards than {@code threads}, since a level is
+     * never modified by more threads at once.
+     */
+    static ShardingPolicy adaptive(int threads, int membersPerShard) {
+        if (threads < 1 || membersPerShard < 1) {
+            throw new IllegalArgumentException("Non-positive adaptive sharding parameters: " + threads + ", " + membersPerShard);
+        }
+        return levelSize -> Math.max(1, Math.min(threads, levelSize / membersPerShard));
+    }
+}
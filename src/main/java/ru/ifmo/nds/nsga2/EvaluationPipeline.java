@@ -0,0 +1,157 @@
+package ru.ifmo.nds.nsga2;
+
+import org.moeaframework.core.Solution;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipelined steady-state mode of {@link SSNSGAII}: generator threads select parents and apply variation, a bounded
+ * queue hands the offspring over to a pool of evaluators, which evaluate them and insert them into the population.
+ * Selection thus keeps running while slow evaluations are in flight, and the number of evaluators does not depend
+ * on the number of generators.
+ * <p>
+ * Evaluators insert every {@code batchSize} evaluated offspring as one batch, or whatever they have as soon as the
+ * queue runs dry, so that the population does not lag behind. If an evaluator fails, {@link #generate(long)} and
+ * {@link #close()} rethrow its failure rather than wait on the queue.
+ */
+public class EvaluationPipeline implements AutoCloseable {
+    private static final Solution END_OF_STREAM = new Solution(0, 0);
+    private static final long OFFER_MILLIS = 10;
+
+    private final SSNSGAII algorithm;
+    private final BlockingQueue<Solution> offspring;
+    private final int batchSize;
+    private final List<Future<?>> evaluators;
+    private final LongAdder evaluated = new LongAdder();
+    private volatile Throwable failure;
+
+    /**
+     * Starts the evaluators.
+     *
+     * @param algorithm      Initialized algorithm
+     * @param queueCapacity  Max. number of offspring waiting for evaluation, generators block beyond it
+     * @param executor       Runs the evaluators, e.g. a fixed pool of {@code evaluatorCount} threads or
+     *                       {@link VirtualThreads#newExecutor()}. Not shut down by the pipeline.
+     * @param evaluatorCount Number of concurrent evaluations
+     * @param batchSize      Max. number of offspring inserted at once
+     */
+    public EvaluationPipeline(@Nonnull SSNSGAII algorithm,
+                              int queueCapacity,
+                              @Nonnull ExecutorService executor,
+                              int evaluatorCount,
+                              int batchSize) {
+        if (queueCapacity < 1 || evaluatorCount < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Illegal pipeline parameters: " + queueCapacity + ", "
+                + evaluatorCount + ", " + batchSize);
+        }
+        this.algorithm = algorithm;
+        this.offspring = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.evaluators = new ArrayList<>(evaluatorCount);
+        for (int i = 0; i < evaluatorCount; ++i) {
+            evaluators.add(executor.submit(this::evaluate));
+        }
+    }
+
+    /**
+     * Generator stage: creates {@code count} offspring and queues them for evaluation. Safe to call concurrently.
+     *
+     * @throws IllegalStateException if an evaluator has failed, instead of waiting for a queue nobody drains
+     */
+    public void generate(long count) throws InterruptedException {
+        for (long i = 0; i < count; ++i) {
+            checkEvaluators();
+            final Solution solution = algorithm.createOffspring();
+            while (!offspring.offer(solution, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkEvaluators();
+            }
+        }
+    }
+
+    /**
+     * @return Number of offspring evaluated and inserted so far
+     */
+    public long getEvaluatedCount() {
+        return evaluated.sum();
+    }
+
+    /**
+     * Waits for all queued offspring to be evaluated and inserted, then stops the evaluators. Generators must be
+     * done before.
+     *
+     * @throws IllegalStateException if an evaluator has failed
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (int i = 0; i < evaluators.size(); ++i) {
+            //failed evaluators do not drain the queue anymore
+            while (!offspring.offer(END_OF_STREAM, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (evaluators.stream().allMatch(Future::isDone)) {
+                    break;
+                }
+            }
+        }
+        for (Future<?> evaluator : evaluators) {
+            try {
+                evaluator.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Evaluator has failed", e.getCause());
+            }
+        }
+        checkEvaluators();
+    }
+
+    private void checkEvaluators() {
+        final Throwable cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("Evaluator has failed", cause);
+        }
+    }
+
+    private Void evaluate() throws InterruptedException {
+        try {
+            final List<Solution> batch = new ArrayList<>(batchSize);
+            while (true) {
+                Solution solution = offspring.poll();
+                if (solution == null) {
+                    flush(batch);
+                    solution = offspring.take();
+                }
+                if (solution == END_OF_STREAM) {
+                    flush(batch);
+                    return null;
+                }
+                algorithm.evaluate(solution);
+                batch.add(solution);
+                if (batch.size() >= batchSize) {
+                    flush(batch);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void flush(@Nonnull List<Solution> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            algorithm.addSolution(batch.get(0));
+        } else {
+            algorithm.addSolutions(batch);
+        }
+        evaluated.add(batch.size());
+        batch.clear();
+    }
+}
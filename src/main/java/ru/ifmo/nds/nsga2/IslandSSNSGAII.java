@@ -0,0 +1,124 @@
+package ru.ifmo.nds.nsga2;
+
+import org.moeaframework.core.NondominatedPopulation;
+import org.moeaframework.core.Solution;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Island model over independent {@link SSNSGAII} instances, each with its own population. Threads step islands
+ * instead of contending for one shared population: every island is meant to be stepped by its own group of threads.
+ * <p>
+ * Every {@code migrationInterval} steps of an island its best {@code migrantCount} members are copied to the
+ * inboxes of the islands given by the {@link MigrationTopology}. Inboxes are lock-free queues, drained by the next
+ * step of their island.
+ */
+public class IslandSSNSGAII {
+    private final List<Island> islands;
+    private final MigrationTopology topology;
+    private final int migrationInterval;
+    private final int migrantCount;
+    private final LongAdder migrations = new LongAdder();
+
+    public IslandSSNSGAII(@Nonnull List<SSNSGAII> algorithms,
+                          @Nonnull MigrationTopology topology,
+                          int migrationInterval,
+                          int migrantCount) {
+        if (algorithms.isEmpty()) {
+            throw new IllegalArgumentException("No islands");
+        }
+        if (migrationInterval < 1 || migrantCount < 0) {
+            throw new IllegalArgumentException("Illegal migration parameters: " + migrationInterval + ", " + migrantCount);
+        }
+        this.islands = new ArrayList<>(algorithms.size());
+        for (SSNSGAII algorithm : algorithms) {
+            islands.add(new Island(algorithm));
+        }
+        this.topology = topology;
+        this.migrationInterval = migrationInterval;
+        this.migrantCount = migrantCount;
+    }
+
+    public int getIslandCount() {
+        return islands.size();
+    }
+
+    /**
+     * Initializes all islands, must precede concurrent {@link #step(int)} calls
+     */
+    public void initialize() {
+        for (Island island : islands) {
+            island.algorithm.step();
+        }
+    }
+
+    /**
+     * Adds the pending immigrants of the island, makes one step of it and sends its migrants out if they are due.
+     * Safe to call concurrently for any islands.
+     */
+    public void step(int island) {
+        final Island current = islands.get(island);
+
+        final List<Solution> immigrants = new ArrayList<>();
+        for (Solution s = current.inbox.poll(); s != null; s = current.inbox.poll()) {
+            immigrants.add(s);
+        }
+        if (!immigrants.isEmpty()) {
+            current.algorithm.addSolutions(immigrants);
+        }
+
+        current.algorithm.step();
+
+        if (migrantCount > 0 && current.steps.incrementAndGet() % migrationInterval == 0) {
+            for (int target : topology.targets(island, islands.size())) {
+                islands.get(target).inbox.addAll(current.algorithm.selectMigrants(migrantCount));
+            }
+            migrations.increment();
+        }
+    }
+
+    /**
+     * Terminates every island, once no island is stepped any more
+     */
+    public void terminate() {
+        for (Island island : islands) {
+            island.algorithm.terminate();
+        }
+    }
+
+    /**
+     * @return Non-dominated members over all islands
+     */
+    public NondominatedPopulation getResult() {
+        final NondominatedPopulation result = new NondominatedPopulation();
+        for (Island island : islands) {
+            for (Solution s : island.algorithm.getNonDominatedSolutions()) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of migrations sent, counting one per source island and interval
+     */
+    public long getMigrationCount() {
+        return migrations.sum();
+    }
+
+    private static final class Island {
+        private final SSNSGAII algorithm;
+        private final Queue<Solution> inbox = new ConcurrentLinkedQueue<>();
+        private final AtomicLong steps = new AtomicLong();
+
+        private Island(@Nonnull SSNSGAII algorithm) {
+            this.algorithm = algorithm;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.ifmo.nds.nsga2;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Islands which receive migrants of an island of {@link IslandSSNSGAII}.
+ */
+@FunctionalInterface
+public interface MigrationTopology {
+    /**
+     * @param island      Source island
+     * @param islandCount Number of islands
+     * @return Target islands, not containing {@code island}
+     */
+    int[] targets(int island, int islandCount);
+
+    static MigrationTopology ring() {
+        return (island, islandCount) -> islandCount < 2 ? new int[0] : new int[]{(island + 1) % islandCount};
+    }
+
+    static MigrationTopology fullyConnected() {
+        return (island, islandCount) -> {
+            final int[] targets = new int[Math.max(0, islandCount - 1)];
+            for (int i = 0, j = 0; i < islandCount; ++i) {
+                if (i != island) {
+                    targets[j++] = i;
+                }
+            }
+            return targets;
+        };
+    }
+
+    /**
+     * Every migration goes to one island chosen uniformly at random
+     */
+    static MigrationTopology randomNeighbour() {
+        return (island, islandCount) -> {
+            if (islandCount < 2) {
+                return new int[0];
+            }
+            final int target = ThreadLocalRandom.current().nextInt(islandCount - 1);
+            return new int[]{target < island ? target : target + 1};
+        };
+    }
+}
@@ -14,7 +14,10 @@ import org.moeaframework.core.operator.RandomInitialization;
 import org.moeaframework.core.operator.TournamentSelection;
 import org.moeaframework.core.spi.OperatorFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.function.Supplier;
 
 /**
  * Copied utility code from the MOEA framework.
@@ -58,6 +61,24 @@ public class NSGAIIMoeaRunner {
         return new SSNSGAII(problem, variation, new RandomInitialization(problem, populationSize), population);
     }
 
+    /**
+     * @param populationSize     Size of every island's population
+     * @param populationSupplier Creates the population of every island
+     */
+    public static IslandSSNSGAII newIslandSSNSGAII(int populationSize,
+                                                   Problem problem,
+                                                   int islandCount,
+                                                   Supplier<IManagedPopulation<Solution>> populationSupplier,
+                                                   MigrationTopology topology,
+                                                   int migrationInterval,
+                                                   int migrantCount) {
+        final List<SSNSGAII> islands = new ArrayList<>(islandCount);
+        for (int i = 0; i < islandCount; ++i) {
+            islands.add(newSSNSGAII(populationSize, problem, populationSupplier.get()));
+        }
+        return new IslandSSNSGAII(islands, topology, migrationInterval, migrantCount);
+    }
+
     private static Variation getVariation(Problem problem) {
         return OperatorFactory.getInstance().getVariation(null, new Properties(), problem);
     }
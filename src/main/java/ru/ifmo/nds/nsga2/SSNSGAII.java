@@ -1,6 +1,13 @@
 package ru.ifmo.nds.nsga2;
 
+import nds.EpsilonBoxArchive;
+import nds.HypervolumeTracker;
+import nds.IEventPublishingPopulation;
 import nds.IManagedPopulation;
+import nds.INonDominationLevel;
+import nds.PopulationEvent;
+import nds.PopulationEventPublisher;
+import nds.PopulationListener;
 import org.apache.commons.math3.random.MersenneTwister;
 import org.moeaframework.algorithm.AbstractAlgorithm;
 import org.moeaframework.core.EpsilonBoxDominanceArchive;
@@ -12,6 +19,7 @@ import org.moeaframework.core.Problem;
 import org.moeaframework.core.Solution;
 import org.moeaframework.core.Variation;
 import org.moeaframework.core.operator.CompoundVariation;
+import ru.ifmo.nds.IIndividual;
 import ru.ifmo.nds.impl.FitnessAndCdIndividual;
 import ru.ifmo.nds.impl.RankedIndividual;
 import ru.ifmo.nds.nsga2.evo.ChainedComparator;
@@ -21,8 +29,14 @@ import ru.ifmo.nds.nsga2.evo.Selection;
 import ru.ifmo.nds.nsga2.variation.PM;
 import ru.ifmo.nds.nsga2.variation.SBX;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Steady-state modification of NSGA2, implemented using incremental NDS.
@@ -38,9 +52,19 @@ import java.util.List;
  * </ol>
  */
 public class SSNSGAII extends AbstractAlgorithm implements EpsilonBoxEvolutionaryAlgorithm {
+    private static final double DEFAULT_ARCHIVE_EPSILON = 1e-4;
+    private static final int DEFAULT_ARCHIVE_CAPACITY = 1000;
+
     private final Variation variation;
     private final Initialization initialization;
     private final IManagedPopulation<Solution> population;
+    private final EpsilonBoxArchive<Solution> archive;
+    private volatile HypervolumeTracker hypervolumeTracker;
+    private final LongAdder evaluations = new LongAdder();
+    @Nullable
+    private final PopulationEventPublisher.Subscription<Solution> firstLevelFeed;
+    private volatile ResultCopy result;
+    private volatile ArchiveCopy archiveCopy;
 
     private final Comparator<RankedIndividual> comparator = new ChainedComparator<>(
             new RankComparator(),
@@ -48,19 +72,37 @@ public class SSNSGAII extends AbstractAlgorithm implements EpsilonBoxEvolutionar
     );
 
     public SSNSGAII(Problem problem, Variation variation, Initialization initialization, IManagedPopulation<Solution> population) {
+        this(problem, variation, initialization, population,
+                new EpsilonBoxArchive<>(DEFAULT_ARCHIVE_EPSILON, DEFAULT_ARCHIVE_CAPACITY));
+    }
+
+    /**
+     * @param population If it publishes events, the archive is fed from its first level by a subscription, which
+     *                   {@link #terminate()} closes; otherwise inserting threads offer the new first-level members
+     * @param archive    Receives every solution which enters the first non-domination level, backs
+     *                   {@link #getResult()} and {@link #getArchive()}
+     */
+    public SSNSGAII(Problem problem,
+                    Variation variation,
+                    Initialization initialization,
+                    IManagedPopulation<Solution> population,
+                    EpsilonBoxArchive<Solution> archive) {
         super(problem);
         //this.variation = variation;
         this.variation = new CompoundVariation(new SBX(1.0, 15.0),
                 new PM(1.0 / problem.getNumberOfVariables(), 20.0));
         this.initialization = initialization;
         this.population = population;
+        this.archive = archive;
+        this.firstLevelFeed = population instanceof IEventPublishingPopulation
+                ? ((IEventPublishingPopulation<Solution>) population).subscribe(new FirstLevelListener())
+                : null;
     }
 
     @Override
     public void iterate() {
         try {
-            final Solution addend = generateOffspring();
-            population.addIndividual(new FitnessAndCdIndividual<>(addend.getObjectives(), addend));
+            addSolution(generateOffspring());
         } catch (ArrayIndexOutOfBoundsException e) {
             for (StackTraceElement stackTraceElement : e.getStackTrace()) {
                 if (stackTraceElement.getClassName().contains(MersenneTwister.class.getSimpleName())) {
@@ -74,6 +116,32 @@ public class SSNSGAII extends AbstractAlgorithm implements EpsilonBoxEvolutionar
     }
 
     private Solution generateOffspring() {
+        final Solution solution = createOffspring();
+        evaluate(solution);
+        return solution;
+    }
+
+    /**
+     * Counts evaluations in a {@link LongAdder} instead of the inherited plain field, so that concurrent evaluators,
+     * e.g. those of an {@link EvaluationPipeline}, do not lose counts.
+     */
+    @Override
+    public void evaluate(Solution solution) {
+        problem.evaluate(solution);
+        evaluations.increment();
+    }
+
+    @Override
+    public int getNumberOfEvaluations() {
+        return (int) Math.min(Integer.MAX_VALUE, evaluations.sum());
+    }
+
+    /**
+     * Selects parents and applies variation, leaving the offspring unevaluated. Safe to call concurrently.
+     *
+     * @return Offspring to be evaluated, then inserted by {@link #addSolutions(Collection)}
+     */
+    public Solution createOffspring() {
         final int mutationCandidatesCount = variation.getArity() * 2;
         final List<RankedIndividual<Solution>> mutationCandidates = population.getRandomSolutions(mutationCandidatesCount);
         if (mutationCandidates.size() < mutationCandidatesCount) {
@@ -93,9 +161,7 @@ public class SSNSGAII extends AbstractAlgorithm implements EpsilonBoxEvolutionar
             parentSolutions[i] = (Solution) parents[i].getPayload();
         }
 
-        final Solution solution = variation.evolve(parentSolutions)[0];
-        evaluate(solution);
-        return solution;
+        return variation.evolve(parentSolutions)[0];
     }
 
     @Override
@@ -105,14 +171,103 @@ public class SSNSGAII extends AbstractAlgorithm implements EpsilonBoxEvolutionar
         final Solution[] initialSolutions = initialization.initialize();
         evaluateAll(initialSolutions);
         for (Solution s : initialSolutions) {
-            population.addIndividual(new FitnessAndCdIndividual<>(s.getObjectives(), s));
+            addSolution(s);
             //System.out.println(Arrays.toString(s.getObjectives()));
         }
     }
 
+    /**
+     * @param count Max. number of migrants
+     * @return Copies of the best {@code count} members by rank, then by crowding distance
+     */
+    public List<Solution> selectMigrants(int count) {
+        final List<RankedIndividual<Solution>> candidates = new ArrayList<>();
+        final List<INonDominationLevel<Solution>> levels = population.getSnapshot().getLevels();
+        for (int rank = 0; rank < levels.size() && candidates.size() < count; ++rank) {
+            for (IIndividual<Solution> member : levels.get(rank).getMembers()) {
+                candidates.add(new RankedIndividual<>(member.getObjectives(), member.getCrowdingDistance(), rank, member.getPayload()));
+            }
+        }
+        candidates.sort(comparator);
+
+        final List<Solution> migrants = new ArrayList<>(Math.min(count, candidates.size()));
+        for (int i = 0; i < count && i < candidates.size(); ++i) {
+            migrants.add(candidates.get(i).getPayload().copy());
+        }
+        return migrants;
+    }
+
+    public void addSolution(Solution solution) {
+        final IIndividual<Solution> addend = new FitnessAndCdIndividual<>(solution.getObjectives(), solution);
+        final int rank = population.addIndividual(addend);
+        if (firstLevelFeed == null && rank == 0) {
+            enteredFirstLevel(addend);
+        }
+    }
+
+    /**
+     * Inserts evaluated solutions as one batch. Batch insertion does not report ranks, so without a first-level feed
+     * the solutions which are not dominated by the first level afterwards are offered to the archive.
+     */
+    public void addSolutions(Collection<Solution> solutions) {
+        final List<IIndividual<Solution>> addends = new ArrayList<>(solutions.size());
+        for (Solution s : solutions) {
+            addends.add(new FitnessAndCdIndividual<>(s.getObjectives(), s));
+        }
+        population.addIndividuals(addends);
+        if (firstLevelFeed == null) {
+            final List<INonDominationLevel<Solution>> levels = population.getSnapshot().getLevels();
+            for (IIndividual<Solution> addend : addends) {
+                if (levels.isEmpty() || !levels.get(0).dominatedByAnyPointOfThisLayer(addend)) {
+                    enteredFirstLevel(addend);
+                }
+            }
+        }
+    }
+
+    private void enteredFirstLevel(@Nonnull IIndividual<Solution> member) {
+        archive.offer(member);
+        final HypervolumeTracker tracker = hypervolumeTracker;
+        if (tracker != null) {
+            tracker.add(member.getObjectives());
+        }
+    }
+
+    /**
+     * @param tracker Receives objectives of every solution which enters the first non-domination level from now on,
+     *                {@code null} to stop tracking. With a first-level feed they arrive on the feed's thread.
+     */
+    public void setHypervolumeTracker(HypervolumeTracker tracker) {
+        this.hypervolumeTracker = tracker;
+    }
+
+    /**
+     * @return Members of the first non-domination level
+     */
+    public List<Solution> getNonDominatedSolutions() {
+        final List<INonDominationLevel<Solution>> levels = population.getSnapshot().getLevels();
+        final List<Solution> result = new ArrayList<>();
+        if (!levels.isEmpty()) {
+            for (IIndividual<Solution> member : levels.get(0).getMembers()) {
+                result.add(member.getPayload());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Read-only copy of the epsilon-box archive, rebuilt only after the archive has changed. Safe to call
+     * while other threads iterate.
+     */
     @Override
     public EpsilonBoxDominanceArchive getArchive() {
-        throw new UnsupportedOperationException("Working with archive is not supported");
+        final List<IIndividual<Solution>> members = archiveMembers();
+        ArchiveCopy copy = archiveCopy;
+        if (copy == null || copy.source != members) {
+            copy = new ArchiveCopy(members, archive.getEpsilons());
+            archiveCopy = copy;
+        }
+        return copy;
     }
 
     @Override
@@ -120,8 +275,201 @@ public class SSNSGAII extends AbstractAlgorithm implements EpsilonBoxEvolutionar
         throw new UnsupportedOperationException("Working with NondominatedPopulation is not supported");
     }
 
+    /**
+     * @return Read-only members of the epsilon-box archive, rebuilt only after the archive has changed. Safe to call
+     * while other threads iterate.
+     */
     @Override
     public NondominatedPopulation getResult() {
-        throw new UnsupportedOperationException("Working with NondominatedPopulation is not supported");
+        final List<IIndividual<Solution>> members = archiveMembers();
+        ResultCopy current = result;
+        if (current == null || current.source != members) {
+            current = new ResultCopy(members);
+            result = current;
+        }
+        return current;
+    }
+
+    /**
+     * Closes the first-level feed once the events published so far have reached the archive
+     */
+    @Override
+    public void terminate() {
+        super.terminate();
+        if (firstLevelFeed != null) {
+            awaitFirstLevelFeed();
+            firstLevelFeed.close();
+        }
+    }
+
+    /**
+     * @return Archive members, including the first-level members inserted before the call
+     */
+    private List<IIndividual<Solution>> archiveMembers() {
+        if (firstLevelFeed != null) {
+            awaitFirstLevelFeed();
+        }
+        return archive.getMembers();
+    }
+
+    private void awaitFirstLevelFeed() {
+        try {
+            firstLevelFeed.awaitDelivery();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Offers the individuals inserted into the first level to the archive and the tracker, removes the ones which left
+     * it from the tracker; after an overflow offers the whole first level and rebuilds the tracker from it
+     */
+    private final class FirstLevelListener implements PopulationListener<Solution> {
+        @Override
+        public void onEvents(@Nonnull List<PopulationEvent<Solution>> events) {
+            for (PopulationEvent<Solution> event : events) {
+                switch (event.getType()) {
+                    case INSERTED:
+                        if (event.getRank() == 0) {
+                            enteredFirstLevel(event.getIndividual());
+                        }
+                        break;
+                    case EVICTED:
+                    case TRUNCATED:
+                        if (event.getFromRank() == 0) {
+                            leftFirstLevel(event.getIndividual());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public void onOverflow(long dropped) {
+            final List<INonDominationLevel<Solution>> levels = population.getSnapshot().getLevels();
+            final List<IIndividual<Solution>> firstLevel = levels.isEmpty()
+                    ? Collections.emptyList()
+                    : levels.get(0).getMembers();
+            for (IIndividual<Solution> member : firstLevel) {
+                archive.offer(member);
+            }
+            final HypervolumeTracker tracker = hypervolumeTracker;
+            if (tracker != null) {
+                final List<double[]> objectives = new ArrayList<>(firstLevel.size());
+                for (IIndividual<Solution> member : firstLevel) {
+                    objectives.add(member.getObjectives());
+                }
+                tracker.reset(objectives);
+            }
+        }
+
+        private void leftFirstLevel(@Nonnull IIndividual<Solution> member) {
+            final HypervolumeTracker tracker = hypervolumeTracker;
+            if (tracker != null) {
+                tracker.remove(member.getObjectives());
+            }
+        }
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Snapshot of the archive is read-only");
+    }
+
+    /**
+     * Archive members are mutually non-dominated already, so they are added without the quadratic check
+     */
+    private static final class ArchiveCopy extends EpsilonBoxDominanceArchive {
+        private final List<IIndividual<Solution>> source;
+
+        private ArchiveCopy(@Nonnull List<IIndividual<Solution>> source, double[] epsilons) {
+            super(epsilons);
+            this.source = source;
+            for (IIndividual<Solution> member : source) {
+                forceAddWithoutCheck(member.getPayload());
+            }
+        }
+
+        @Override
+        public boolean add(Solution solution) {
+            throw readOnly();
+        }
+
+        @Override
+        public void replace(int index, Solution solution) {
+            throw readOnly();
+        }
+
+        @Override
+        public void remove(int index) {
+            throw readOnly();
+        }
+
+        @Override
+        public boolean remove(Solution solution) {
+            throw readOnly();
+        }
+
+        @Override
+        public void clear() {
+            throw readOnly();
+        }
+
+        @Override
+        public void sort(Comparator<? super Solution> comparator) {
+            throw readOnly();
+        }
+
+        @Override
+        public void truncate(int size, Comparator<? super Solution> comparator) {
+            throw readOnly();
+        }
+    }
+
+    private static final class ResultCopy extends NondominatedPopulation {
+        private final List<IIndividual<Solution>> source;
+
+        private ResultCopy(@Nonnull List<IIndividual<Solution>> source) {
+            this.source = source;
+            for (IIndividual<Solution> member : source) {
+                forceAddWithoutCheck(member.getPayload());
+            }
+        }
+
+        @Override
+        public boolean add(Solution solution) {
+            throw readOnly();
+        }
+
+        @Override
+        public void replace(int index, Solution solution) {
+            throw readOnly();
+        }
+
+        @Override
+        public void remove(int index) {
+            throw readOnly();
+        }
+
+        @Override
+        public boolean remove(Solution solution) {
+            throw readOnly();
+        }
+
+        @Override
+        public void clear() {
+            throw readOnly();
+        }
+
+        @Override
+        public void sort(Comparator<? super Solution> comparator) {
+            throw readOnly();
+        }
+
+        @Override
+        public void truncate(int size, Comparator<? super Solution> comparator) {
+            throw readOnly();
+        }
     }
 }
@@ -0,0 +1,46 @@
+package ru.ifmo.nds.nsga2;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Virtual thread executors of JDK 21+, looked up reflectively so that the code still runs on older JDKs.
+ */
+public final class VirtualThreads {
+    @Nullable
+    private static final Method NEW_EXECUTOR = findFactory();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * @return Executor starting a new virtual thread per task
+     * @throws UnsupportedOperationException If the JDK has no virtual threads
+     */
+    @Nonnull
+    public static ExecutorService newExecutor() {
+        if (NEW_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JDK");
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create a virtual thread executor", e);
+        }
+    }
+
+    @Nullable
+    private static Method findFactory() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.ifmo.nds.nsga2;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Kind of threads which step {@link SSNSGAII} or evaluate offspring of an {@link EvaluationPipeline}.
+ */
+public enum WorkerThreads {
+    /**
+     * Fixed pool of platform threads
+     */
+    PLATFORM {
+        @Nonnull
+        @Override
+        public ExecutorService newExecutor(int threads) {
+            return Executors.newFixedThreadPool(threads);
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+    },
+    /**
+     * New virtual thread per task, JDK 21+. Thousands of tasks may sleep or wait for locks at once; a virtual thread
+     * blocked inside {@code synchronized} still pins its carrier thread.
+     */
+    VIRTUAL {
+        @Nonnull
+        @Override
+        public ExecutorService newExecutor(int threads) {
+            return VirtualThreads.newExecutor();
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return VirtualThreads.isSupported();
+        }
+    };
+
+    /**
+     * @param threads Number of tasks which are going to run concurrently
+     */
+    @Nonnull
+    public abstract ExecutorService newExecutor(int threads);
+
+    public abstract boolean isAvailable();
+}
@@ -1,22 +1,40 @@
 package runner;
 
+import nds.HypervolumeTracker;
 import nds.IManagedPopulation;
+import nds.LevelLockJFBYPopulationBackgroundTruncation;
 import nds.LevelLockJFBYPopulationOptimizeRemove;
 import nds.LevelLockJFBYPopulationOriginal;
+import nds.LevelLockJFBYPopulationReadWriteLock;
 import nds.LevelLockJFBYPopulationReleaseLockEarlier;
+import nds.LevelLockJFBYPopulationVersioned;
+import nds.LockFreeJFBYPopulation;
+import nds.PopulationMetrics;
 import nds.shard1.LevelLockJFBYPopulationShardV1;
 import nds.shard2.LevelLockJFBYPopulationShardV2;
+import nds.shard2.ShardingPolicy;
 import org.moeaframework.core.NondominatedPopulation;
 import org.moeaframework.core.Solution;
 import org.moeaframework.core.indicator.Hypervolume;
 import org.moeaframework.problem.DTLZ.DTLZ;
+import ru.ifmo.nds.nsga2.EvaluationPipeline;
+import ru.ifmo.nds.nsga2.IslandSSNSGAII;
+import ru.ifmo.nds.nsga2.MigrationTopology;
 import ru.ifmo.nds.nsga2.NSGAIIMoeaRunner;
 import ru.ifmo.nds.nsga2.SSNSGAII;
+import ru.ifmo.nds.nsga2.WorkerThreads;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import static org.moeaframework.core.Settings.KEY_FAST_NONDOMINATED_SORTING;
@@ -40,12 +58,59 @@ public abstract class AbstractBenchRunnerVariableThreadCount {
 
     abstract int getNumberOfEvaluations();
 
+    /**
+     * @return Number of islands for the island model runs, each stepped by its own group of threads
+     */
+    protected int getIslandCount(final int nThreads) {
+        return Math.max(1, nThreads / 2);
+    }
+
+    protected int getMigrationInterval() {
+        return 50;
+    }
+
+    protected int getMigrantCount() {
+        return 2;
+    }
+
+    protected MigrationTopology getMigrationTopology() {
+        return MigrationTopology.ring();
+    }
+
+    /**
+     * @return Number of concurrent evaluations of the pipelined runs, which use {@code nThreads} generators
+     */
+    protected int getEvaluatorCount(final int nThreads) {
+        return 4 * nThreads;
+    }
+
+    protected int getEvaluationQueueCapacity(final int nThreads) {
+        return 2 * getEvaluatorCount(nThreads);
+    }
+
+    protected int getEvaluationBatchSize() {
+        return 4;
+    }
+
+    /**
+     * @return Period of hypervolume samples printed as a quality-per-second curve after every run
+     */
+    protected long getHypervolumeSampleMillis() {
+        return 500;
+    }
+
+    protected WorkerThreads getEvaluatorThreads() {
+        return WorkerThreads.VIRTUAL.isAvailable() ? WorkerThreads.VIRTUAL : WorkerThreads.PLATFORM;
+    }
+
     protected long getNumberOfIncrementalInsertions(final long nThreads) {
         long tmp = getNumberOfEvaluations();
         return tmp / nThreads;
     }
 
     private final Hypervolume hypervolume;
+    private final double[] trueFrontLower;
+    private final double[] trueFrontUpper;
 
     public AbstractBenchRunnerVariableThreadCount() {
         final NondominatedPopulation trueParetoNP = new NondominatedPopulation();
@@ -56,26 +121,50 @@ public abstract class AbstractBenchRunnerVariableThreadCount {
         }
 
         hypervolume = new Hypervolume(problem, trueParetoNP);
+        trueFrontLower = new double[getDim()];
+        trueFrontUpper = new double[getDim()];
+        Arrays.fill(trueFrontLower, Double.POSITIVE_INFINITY);
+        Arrays.fill(trueFrontUpper, Double.NEGATIVE_INFINITY);
+        for (Solution solution : trueParetoNP) {
+            for (int i = 0; i < getDim(); ++i) {
+                trueFrontLower[i] = Math.min(trueFrontLower[i], solution.getObjective(i));
+                trueFrontUpper[i] = Math.max(trueFrontUpper[i], solution.getObjective(i));
+            }
+        }
 
         System.setProperty(KEY_FAST_NONDOMINATED_SORTING, String.valueOf(true));
     }
 
     private void concurrentTestCommon(final int threadsCount,
                                       @Nonnull final Supplier<IManagedPopulation<Solution>> popSupplier) throws InterruptedException {
+        concurrentTestCommon(threadsCount, WorkerThreads.PLATFORM, popSupplier);
+    }
+
+    /**
+     * @param threadsCount Number of concurrent {@code step()} loops, i.e. of in-flight evaluations
+     * @param workerThreads Threads running the loops
+     */
+    private void concurrentTestCommon(final int threadsCount,
+                                      @Nonnull final WorkerThreads workerThreads,
+                                      @Nonnull final Supplier<IManagedPopulation<Solution>> popSupplier) throws InterruptedException {
 
         final int popSize = getPopSize();
         final DTLZ problem = getProblem();
 
-        final ExecutorService es = Executors.newFixedThreadPool(threadsCount);
+        final ExecutorService es = workerThreads.newExecutor(threadsCount);
 
         try {
             for (int i = 0; i < getRunCount(); ++i) {
                 final IManagedPopulation<Solution> pop = popSupplier.get();
+                final ObjectName metricsName = registerMetrics(pop, threadsCount, i);
                 final SSNSGAII nsga = NSGAIIMoeaRunner.newSSNSGAII(popSize, problem, pop);
+                final HypervolumeCurve curve = new HypervolumeCurve(newHypervolumeTracker(), getHypervolumeSampleMillis());
+                nsga.setHypervolumeTracker(curve.tracker);
                 nsga.step();
 
                 final CountDownLatch latch = new CountDownLatch(threadsCount);
                 final long startTs = System.nanoTime();
+                curve.start();
                 for (int t = 0; t < threadsCount; ++t) {
                     es.submit(() -> {
                         try {
@@ -92,9 +181,181 @@ public abstract class AbstractBenchRunnerVariableThreadCount {
                     });
                 }
                 latch.await();
+                nsga.terminate();
+                curve.close();
+                printHypervolumeRate(new NondominatedPopulation(nsga.getNonDominatedSolutions()), startTs);
+                printMetrics(pop, metricsName);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    /**
+     * Same evaluation budget as {@link #concurrentTestCommon(int, Supplier)}, but spent by {@link #getIslandCount(int)} islands
+     * with populations of proportional size instead of one shared population
+     */
+    private void islandTestCommon(final int threadsCount,
+                                  @Nonnull final Supplier<IManagedPopulation<Solution>> popSupplier) throws InterruptedException {
+        final int islandCount = getIslandCount(threadsCount);
+        final int popSize = Math.max(1, getPopSize() / islandCount);
+        final DTLZ problem = getProblem();
+
+        final ExecutorService es = Executors.newFixedThreadPool(threadsCount);
+
+        try {
+            for (int i = 0; i < getRunCount(); ++i) {
+                final IslandSSNSGAII islands = NSGAIIMoeaRunner.newIslandSSNSGAII(popSize, problem, islandCount,
+                    popSupplier, getMigrationTopology(), getMigrationInterval(), getMigrantCount());
+                islands.initialize();
+
+                final CountDownLatch latch = new CountDownLatch(threadsCount);
+                final long startTs = System.nanoTime();
+                for (int t = 0; t < threadsCount; ++t) {
+                    final int island = t % islandCount;
+                    es.submit(() -> {
+                        try {
+                            for (long j = 0; j < getNumberOfIncrementalInsertions(threadsCount); ++j) {
+                                islands.step(island);
+                            }
+                        } catch (Throwable th) {
+                            th.printStackTrace();
+                            System.err.flush();
+                            throw th;
+                        } finally {
+                            latch.countDown();
+                        }
+                    });
+                }
+                latch.await();
+                islands.terminate();
+                printHypervolumeRate(islands.getResult(), startTs);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    /**
+     * Same evaluation budget as {@link #concurrentTestCommon(int, Supplier)}, but {@code threadsCount} threads only generate
+     * offspring, which are evaluated and inserted by an {@link EvaluationPipeline}
+     */
+    private void pipelinedTestCommon(final int threadsCount,
+                                     @Nonnull final Supplier<IManagedPopulation<Solution>> popSupplier) throws InterruptedException {
+        final int popSize = getPopSize();
+        final DTLZ problem = getProblem();
+
+        final ExecutorService es = Executors.newFixedThreadPool(threadsCount);
+        final ExecutorService evaluatorExecutor = getEvaluatorThreads().newExecutor(getEvaluatorCount(threadsCount));
+
+        try {
+            for (int i = 0; i < getRunCount(); ++i) {
+                final IManagedPopulation<Solution> pop = popSupplier.get();
+                final ObjectName metricsName = registerMetrics(pop, threadsCount, i);
+                final SSNSGAII nsga = NSGAIIMoeaRunner.newSSNSGAII(popSize, problem, pop);
+                final HypervolumeCurve curve = new HypervolumeCurve(newHypervolumeTracker(), getHypervolumeSampleMillis());
+                nsga.setHypervolumeTracker(curve.tracker);
+                nsga.step();
+
+                final long startTs = System.nanoTime();
+                curve.start();
+                final EvaluationPipeline pipeline = new EvaluationPipeline(nsga, getEvaluationQueueCapacity(threadsCount),
+                    evaluatorExecutor, getEvaluatorCount(threadsCount), getEvaluationBatchSize());
+                final CountDownLatch latch = new CountDownLatch(threadsCount);
+                for (int t = 0; t < threadsCount; ++t) {
+                    es.submit(() -> {
+                        try {
+                            pipeline.generate(getNumberOfIncrementalInsertions(threadsCount));
+                            return null;
+                        } catch (Throwable th) {
+                            th.printStackTrace();
+                            System.err.flush();
+                            throw th;
+                        } finally {
+                            latch.countDown();
+                        }
+                    });
+                }
+                latch.await();
+                pipeline.close();
+                nsga.terminate();
+                curve.close();
+                printHypervolumeRate(new NondominatedPopulation(nsga.getNonDominatedSolutions()), startTs);
+                printMetrics(pop, metricsName);
             }
         } finally {
             es.shutdownNow();
+            evaluatorExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Exposes metrics of the population through JMX for the duration of the run, if they are recorded
+     */
+    @Nullable
+    private static ObjectName registerMetrics(@Nonnull final IManagedPopulation<?> pop, final int threadsCount, final int run) {
+        if (!pop.getMetrics().isEnabled()) {
+            return null;
+        }
+        return pop.getMetrics().register(pop.getClass().getSimpleName() + "-" + threadsCount + "t-" + run);
+    }
+
+    private static void printMetrics(@Nonnull final IManagedPopulation<?> pop, @Nullable final ObjectName metricsName) {
+        if (metricsName != null) {
+            System.out.println(pop.getMetrics());
+            PopulationMetrics.unregister(metricsName);
+        }
+    }
+
+    private void printHypervolumeRate(@Nonnull final NondominatedPopulation result, final long startTs) {
+        final double seconds = (System.nanoTime() - startTs) / 1e9;
+        final double hv = hypervolume.evaluate(result);
+        System.out.println("hypervolume " + hv + ", per second " + hv / seconds);
+    }
+
+    /**
+     * @return Tracker of the volume between the ideal and the nadir point of the true front
+     */
+    @Nonnull
+    private HypervolumeTracker newHypervolumeTracker() {
+        return new HypervolumeTracker(trueFrontLower, trueFrontUpper);
+    }
+
+    /**
+     * Samples a {@link HypervolumeTracker} in the background and prints the normalised volume over time when closed
+     */
+    private static final class HypervolumeCurve implements AutoCloseable {
+        private final HypervolumeTracker tracker;
+        private final long sampleMillis;
+        private final List<String> samples = new ArrayList<>();
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "hypervolume-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private long startTs;
+
+        private HypervolumeCurve(@Nonnull final HypervolumeTracker tracker, final long sampleMillis) {
+            this.tracker = tracker;
+            this.sampleMillis = sampleMillis;
+        }
+
+        private void start() {
+            startTs = System.nanoTime();
+            sampler.scheduleAtFixedRate(this::sample, 0, sampleMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            final double seconds = (System.nanoTime() - startTs) / 1e9;
+            samples.add(String.format("%.2f:%.5f", seconds, tracker.getNormalizedHypervolume()));
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            sampler.shutdown();
+            sampler.awaitTermination(1, TimeUnit.MINUTES);
+            sample();
+            System.out.println("hypervolume curve (s:normalized) " + String.join(" ", samples));
         }
     }
 
@@ -117,4 +378,57 @@ public abstract class AbstractBenchRunnerVariableThreadCount {
     public void levelLockJfbyShardV2(final int threadsCount) throws InterruptedException {
         concurrentTestCommon(threadsCount, () -> new LevelLockJFBYPopulationShardV2<>(getPopSize()));
     }
+
+    public void levelLockJfbyShardV2Adaptive(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, () -> new LevelLockJFBYPopulationShardV2<>(getPopSize(), ShardingPolicy.adaptive(threadsCount)));
+    }
+
+    public void levelLockJfbyShardV2Range(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, () -> new LevelLockJFBYPopulationShardV2<>(getPopSize(),
+            ShardingPolicy.byFirstObjective(ShardingPolicy.adaptive(threadsCount))));
+    }
+
+    public void lockFreeJfby(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, () -> new LockFreeJFBYPopulation<>(getPopSize()));
+    }
+
+    public void levelLockJfbyReadWriteLock(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, () -> new LevelLockJFBYPopulationReadWriteLock<>(getPopSize()));
+    }
+
+    public void levelLockJfbyBackgroundTruncation(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, () -> new LevelLockJFBYPopulationBackgroundTruncation<>(getPopSize()));
+    }
+
+    public void levelLockJfbyVersioned(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, () -> new LevelLockJFBYPopulationVersioned<>(getPopSize()));
+    }
+
+    public void islandsLevelLockJfbyReadWriteLock(final int threadsCount) throws InterruptedException {
+        islandTestCommon(threadsCount, () -> new LevelLockJFBYPopulationReadWriteLock<>(Math.max(1, getPopSize() / getIslandCount(threadsCount))));
+    }
+
+    public void islandsLockFreeJfby(final int threadsCount) throws InterruptedException {
+        islandTestCommon(threadsCount, () -> new LockFreeJFBYPopulation<>(Math.max(1, getPopSize() / getIslandCount(threadsCount))));
+    }
+
+    public void pipelinedLevelLockJfbyReadWriteLock(final int threadsCount) throws InterruptedException {
+        pipelinedTestCommon(threadsCount, () -> new LevelLockJFBYPopulationReadWriteLock<>(getPopSize()));
+    }
+
+    public void virtualLevelLockJfby(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, WorkerThreads.VIRTUAL, () -> new LevelLockJFBYPopulationOriginal<>(getPopSize()));
+    }
+
+    public void virtualLevelLockJfbyShardV1(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, WorkerThreads.VIRTUAL, () -> new LevelLockJFBYPopulationShardV1<>(getPopSize()));
+    }
+
+    public void virtualLevelLockJfbyReadWriteLock(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, WorkerThreads.VIRTUAL, () -> new LevelLockJFBYPopulationReadWriteLock<>(getPopSize()));
+    }
+
+    public void virtualLockFreeJfby(final int threadsCount) throws InterruptedException {
+        concurrentTestCommon(threadsCount, WorkerThreads.VIRTUAL, () -> new LockFreeJFBYPopulation<>(getPopSize()));
+    }
 }
@@ -2,9 +2,13 @@ package runner;
 
 import org.moeaframework.problem.DTLZ.DTLZ;
 
+import ru.ifmo.nds.nsga2.WorkerThreads;
+
 import java.lang.reflect.Method;
 
 public class ConcurrentConfigurationSearcher {
+    private static final int[] VIRTUAL_THREAD_COUNTS = {16, 128, 1024, 3000};
+
     public static void main(String[] args) throws Exception {
         System.out.println("original");
         runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("levelLockJfby", int.class));
@@ -20,10 +24,84 @@ public class ConcurrentConfigurationSearcher {
 
         System.out.println("level shard version 2");
         runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("levelLockJfbyShardV2", int.class));
+
+        System.out.println("level shard version 2, adaptive shard count");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("levelLockJfbyShardV2Adaptive", int.class));
+
+        System.out.println("level shard version 2, first objective ranges");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("levelLockJfbyShardV2Range", int.class));
+
+        System.out.println("lock-free copy-on-write");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("lockFreeJfby", int.class));
+
+        System.out.println("read-write structure lock");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("levelLockJfbyReadWriteLock", int.class));
+
+        System.out.println("background truncation");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("levelLockJfbyBackgroundTruncation", int.class));
+
+        System.out.println("versioned level array");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("levelLockJfbyVersioned", int.class));
+
+        System.out.println("island model, read-write structure lock");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("islandsLevelLockJfbyReadWriteLock", int.class));
+
+        System.out.println("island model, lock-free copy-on-write");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("islandsLockFreeJfby", int.class));
+
+        System.out.println("pipelined evaluation, read-write structure lock");
+        runCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("pipelinedLevelLockJfbyReadWriteLock", int.class));
+
+        System.out.println("virtual threads, original");
+        runVirtualCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("virtualLevelLockJfby", int.class));
+
+        System.out.println("virtual threads, level shard version 1");
+        runVirtualCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("virtualLevelLockJfbyShardV1", int.class));
+
+        System.out.println("virtual threads, read-write structure lock");
+        runVirtualCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("virtualLevelLockJfbyReadWriteLock", int.class));
+
+        System.out.println("virtual threads, lock-free copy-on-write");
+        runVirtualCheck(AbstractBenchRunnerVariableThreadCount.class.getMethod("virtualLockFreeJfby", int.class));
     }
 
     public static void runCheck(Method method) throws Exception {
-        final AbstractBenchRunnerVariableThreadCount d3Runner = new AbstractBenchRunnerVariableThreadCount() {
+        final AbstractBenchRunnerVariableThreadCount d3Runner = newD3Runner();
+
+        long prevDuration = Integer.MAX_VALUE;
+        for (int i = 1; i < 15; ++i) {
+            System.out.println(i);
+            final long start = System.currentTimeMillis();
+            method.invoke(d3Runner, i);
+            final long duration = System.currentTimeMillis() - start;
+            System.out.println(duration);
+            if (duration > prevDuration * 2)
+                break;
+            prevDuration = duration;
+        }
+    }
+
+    /**
+     * Runs with thousands of concurrent steps, each mostly sleeping in the evaluation. Run with
+     * {@code -Djdk.tracePinnedThreads=short} to see where virtual threads pin their carrier threads.
+     */
+    public static void runVirtualCheck(Method method) throws Exception {
+        if (!WorkerThreads.VIRTUAL.isAvailable()) {
+            System.out.println("virtual threads are not supported by this JDK");
+            return;
+        }
+        final AbstractBenchRunnerVariableThreadCount d3Runner = newD3Runner();
+
+        for (int threadsCount : VIRTUAL_THREAD_COUNTS) {
+            System.out.println(threadsCount);
+            final long start = System.currentTimeMillis();
+            method.invoke(d3Runner, threadsCount);
+            System.out.println(System.currentTimeMillis() - start);
+        }
+    }
+
+    private static AbstractBenchRunnerVariableThreadCount newD3Runner() {
+        return new AbstractBenchRunnerVariableThreadCount() {
             @Override
             DTLZ getProblem() {
                 return new DTLZ1Plus1Ms(getDim());
@@ -44,17 +122,5 @@ public class ConcurrentConfigurationSearcher {
                 return 250;
             }
         };
-
-        long prevDuration = Integer.MAX_VALUE;
-        for (int i = 1; i < 15; ++i) {
-            System.out.println(i);
-            final long start = System.currentTimeMillis();
-            method.invoke(d3Runner, i);
-            final long duration = System.currentTimeMillis() - start;
-            System.out.println(duration);
-            if (duration > prevDuration * 2)
-                break;
-            prevDuration = duration;
-        }
     }
 }
@@ -0,0 +1,52 @@
+package nds;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Vector API kernel: the point is compared with as many members at once as a vector of {@link #SPECIES} has lanes,
+ * one objective column of the block per step, and the per-lane masks of all objectives are combined. Rows which do
+ * not fill a whole vector are left to {@link ScalarDominationKernel}. Compiled only on JDK 17+
+ * and loaded reflectively by {@link DominationKernels}, which falls back to {@link ScalarDominationKernel} if
+ * {@code jdk.incubator.vector} is not available.
+ */
+@ThreadSafe
+public final class VectorDominationKernel implements DominationKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean dominatedByAny(@Nonnull double[] members, int fromRow, int toRow, @Nonnull double[] point) {
+        final int dim = point.length;
+        final int rows = members.length / dim;
+        final int lanes = SPECIES.length();
+        final double first = point[0];
+
+        int row = fromRow;
+        for (; row + lanes <= toRow; row += lanes) {
+            final DoubleVector firstColumn = DoubleVector.fromArray(SPECIES, members, row);
+            VectorMask<Double> notWorse = firstColumn.compare(VectorOperators.LE, first);
+            if (!notWorse.anyTrue()) {
+                return false;
+            }
+            VectorMask<Double> better = firstColumn.compare(VectorOperators.LT, first);
+            for (int k = 1, offset = rows + row; k < dim && notWorse.anyTrue(); ++k, offset += rows) {
+                final DoubleVector column = DoubleVector.fromArray(SPECIES, members, offset);
+                notWorse = notWorse.and(column.compare(VectorOperators.LE, point[k]));
+                better = better.or(column.compare(VectorOperators.LT, point[k]));
+            }
+            if (notWorse.and(better).anyTrue()) {
+                return true;
+            }
+            //rows are lex-sorted: once the last lane is past the point, so are all further rows
+            if (members[row + lanes - 1] > first) {
+                return false;
+            }
+        }
+        return ScalarDominationKernel.INSTANCE.dominatedByAny(members, row, toRow, point);
+    }
+}